@@ -54,7 +54,10 @@ class InfinitestCoreRegistry implements CoreRegistry {
 	@Override
 	public void addCore(URI projectUri, InfinitestCore core) {
 		fireAddedEvent(core);
-		coreMap.put(projectUri, core);
+		InfinitestCore replacedCore = coreMap.put(projectUri, core);
+		if ((replacedCore != null) && (replacedCore != core)) {
+			replacedCore.dispose();
+		}
 	}
 
 	@Override
@@ -68,6 +71,7 @@ class InfinitestCoreRegistry implements CoreRegistry {
 		if (core != null) {
 			fireRemovedEvent(core);
 			log("Removing core " + core.getName());
+			core.dispose();
 		}
 	}
 
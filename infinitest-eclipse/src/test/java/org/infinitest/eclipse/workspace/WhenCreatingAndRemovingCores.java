@@ -62,6 +62,22 @@ public class WhenCreatingAndRemovingCores implements CoreLifecycleListener {
 		assertSame(coreRemoved, mockCore);
 	}
 
+	@Test
+	public void shouldDisposeCoresWhenTheyAreRemovedOrReplaced() throws URISyntaxException {
+		InfinitestCore removedCore = mock(InfinitestCore.class);
+		InfinitestCore replacedCore = mock(InfinitestCore.class);
+		InfinitestCore newCore = mock(InfinitestCore.class);
+		registry.addCore(new URI("//someProject"), removedCore);
+		registry.addCore(new URI("//otherProject"), replacedCore);
+
+		registry.removeCore(new URI("//someProject"));
+		registry.addCore(new URI("//otherProject"), newCore);
+
+		verify(removedCore).dispose();
+		verify(replacedCore).dispose();
+		verify(newCore, never()).dispose();
+	}
+
 	@Override
 	public void coreCreated(InfinitestCore core) {
 		coreAdded = core;
@@ -27,31 +27,55 @@
  */
 package org.infinitest.intellij.idea;
 
+import static java.util.concurrent.TimeUnit.*;
+
 import org.infinitest.*;
 import org.infinitest.intellij.*;
 
 import com.intellij.openapi.compiler.*;
 
 public class IdeaCompilationListener implements CompilationStatusListener, TestControl {
+	private static final long QUIET_PERIOD_MILLIS = 300;
+	private static final long MAXIMUM_LATENCY_MILLIS = 3000;
+
 	private final InfinitestCore core;
 	private final ModuleSettings moduleSettings;
-	private boolean shouldRunTests = true;
+	private final CoalescingUpdateScheduler scheduler;
+	private volatile boolean shouldRunTests = true;
 
 	public IdeaCompilationListener(InfinitestCore core, ModuleSettings moduleSettings) {
+		this(core, moduleSettings, QUIET_PERIOD_MILLIS, MAXIMUM_LATENCY_MILLIS);
+	}
+
+	/**
+	 * Files generated within the quiet period of each other are tested by a
+	 * single update, which is delayed by no more than the maximum latency.
+	 */
+	public IdeaCompilationListener(InfinitestCore core, ModuleSettings moduleSettings, long quietPeriodMillis, long maximumLatencyMillis) {
 		this.core = core;
 		this.moduleSettings = moduleSettings;
+		scheduler = new CoalescingUpdateScheduler(new Runnable() {
+			@Override
+			public void run() {
+				doRunTests();
+			}
+		}, quietPeriodMillis, maximumLatencyMillis, MILLISECONDS);
 	}
 
 	@Override
 	public void compilationFinished(boolean aborted, int errors, int warnings, CompileContext compileContext) {
 		if (!aborted && (errors == 0)) {
-			doRunTests();
+			scheduler.updateNow();
 		}
 	}
 
 	@Override
 	public void fileGenerated(String outputRoot, String relativePath) {
-		doRunTests();
+		scheduler.changeDetected();
+	}
+
+	public void stop() {
+		scheduler.shutdown();
 	}
 
 	@Override
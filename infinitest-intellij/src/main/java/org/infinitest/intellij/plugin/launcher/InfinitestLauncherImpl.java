@@ -99,6 +99,8 @@ public class InfinitestLauncherImpl implements InfinitestLauncher {
 	public void stop() {
 		toolWindowRegistry.unregisterToolWindow(toolWindowId());
 		compilationNotifier.removeCompilationStatusListener(testControl);
+		testControl.stop();
+		infinitestBuilder.getCore().dispose();
 	}
 
 	private String toolWindowId() {
@@ -0,0 +1,136 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Gathers the changes signalled in a burst, such as the class files written
+ * one at a time by a large build, into a single update. The update runs once
+ * no change was signalled for a quiet period, and no later than a maximum
+ * latency after the first change of the burst.
+ */
+public class CoalescingUpdateScheduler {
+	private final Runnable update;
+	private final long quietPeriod;
+	private final long maximumLatency;
+	private final ScheduledExecutorService executor;
+	private final Object updateLock = new Object();
+	private ScheduledFuture<?> pendingUpdate;
+	private long firstChangeTime;
+	private int generation;
+
+	public CoalescingUpdateScheduler(Runnable update, long quietPeriod, long maximumLatency, TimeUnit unit) {
+		this.update = update;
+		this.quietPeriod = unit.toNanos(quietPeriod);
+		this.maximumLatency = unit.toNanos(maximumLatency);
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Infinitest update scheduler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Signals a change, which postpones the pending update by the quiet
+	 * period, unless the update has already waited for the maximum latency.
+	 */
+	public synchronized void changeDetected() {
+		long now = System.nanoTime();
+		if (pendingUpdate == null) {
+			firstChangeTime = now;
+		} else {
+			pendingUpdate.cancel(false);
+		}
+		final int scheduledGeneration = ++generation;
+		long delay = Math.min(quietPeriod, (firstChangeTime + maximumLatency) - now);
+		pendingUpdate = executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				runPendingUpdate(scheduledGeneration);
+			}
+		}, Math.max(0, delay), NANOSECONDS);
+	}
+
+	/**
+	 * Runs an update on the calling thread, which includes any pending change.
+	 */
+	public void updateNow() {
+		synchronized (this) {
+			cancelPendingUpdate();
+		}
+		runUpdate();
+	}
+
+	/**
+	 * Drops the pending update, if any, and stops the scheduling thread.
+	 */
+	public synchronized void shutdown() {
+		cancelPendingUpdate();
+		executor.shutdown();
+	}
+
+	private void runPendingUpdate(int scheduledGeneration) {
+		synchronized (this) {
+			// Postponed or run by updateNow() since this was scheduled
+			if (scheduledGeneration != generation) {
+				return;
+			}
+			pendingUpdate = null;
+		}
+		try {
+			runUpdate();
+		}
+		// CHECKSTYLE:OFF
+		catch (RuntimeException e)
+		// CHECKSTYLE:ON
+		{
+			log("Error while running a scheduled update", e);
+		}
+	}
+
+	private void cancelPendingUpdate() {
+		if (pendingUpdate != null) {
+			pendingUpdate.cancel(false);
+			pendingUpdate = null;
+		}
+		generation++;
+	}
+
+	private void runUpdate() {
+		synchronized (updateLock) {
+			update.run();
+		}
+	}
+}
@@ -33,4 +33,6 @@ public interface ConcurrencyController {
 	void release();
 
 	void setCoreCount(int coreCount);
+
+	int getCoreCount();
 }
@@ -77,8 +77,12 @@ class DefaultInfinitestCore implements InfinitestCore {
 
 	@Override
 	public synchronized int update(Collection<File> changedFiles) {
+		return update(changedFiles, Collections.<File> emptySet(), Collections.<String> emptySet());
+	}
+
+	private int update(Collection<File> changedFiles, Collection<File> removedFiles, Collection<String> changedLibraryClasses) {
 		log(CONFIG, "Core Update " + name);
-		int testsRun = runOptimizedTestSet(changedFiles);
+		int testsRun = runOptimizedTestSet(changedFiles, removedFiles, changedLibraryClasses);
 		caughtExceptions.clear();
 		return testsRun;
 	}
@@ -88,7 +92,8 @@ class DefaultInfinitestCore implements InfinitestCore {
 	@Override
 	public synchronized int update() {
 		try {
-			return update(findChangedClassFiles());
+			ChangeSet changes = findChanges();
+			return update(changes.getChangedFiles(), changes.getRemovedFiles(), changes.getChangedLibraryClasses());
 		} catch (IOException e) {
 			checkForFatalError(e);
 		}
@@ -115,11 +120,23 @@ class DefaultInfinitestCore implements InfinitestCore {
 		}
 	}
 
-	private int runOptimizedTestSet(Collection<File> changedFiles) {
-		Set<String> oldTests = testDetector.getCurrentTests();
-		Collection<JavaClass> testsToRun = testDetector.findTestsToRun(changedFiles);
-		Set<String> newTests = testDetector.getCurrentTests();
-		fireDisabledTestEvents(difference(oldTests, newTests));
+	@Override
+	public void dispose() {
+		log("Disposing core " + name);
+		changeDetector.close();
+		runner.dispose();
+	}
+
+	private int runOptimizedTestSet(Collection<File> changedFiles, Collection<File> removedFiles, Collection<String> changedLibraryClasses) {
+		Set<JavaClass> testsToRun = newHashSet();
+		if (!removedFiles.isEmpty()) {
+			testsToRun.addAll(testDetector.removeClasses(removedFiles));
+		}
+		if (!changedLibraryClasses.isEmpty()) {
+			testsToRun.addAll(testDetector.findTestsUsingLibraryClasses(changedLibraryClasses));
+		}
+		testsToRun.addAll(testDetector.findTestsToRun(changedFiles));
+		fireDisabledTestEvents(testDetector.takeDisabledTests());
 		if (!testsToRun.isEmpty()) {
 			log(name + " Running tests: " + testsToRun);
 			runTests(testsToRun);
@@ -127,25 +144,28 @@ class DefaultInfinitestCore implements InfinitestCore {
 		return testsToRun.size();
 	}
 
-	private Collection<File> findChangedClassFiles() throws IOException {
-		if (changeDetector.filesWereRemoved()) {
-			// Instead of reloading the core when a file is removed,
-			// we should ask the test detector to remove it from the dependency
-			// graph
-			log("Files removed. Reloading " + name);
-			reload();
+	private ChangeSet findChanges() throws IOException {
+		ChangeSet changes = changeDetector.findChanges();
+		if (!changes.getRemovedFiles().isEmpty()) {
+			log(name + " Files removed: " + changes.getRemovedFiles());
+		}
+		if (!changes.getChangedLibraryClasses().isEmpty()) {
+			log(name + " Library classes changed: " + changes.getChangedLibraryClasses().size());
 		}
-		Collection<File> changedFiles = changeDetector.findChangedFiles();
-		if (!changedFiles.isEmpty()) {
-			log(name + " Files changed: " + changedFiles);
+		if (!changes.getChangedFiles().isEmpty()) {
+			log(name + " Files changed: " + changes.getChangedFiles());
 		}
-		return changedFiles;
+		return changes;
 	}
 
 	public RunStatistics getRunStatistics() {
 		return stats;
 	}
 
+	void setSchedulingPolicy(SchedulingPolicy policy) {
+		runner.setTestPriority(policy.createComparator(stats));
+	}
+
 	@Override
 	public void addTestResultsListener(TestResultsListener l) {
 		getRunner().addTestResultsListener(normalizer.testEventNormalizer(l));
@@ -106,4 +106,9 @@ public interface InfinitestCore {
 
 	void removeConsoleOutputListener(ConsoleOutputListener listener);
 
+	/**
+	 * Releases the resources held by this core, like file system watches. Call
+	 * this when the core is discarded; it is not updated afterwards.
+	 */
+	void dispose();
 }
@@ -35,6 +35,7 @@ import org.infinitest.changedetect.*;
 import org.infinitest.filter.*;
 import org.infinitest.parser.*;
 import org.infinitest.testrunner.*;
+import org.infinitest.testrunner.queue.*;
 
 /**
  * Used to create instances of an {@link InfinitestCore}.
@@ -48,6 +49,17 @@ public class InfinitestCoreBuilder {
 	private final EventQueue eventQueue;
 	private String coreName = "";
 	private ConcurrencyController controller;
+	private boolean useFileSystemEvents;
+	private boolean detectChangesByContent;
+	private boolean detectLibraryChanges;
+	private boolean scanInParallel;
+	private int warmProcessCount;
+	private boolean persistIndex;
+	private boolean persistRunStatistics;
+	private boolean useStreamingClassParser;
+	private boolean trackTestReachability;
+	private boolean useJarSymbolTables;
+	private SchedulingPolicy schedulingPolicy = SchedulingPolicy.FAILURES_FIRST;
 
 	public InfinitestCoreBuilder(RuntimeEnvironment environment, EventQueue eventQueue) {
 		checkNotNull(environment, "No runtime environment is configured. Maybe because the project has no jdk.");
@@ -66,16 +78,43 @@ public class InfinitestCoreBuilder {
 	public InfinitestCore createCore() {
 		TestRunner runner = createRunner();
 		runner.setConcurrencyController(controller);
+		if (runner instanceof MultiProcessRunner) {
+			((MultiProcessRunner) runner).setWarmProcessCount(warmProcessCount);
+		}
 		DefaultInfinitestCore core = new DefaultInfinitestCore(runner, eventQueue);
 		core.setName(coreName);
-		core.setChangeDetector(new FileChangeDetector());
+		if (persistRunStatistics) {
+			core.getRunStatistics().persistTo(new File(runtimeEnvironment.getWorkingDirectory(), "infinitest.stats"));
+		}
+		core.setSchedulingPolicy(schedulingPolicy);
+		core.setChangeDetector(createChangeDetector());
 		core.setTestDetector(createTestDetector(filterList));
 		core.setRuntimeEnvironment(runtimeEnvironment);
 		return core;
 	}
 
+	protected ChangeDetector createChangeDetector() {
+		FileChangeDetector changeDetector;
+		if (useFileSystemEvents) {
+			changeDetector = new WatchServiceChangeDetector();
+		} else {
+			changeDetector = new FileChangeDetector();
+		}
+		changeDetector.setDetectChangesByContent(detectChangesByContent);
+		changeDetector.setDetectLibraryChanges(detectLibraryChanges);
+		changeDetector.setScanInParallel(scanInParallel);
+		return changeDetector;
+	}
+
 	protected TestDetector createTestDetector(TestFilter testFilterList) {
-		return new ClassFileTestDetector(testFilterList);
+		ClassFileTestDetector testDetector = new ClassFileTestDetector(testFilterList);
+		testDetector.setUseStreamingClassParser(useStreamingClassParser);
+		testDetector.setTrackTestReachability(trackTestReachability);
+		testDetector.setUseJarSymbolTables(useJarSymbolTables);
+		if (persistIndex) {
+			testDetector.setIndexSnapshotFile(new File(runtimeEnvironment.getWorkingDirectory(), "infinitest.index"));
+		}
+		return testDetector;
 	}
 
 	/**
@@ -101,6 +140,96 @@ public class InfinitestCoreBuilder {
 		this.coreName = coreName;
 	}
 
+	/**
+	 * Uses file system notifications to find changed class files, instead of
+	 * scanning every class output directory on each update.
+	 */
+	public void setUseFileSystemEvents(boolean useFileSystemEvents) {
+		this.useFileSystemEvents = useFileSystemEvents;
+	}
+
+	/**
+	 * Ignores class files that were rewritten by the compiler with the exact
+	 * same contents.
+	 */
+	public void setDetectChangesByContent(boolean detectChangesByContent) {
+		this.detectChangesByContent = detectChangesByContent;
+	}
+
+	/**
+	 * Scans the class directories concurrently, which helps projects with many
+	 * class output directories.
+	 */
+	public void setScanInParallel(boolean scanInParallel) {
+		this.scanInParallel = scanInParallel;
+	}
+
+	/**
+	 * Watches the jars of the classpath too, and runs the tests that use the
+	 * classes that changed in a jar when it is replaced.
+	 */
+	public void setDetectLibraryChanges(boolean detectLibraryChanges) {
+		this.detectLibraryChanges = detectLibraryChanges;
+	}
+
+	/**
+	 * Keeps a snapshot of the class index in a file called infinitest.index in
+	 * the project working directory, so that restarting or reloading a core
+	 * only parses the classes that changed in the meantime.
+	 */
+	public void setPersistIndex(boolean persistIndex) {
+		this.persistIndex = persistIndex;
+	}
+
+	/**
+	 * Records the failures and durations of the tests in a file called
+	 * infinitest.stats in the project working directory, so that the tests
+	 * are prioritized from the first run after a restart or a reload.
+	 */
+	public void setPersistRunStatistics(boolean persistRunStatistics) {
+		this.persistRunStatistics = persistRunStatistics;
+	}
+
+	/**
+	 * Reads class files with the {@link StreamingClassParser} instead of
+	 * Javassist.
+	 */
+	public void setUseStreamingClassParser(boolean useStreamingClassParser) {
+		this.useStreamingClassParser = useStreamingClassParser;
+	}
+
+	/**
+	 * Keeps the tests that depend on each class up to date, so the tests to
+	 * run are found without walking the dependency graph. Uses more memory.
+	 */
+	public void setTrackTestReachability(boolean trackTestReachability) {
+		this.trackTestReachability = trackTestReachability;
+	}
+
+	/**
+	 * Reads the list of classes of each library jar once, and doesn't parse
+	 * the library classes used by the project.
+	 */
+	public void setUseJarSymbolTables(boolean useJarSymbolTables) {
+		this.useJarSymbolTables = useJarSymbolTables;
+	}
+
+	/**
+	 * Keeps the given number of test runner processes started ahead of time.
+	 * Each of them runs the tests of a single update.
+	 */
+	public void setWarmProcessCount(int warmProcessCount) {
+		this.warmProcessCount = warmProcessCount;
+	}
+
+	/**
+	 * Sets the order in which the tests of a run are taken from the queue. The
+	 * default runs the tests that failed most recently first.
+	 */
+	public void setSchedulingPolicy(SchedulingPolicy schedulingPolicy) {
+		this.schedulingPolicy = schedulingPolicy;
+	}
+
 	public void setUpdateSemaphore(ConcurrencyController semaphore) {
 		controller = semaphore;
 	}
@@ -85,7 +85,8 @@ public class MultiCoreConcurrencyController implements ConcurrencyController {
 		return semaphore.availablePermits();
 	}
 
-	int getCoreCount() {
+	@Override
+	public synchronized int getCoreCount() {
 		return coreCount;
 	}
 }
@@ -46,4 +46,9 @@ public class SingleLockConcurrencyController implements ConcurrencyController {
 	public void setCoreCount(int coreCount) {
 		// Ignored...only 1 core supported
 	}
+
+	@Override
+	public int getCoreCount() {
+		return 1;
+	}
 }
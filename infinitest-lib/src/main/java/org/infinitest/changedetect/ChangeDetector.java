@@ -33,11 +33,25 @@ import java.util.*;
 import org.infinitest.*;
 
 public interface ChangeDetector {
-	Set<File> findChangedFiles() throws IOException;
+	/**
+	 * Returns everything that changed since this was last called, and stops
+	 * tracking the removed class files.
+	 */
+	ChangeSet findChanges() throws IOException;
 
 	void clear();
 
-	boolean filesWereRemoved();
+	/**
+	 * Returns the names of the classes that were added, changed or removed in
+	 * the library jars of the classpath since this was last called.
+	 */
+	Set<String> findChangedLibraryClasses() throws IOException;
 
 	void setClasspathProvider(ClasspathProvider classpath);
+
+	/**
+	 * Releases the resources used to track changes, like file system watches.
+	 * The detector is not used afterwards.
+	 */
+	void close();
 }
\ No newline at end of file
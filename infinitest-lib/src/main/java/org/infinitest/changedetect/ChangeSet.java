@@ -0,0 +1,86 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.changedetect;
+
+import static com.google.common.collect.Sets.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * What changed in the class directories and the library jars of a classpath
+ * since the previous update.
+ */
+public class ChangeSet {
+	private final Set<File> addedFiles;
+	private final Set<File> modifiedFiles;
+	private final Set<File> removedFiles;
+	private final Set<String> changedLibraryClasses;
+
+	public ChangeSet(Set<File> addedFiles, Set<File> modifiedFiles, Set<File> removedFiles, Set<String> changedLibraryClasses) {
+		this.addedFiles = Collections.unmodifiableSet(addedFiles);
+		this.modifiedFiles = Collections.unmodifiableSet(modifiedFiles);
+		this.removedFiles = Collections.unmodifiableSet(removedFiles);
+		this.changedLibraryClasses = Collections.unmodifiableSet(changedLibraryClasses);
+	}
+
+	public Set<File> getAddedFiles() {
+		return addedFiles;
+	}
+
+	public Set<File> getModifiedFiles() {
+		return modifiedFiles;
+	}
+
+	/**
+	 * The added and modified class files.
+	 */
+	public Set<File> getChangedFiles() {
+		return union(addedFiles, modifiedFiles);
+	}
+
+	public Set<File> getRemovedFiles() {
+		return removedFiles;
+	}
+
+	/**
+	 * The names of the classes added, changed or removed in library jars.
+	 */
+	public Set<String> getChangedLibraryClasses() {
+		return changedLibraryClasses;
+	}
+
+	public boolean isEmpty() {
+		return addedFiles.isEmpty() && modifiedFiles.isEmpty() && removedFiles.isEmpty() && changedLibraryClasses.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "Added: " + addedFiles + ", modified: " + modifiedFiles + ", removed: " + removedFiles + ", library classes changed: " + changedLibraryClasses.size();
+	}
+}
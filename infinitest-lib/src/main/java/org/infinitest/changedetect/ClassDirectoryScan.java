@@ -0,0 +1,87 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.changedetect;
+
+import static java.lang.Character.*;
+import static java.nio.file.FileVisitResult.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Lists the class files of a class directory with their modification time,
+ * read along with the directory entries instead of one file at a time.
+ */
+class ClassDirectoryScan implements Callable<Map<File, Long>> {
+	private final File classDirectory;
+
+	ClassDirectoryScan(File classDirectory) {
+		this.classDirectory = classDirectory;
+	}
+
+	@Override
+	public Map<File, Long> call() throws IOException {
+		final Map<File, Long> timestamps = new HashMap<File, Long>();
+		if (!classDirectory.isDirectory()) {
+			return timestamps;
+		}
+
+		final Path root = classDirectory.toPath();
+		Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+				if (!directory.equals(root) && !isJavaIdentifierStart(directory.getFileName().toString().charAt(0))) {
+					return SKIP_SUBTREE;
+				}
+				return CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+				if (attributes.isRegularFile() && isClassFile(file.getFileName().toString())) {
+					timestamps.put(file.toFile(), attributes.lastModifiedTime().toMillis());
+				}
+				return CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				// Probably removed while we were scanning
+				return CONTINUE;
+			}
+		});
+		return timestamps;
+	}
+
+	private static boolean isClassFile(String fileName) {
+		return fileName.regionMatches(true, fileName.length() - ".class".length(), ".class", 0, ".class".length());
+	}
+}
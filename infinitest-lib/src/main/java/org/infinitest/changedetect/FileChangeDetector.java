@@ -27,18 +27,34 @@
  */
 package org.infinitest.changedetect;
 
+import static com.google.common.base.Splitter.*;
+import static java.io.File.*;
 import static java.lang.Character.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.logging.*;
 
 import org.infinitest.*;
 import org.infinitest.util.*;
 
+import com.google.common.base.Throwables;
+import com.google.common.hash.*;
+import com.google.common.io.Files;
+
 public class FileChangeDetector implements ChangeDetector {
+	private static final ForkJoinPool SCANNING_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
 	private Map<File, Long> timestampIndex;
+	private Map<File, Long> contentIndex;
+	private final LibraryJarIndex libraryJarIndex = new LibraryJarIndex();
 	private File[] classDirectories;
+	private ClasspathProvider classpath;
+	private List<File> libraryJars;
+	private boolean detectChangesByContent;
+	private boolean detectLibraryChanges;
+	private boolean scanInParallel;
 
 	public FileChangeDetector() {
 		classDirectories = new File[0];
@@ -50,43 +66,186 @@ public class FileChangeDetector implements ChangeDetector {
 		clear();
 		List<File> classDirs = classpath.classDirectoriesInClasspath();
 		classDirectories = classDirs.toArray(new File[classDirs.size()]);
+		this.classpath = classpath;
+		libraryJars = null;
 	}
 
 	@Override
-	public synchronized Set<File> findChangedFiles() throws IOException {
-		return findFiles(classDirectories, false);
+	public void close() {
+		// Nothing is held between scans
+	}
+
+	/**
+	 * Scans the class directories once, and tells the added, modified and
+	 * removed class files apart by comparing them with the previous scan.
+	 */
+	@Override
+	public synchronized ChangeSet findChanges() throws IOException {
+		Map<File, Long> classFiles = scanClassDirectories();
+		Set<File> addedFiles = new HashSet<File>();
+		Set<File> modifiedFiles = new HashSet<File>();
+		for (Map.Entry<File, Long> classFile : classFiles.entrySet()) {
+			boolean indexed = isIndexed(classFile.getKey());
+			if (updateTimestamp(classFile.getKey(), classFile.getValue())) {
+				(indexed ? modifiedFiles : addedFiles).add(classFile.getKey());
+				InfinitestUtils.log(Level.FINEST, "Class file added to changelist " + classFile.getKey());
+			}
+		}
+
+		Set<File> removedFiles = new HashSet<File>();
+		for (File each : timestampIndex.keySet()) {
+			if (!classFiles.containsKey(each)) {
+				removedFiles.add(each);
+			}
+		}
+		for (File each : removedFiles) {
+			forget(each);
+		}
+		return new ChangeSet(addedFiles, modifiedFiles, removedFiles, findChangedLibraryClasses());
+	}
+
+	// Every class file of the class directories, with its modification time
+	private Map<File, Long> scanClassDirectories() throws IOException {
+		if (scanInParallel) {
+			return scanClassDirectoriesInParallel();
+		}
+		Map<File, Long> classFiles = new HashMap<File, Long>();
+		findClassFiles(classDirectories, false, classFiles);
+		return classFiles;
+	}
+
+	private Map<File, Long> scanClassDirectoriesInParallel() throws IOException {
+		List<ClassDirectoryScan> scans = new ArrayList<ClassDirectoryScan>();
+		for (File each : classDirectories) {
+			scans.add(new ClassDirectoryScan(each));
+		}
+		Map<File, Long> classFiles = new HashMap<File, Long>();
+		for (Future<Map<File, Long>> scan : SCANNING_POOL.invokeAll(scans)) {
+			classFiles.putAll(scanResult(scan));
+		}
+		return classFiles;
+	}
+
+	private static Map<File, Long> scanResult(Future<Map<File, Long>> scan) throws IOException {
+		try {
+			return scan.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while scanning class directories");
+		} catch (ExecutionException e) {
+			Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+			throw Throwables.propagate(e.getCause());
+		}
 	}
 
-	private Set<File> findFiles(File[] classesOrDirectories, boolean isPackage) throws IOException {
-		Set<File> changedFiles = new HashSet<File>();
+	private void findClassFiles(File[] classesOrDirectories, boolean isPackage, Map<File, Long> classFiles) {
 		for (File classFileOrDirectory : classesOrDirectories) {
 			if (classFileOrDirectory.isDirectory() && hasValidName(classFileOrDirectory, isPackage)) {
-				findChildren(changedFiles, classFileOrDirectory);
-			} else if (ClassFileFilter.isClassFile(classFileOrDirectory)) {
-				File classFile = classFileOrDirectory;
-				Long timestamp = timestampIndex.get(classFile);
-				if ((timestamp == null) || (getModificationTimestamp(classFile) != timestamp)) {
-					timestampIndex.put(classFile, getModificationTimestamp(classFile));
-					changedFiles.add(classFile);
-					InfinitestUtils.log(Level.FINEST, "Class file added to changelist " + classFile);
+				File[] children = childrenOf(classFileOrDirectory);
+				if (children != null) {
+					findClassFiles(children, true, classFiles);
 				}
+			} else if (ClassFileFilter.isClassFile(classFileOrDirectory)) {
+				classFiles.put(classFileOrDirectory, getModificationTimestamp(classFileOrDirectory));
 			}
 		}
-		return changedFiles;
 	}
 
-	private void findChildren(Set<File> changedFiles, File classFileOrDirectory) throws IOException {
-		File[] children = childrenOf(classFileOrDirectory);
-		if (children != null) {
-			changedFiles.addAll(findFiles(children, true));
+	/**
+	 * Records the current modification timestamp of a class file.
+	 * 
+	 * @return true if the class file is new or its timestamp has changed (and
+	 *         its contents too, when detecting changes by content)
+	 */
+	protected boolean updateTimestamp(File classFile) {
+		return updateTimestamp(classFile, getModificationTimestamp(classFile));
+	}
+
+	private boolean updateTimestamp(File classFile, long modificationTimestamp) {
+		Long timestamp = timestampIndex.get(classFile);
+		if ((timestamp == null) || (modificationTimestamp != timestamp)) {
+			timestampIndex.put(classFile, modificationTimestamp);
+			return !detectChangesByContent || updateContentDigest(classFile);
 		}
+		return false;
+	}
+
+	private boolean updateContentDigest(File classFile) {
+		Long digest = contentIndex.get(classFile);
+		long newDigest;
+		try {
+			newDigest = getContentDigest(classFile);
+		} catch (IOException e) {
+			// Probably removed after we listed it, let the parser deal with it
+			contentIndex.remove(classFile);
+			return true;
+		}
+		if ((digest == null) || (newDigest != digest)) {
+			contentIndex.put(classFile, newDigest);
+			return true;
+		}
+		InfinitestUtils.log(Level.FINEST, "Class file rewritten with identical contents " + classFile);
+		return false;
+	}
+
+	protected long getContentDigest(File classFile) throws IOException {
+		return Files.hash(classFile, Hashing.murmur3_128()).asLong();
+	}
+
+	/**
+	 * When set, a class file whose timestamp changed is only reported as
+	 * changed if its contents changed too. Incremental compilers often rewrite
+	 * class files with the exact same bytes.
+	 */
+	public synchronized void setDetectChangesByContent(boolean detectChangesByContent) {
+		this.detectChangesByContent = detectChangesByContent;
+	}
+
+	@Override
+	public synchronized Set<String> findChangedLibraryClasses() {
+		if (!detectLibraryChanges || (classpath == null)) {
+			return Collections.emptySet();
+		}
+		if (libraryJars == null) {
+			libraryJars = new ArrayList<File>();
+			for (String each : on(pathSeparator).omitEmptyStrings().split(classpath.getCompleteClasspath())) {
+				if (each.endsWith(".jar")) {
+					libraryJars.add(new File(each));
+				}
+			}
+		}
+		return libraryJarIndex.findChangedClasses(libraryJars);
+	}
+
+	/**
+	 * When set, the jars of the classpath are watched too, and the classes
+	 * that changed in them are reported by {@link #findChangedLibraryClasses()}.
+	 */
+	public synchronized void setDetectLibraryChanges(boolean detectLibraryChanges) {
+		this.detectLibraryChanges = detectLibraryChanges;
+	}
+
+	/**
+	 * When set, the class directories are scanned concurrently, reading the
+	 * modification time of each class file along with its directory entry.
+	 */
+	public synchronized void setScanInParallel(boolean scanInParallel) {
+		this.scanInParallel = scanInParallel;
+	}
+
+	protected boolean isIndexed(File classFile) {
+		return timestampIndex.containsKey(classFile);
+	}
+
+	protected File[] getClassDirectories() {
+		return classDirectories;
 	}
 
 	protected File[] childrenOf(File directory) {
 		return directory.listFiles(new ClassFileFilter());
 	}
 
-	private boolean hasValidName(File classfileOrDirectory, boolean isPackage) {
+	protected boolean hasValidName(File classfileOrDirectory, boolean isPackage) {
 		return !isPackage || isJavaIdentifierStart(classfileOrDirectory.getName().charAt(0));
 	}
 
@@ -97,20 +256,12 @@ public class FileChangeDetector implements ChangeDetector {
 	@Override
 	public synchronized void clear() {
 		timestampIndex = new HashMap<File, Long>();
+		contentIndex = new HashMap<File, Long>();
+		libraryJarIndex.clear();
 	}
 
-	private Set<File> findRemovedFiles() {
-		Set<File> removedFiles = new HashSet<File>();
-		for (File key : timestampIndex.keySet()) {
-			if (!key.exists()) {
-				removedFiles.add(key);
-			}
-		}
-		return removedFiles;
-	}
-
-	@Override
-	public synchronized boolean filesWereRemoved() {
-		return !findRemovedFiles().isEmpty();
+	protected void forget(File classFile) {
+		timestampIndex.remove(classFile);
+		contentIndex.remove(classFile);
 	}
 }
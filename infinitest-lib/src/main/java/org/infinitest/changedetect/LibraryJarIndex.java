@@ -0,0 +1,152 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.changedetect;
+
+import static com.google.common.collect.Maps.*;
+import static com.google.common.collect.Sets.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.*;
+import java.util.zip.*;
+
+/**
+ * The CRC of each class of the library jars of a classpath, read from their
+ * central directory, to tell which classes changed when a jar is replaced.
+ */
+class LibraryJarIndex {
+	private final Map<File, JarEntries> entriesByJar = newHashMap();
+
+	/**
+	 * Returns the names of the classes that were added, changed or removed in
+	 * the given jars since this was last called. Jars seen for the first time
+	 * are only recorded.
+	 */
+	Set<String> findChangedClasses(Collection<File> jars) {
+		Set<String> changedClasses = newHashSet();
+		for (File jar : jars) {
+			JarEntries previousEntries = entriesByJar.get(jar);
+			if ((previousEntries != null) && previousEntries.isStampedWith(jar)) {
+				continue;
+			}
+			JarEntries newEntries;
+			try {
+				newEntries = JarEntries.read(jar);
+			} catch (IOException e) {
+				// Probably still being written, try again next time
+				log(Level.CONFIG, "Could not read library jar " + jar + ": " + e.getMessage());
+				continue;
+			}
+			if (previousEntries != null) {
+				previousEntries.addChangedClasses(newEntries, changedClasses);
+				log(Level.FINE, "Library jar changed " + jar);
+			}
+			entriesByJar.put(jar, newEntries);
+		}
+		return changedClasses;
+	}
+
+	void clear() {
+		entriesByJar.clear();
+	}
+
+	private static class JarEntries {
+		private final long length;
+		private final long lastModified;
+		// Sorted by name
+		private final String[] classNames;
+		private final long[] crcs;
+
+		private JarEntries(long length, long lastModified, SortedMap<String, Long> crcByClassName) {
+			this.length = length;
+			this.lastModified = lastModified;
+			classNames = new String[crcByClassName.size()];
+			crcs = new long[crcByClassName.size()];
+			int i = 0;
+			for (Map.Entry<String, Long> each : crcByClassName.entrySet()) {
+				classNames[i] = each.getKey();
+				crcs[i] = each.getValue();
+				i++;
+			}
+		}
+
+		static JarEntries read(File jar) throws IOException {
+			// Stamped before reading, so a jar rewritten meanwhile is read again
+			long length = jar.length();
+			long lastModified = jar.lastModified();
+			SortedMap<String, Long> crcByClassName = newTreeMap();
+			if (jar.isFile()) {
+				ZipFile zipFile = new ZipFile(jar);
+				try {
+					for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+						ZipEntry entry = entries.nextElement();
+						String entryName = entry.getName();
+						if (entryName.endsWith(".class") && !entryName.startsWith("META-INF/")) {
+							crcByClassName.put(entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.'), entry.getCrc());
+						}
+					}
+				} finally {
+					zipFile.close();
+				}
+			}
+			return new JarEntries(length, lastModified, crcByClassName);
+		}
+
+		boolean isStampedWith(File jar) {
+			return (length == jar.length()) && (lastModified == jar.lastModified());
+		}
+
+		void addChangedClasses(JarEntries newEntries, Set<String> changedClasses) {
+			int i = 0;
+			int j = 0;
+			while ((i < classNames.length) || (j < newEntries.classNames.length)) {
+				int comparison;
+				if (i == classNames.length) {
+					comparison = 1;
+				} else if (j == newEntries.classNames.length) {
+					comparison = -1;
+				} else {
+					comparison = classNames[i].compareTo(newEntries.classNames[j]);
+				}
+
+				if (comparison < 0) {
+					changedClasses.add(classNames[i++]);
+				} else if (comparison > 0) {
+					changedClasses.add(newEntries.classNames[j++]);
+				} else {
+					if (crcs[i] != newEntries.crcs[j]) {
+						changedClasses.add(classNames[i]);
+					}
+					i++;
+					j++;
+				}
+			}
+		}
+	}
+}
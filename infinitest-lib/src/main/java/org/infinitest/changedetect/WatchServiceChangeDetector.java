@@ -0,0 +1,244 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.changedetect;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+import static java.util.logging.Level.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.infinitest.*;
+
+/**
+ * A {@link ChangeDetector} that registers the class directories with a
+ * {@link WatchService} (inotify on Linux) and builds the set of changed files
+ * from the events collected since the last update, so that the cost of an
+ * update depends on the number of changed files rather than the size of the
+ * output tree.
+ * <p/>
+ * The class directories are scanned completely on the first update, after a
+ * {@link #clear()}, and whenever the watch service reports an overflow or a
+ * watched directory goes away.
+ */
+public class WatchServiceChangeDetector extends FileChangeDetector {
+	private final Map<WatchKey, Path> watchedDirectories;
+	private final Set<File> pendingChanges;
+	private final Set<File> pendingRemovals;
+	private WatchService watchService;
+	private boolean rescanRequired;
+
+	public WatchServiceChangeDetector() {
+		watchedDirectories = new HashMap<WatchKey, Path>();
+		pendingChanges = new HashSet<File>();
+		pendingRemovals = new HashSet<File>();
+		rescanRequired = true;
+	}
+
+	@Override
+	public synchronized void setClasspathProvider(ClasspathProvider classpath) {
+		super.setClasspathProvider(classpath);
+		closeWatchService();
+	}
+
+	@Override
+	public synchronized void close() {
+		closeWatchService();
+	}
+
+	@Override
+	public synchronized ChangeSet findChanges() throws IOException {
+		if (rescanIfRequired()) {
+			return super.findChanges();
+		}
+
+		Set<File> removedFiles = takePendingRemovals();
+		Set<File> addedFiles = new HashSet<File>();
+		Set<File> modifiedFiles = new HashSet<File>();
+		takePendingChanges(addedFiles, modifiedFiles);
+		return new ChangeSet(addedFiles, modifiedFiles, removedFiles, findChangedLibraryClasses());
+	}
+
+	// Collects the events received since the last update, and registers the
+	// class directories again when they have to be scanned completely
+	private boolean rescanIfRequired() throws IOException {
+		processEvents();
+		if (rescanRequired) {
+			registerClassDirectories();
+			return true;
+		}
+		return false;
+	}
+
+	private void takePendingChanges(Set<File> addedFiles, Set<File> modifiedFiles) {
+		for (File file : pendingChanges) {
+			boolean indexed = isIndexed(file);
+			if (file.isFile() && updateTimestamp(file)) {
+				(indexed ? modifiedFiles : addedFiles).add(file);
+				log(FINEST, "Class file added to changelist " + file);
+			}
+		}
+		pendingChanges.clear();
+	}
+
+	private Set<File> takePendingRemovals() {
+		Set<File> removedFiles = new HashSet<File>();
+		for (File file : pendingRemovals) {
+			// Deleted and written again is a change, not a removal
+			if (!file.exists()) {
+				removedFiles.add(file);
+				forget(file);
+			}
+		}
+		pendingRemovals.clear();
+		return removedFiles;
+	}
+
+	@Override
+	public synchronized void clear() {
+		super.clear();
+		// Called from the super constructor, before our fields are initialized
+		if (pendingChanges != null) {
+			pendingChanges.clear();
+			pendingRemovals.clear();
+			rescanRequired = true;
+		}
+	}
+
+	private void registerClassDirectories() throws IOException {
+		log(CONFIG, "Registering class directories with the file system watch service");
+		pendingChanges.clear();
+		pendingRemovals.clear();
+		if (watchService == null) {
+			watchService = FileSystems.getDefault().newWatchService();
+		}
+		for (File classDirectory : getClassDirectories()) {
+			registerTree(classDirectory, false);
+		}
+		// Events that arrived during registration are already covered by the
+		// scan below
+		discardEvents();
+		rescanRequired = false;
+	}
+
+	private void registerTree(File directory, boolean isPackage) throws IOException {
+		if (!directory.isDirectory() || !hasValidName(directory, isPackage)) {
+			return;
+		}
+		Path path = directory.toPath();
+		WatchKey key = path.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+		watchedDirectories.put(key, path);
+
+		File[] children = childrenOf(directory);
+		if (children != null) {
+			for (File child : children) {
+				if (child.isDirectory()) {
+					registerTree(child, true);
+				}
+			}
+		}
+	}
+
+	private void processEvents() throws IOException {
+		if (watchService == null || rescanRequired) {
+			return;
+		}
+
+		WatchKey key;
+		while ((key = watchService.poll()) != null) {
+			Path directory = watchedDirectories.get(key);
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == OVERFLOW) {
+					log(CONFIG, "File system events were lost, rescanning class directories");
+					rescanRequired = true;
+				} else if (directory != null) {
+					processEvent(event.kind(), directory.resolve((Path) event.context()).toFile());
+				}
+			}
+			if (!key.reset()) {
+				// The directory itself went away
+				watchedDirectories.remove(key);
+				rescanRequired = true;
+			}
+		}
+	}
+
+	private void processEvent(WatchEvent.Kind<?> kind, File file) throws IOException {
+		if (ClassFileFilter.isClassFile(file)) {
+			if (kind == ENTRY_DELETE) {
+				pendingChanges.remove(file);
+				if (isIndexed(file)) {
+					pendingRemovals.add(file);
+				}
+			} else {
+				pendingChanges.add(file);
+			}
+		} else if (kind == ENTRY_CREATE && file.isDirectory()) {
+			// Class files may have been written before the new package was
+			// registered
+			registerTree(file, true);
+			addClassFilesIn(file);
+		}
+	}
+
+	private void addClassFilesIn(File directory) {
+		File[] children = childrenOf(directory);
+		if (children != null) {
+			for (File child : children) {
+				if (child.isDirectory()) {
+					addClassFilesIn(child);
+				} else if (ClassFileFilter.isClassFile(child)) {
+					pendingChanges.add(child);
+				}
+			}
+		}
+	}
+
+	private void discardEvents() {
+		WatchKey key;
+		while ((key = watchService.poll()) != null) {
+			key.pollEvents();
+			key.reset();
+		}
+	}
+
+	private void closeWatchService() {
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				log(WARNING, "Could not close file system watch service");
+			}
+			watchService = null;
+		}
+		watchedDirectories.clear();
+		rescanRequired = true;
+	}
+}
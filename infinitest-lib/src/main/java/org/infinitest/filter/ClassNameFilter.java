@@ -53,6 +53,14 @@ public class ClassNameFilter {
 		return false;
 	}
 
+	protected List<String> getFilterExpressions() {
+		List<String> expressions = newArrayList();
+		for (Pattern pattern : filters) {
+			expressions.add(pattern.pattern());
+		}
+		return expressions;
+	}
+
 	public void addFilter(String regex) {
 		if (isValidFilter(regex)) {
 			filters.add(Pattern.compile(regex));
@@ -31,6 +31,7 @@ import static java.util.logging.Level.*;
 import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
+import java.util.*;
 
 import com.google.common.io.*;
 
@@ -54,15 +55,17 @@ public class RegexFileFilter extends ClassNameFilter implements TestFilter {
 	}
 
 	@Override
-	public void updateFilterList() {
+	public boolean updateFilterList() {
 		if (file == null) {
-			return;
+			return false;
 		}
 
+		List<String> previousFilters = getFilterExpressions();
 		clearFilters();
 		if (file.exists()) {
 			tryToReadFilterFile();
 		}
+		return !getFilterExpressions().equals(previousFilters);
 	}
 
 	private void tryToReadFilterFile() {
@@ -38,8 +38,11 @@ public interface TestFilter {
 	 * Forces an update of the filter, if controlled by an external resource.
 	 * This may be necessary if a test class has been removed or added from the
 	 * dependency graph.
+	 * 
+	 * @return <code>true</code> if the filters changed since they were last
+	 *         updated
 	 */
-	void updateFilterList();
+	boolean updateFilterList();
 
 	/**
 	 * Check if a test class (identified by the fully qualified name) should be
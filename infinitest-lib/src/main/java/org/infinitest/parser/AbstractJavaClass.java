@@ -27,7 +27,17 @@
  */
 package org.infinitest.parser;
 
+import java.util.*;
+
 public abstract class AbstractJavaClass implements JavaClass {
+	/**
+	 * No supertypes are known for classes that are not parsed.
+	 */
+	@Override
+	public Set<String> getSupertypes() {
+		return Collections.emptySet();
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		return (obj instanceof JavaClass) && ((JavaClass) obj).getName().equals(getName());
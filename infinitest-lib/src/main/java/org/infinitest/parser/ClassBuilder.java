@@ -28,11 +28,20 @@
 package org.infinitest.parser;
 
 import java.io.*;
+import java.util.*;
 
 interface ClassBuilder {
 	JavaClass createClass(String classname);
 
+	/**
+	 * Can be called from several threads at once.
+	 */
 	JavaClass loadClass(File file);
 
 	void clear();
+
+	/**
+	 * Forgets what was learnt about classes that changed or were removed.
+	 */
+	void invalidate(Collection<String> classNames);
 }
\ No newline at end of file
@@ -0,0 +1,348 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Maps.*;
+import static com.google.common.collect.Sets.*;
+
+import java.util.*;
+
+/**
+ * Directed graph of the dependencies between classes. Each class gets a dense
+ * int id, and the edges are kept in both directions as arrays of ids, instead
+ * of an object per edge.
+ */
+class ClassDependencyGraph {
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int[] NO_EDGES = new int[0];
+
+	private final Map<String, Integer> ids;
+	private JavaClass[] classes;
+	private int[][] successors;
+	private int[] successorCounts;
+	private int[][] predecessors;
+	private int[] predecessorCounts;
+	private int[] freeIds;
+	private int freeIdCount;
+	private int nextId;
+	private TestReachability reachability;
+
+	ClassDependencyGraph() {
+		ids = newHashMap();
+		classes = new JavaClass[INITIAL_CAPACITY];
+		successors = new int[INITIAL_CAPACITY][];
+		successorCounts = new int[INITIAL_CAPACITY];
+		predecessors = new int[INITIAL_CAPACITY][];
+		predecessorCounts = new int[INITIAL_CAPACITY];
+		freeIds = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * @return false if a class with the same name is already in the graph
+	 */
+	boolean addVertex(JavaClass javaClass) {
+		if (ids.containsKey(javaClass.getName())) {
+			return false;
+		}
+		int id = newId();
+		ids.put(javaClass.getName(), id);
+		classes[id] = javaClass;
+		successors[id] = NO_EDGES;
+		predecessors[id] = NO_EDGES;
+		if (reachability != null) {
+			reachability.vertexAdded(id);
+		}
+		return true;
+	}
+
+	/**
+	 * Replaces the class with the same name. The classes that depended on it
+	 * still do, but its own dependencies are dropped.
+	 */
+	void replaceVertex(JavaClass javaClass) {
+		int id = idOf(javaClass);
+		removeSuccessors(id);
+		classes[id] = javaClass;
+		if (reachability != null) {
+			reachability.vertexReplaced(id);
+		}
+	}
+
+	void removeVertex(JavaClass javaClass) {
+		int id = idOf(javaClass);
+		removeSuccessors(id);
+		for (int i = 0; i < predecessorCounts[id]; i++) {
+			removeId(successors, successorCounts, predecessors[id][i], id);
+			if (reachability != null) {
+				reachability.edgeRemoved(predecessors[id][i], id);
+			}
+		}
+		if (reachability != null) {
+			reachability.vertexRemoved(id);
+		}
+		ids.remove(javaClass.getName());
+		classes[id] = null;
+		successors[id] = null;
+		predecessors[id] = null;
+		successorCounts[id] = 0;
+		predecessorCounts[id] = 0;
+		freeIds = grow(freeIds, freeIdCount + 1);
+		freeIds[freeIdCount++] = id;
+	}
+
+	boolean containsVertex(JavaClass javaClass) {
+		return ids.containsKey(javaClass.getName());
+	}
+
+	JavaClass findClass(String classname) {
+		Integer id = ids.get(classname);
+		if (id == null) {
+			return null;
+		}
+		return classes[id];
+	}
+
+	/**
+	 * Adds a dependency from the parent class to the child class, unless there
+	 * is one already.
+	 */
+	void addEdge(JavaClass parent, JavaClass child) {
+		int parentId = idOf(parent);
+		int childId = idOf(child);
+		// Check the shorter list
+		boolean exists;
+		if (successorCounts[parentId] < predecessorCounts[childId]) {
+			exists = contains(successors[parentId], successorCounts[parentId], childId);
+		} else {
+			exists = contains(predecessors[childId], predecessorCounts[childId], parentId);
+		}
+		if (!exists) {
+			addId(successors, successorCounts, parentId, childId);
+			addId(predecessors, predecessorCounts, childId, parentId);
+			if (reachability != null) {
+				reachability.edgeAdded(parentId, childId);
+			}
+		}
+	}
+
+	/**
+	 * The classes that depend directly on the given class.
+	 */
+	List<JavaClass> predecessorsOf(JavaClass javaClass) {
+		int id = idOf(javaClass);
+		return classesOf(predecessors[id], predecessorCounts[id]);
+	}
+
+	/**
+	 * The classes the given class depends on directly.
+	 */
+	List<JavaClass> successorsOf(JavaClass javaClass) {
+		int id = idOf(javaClass);
+		return classesOf(successors[id], successorCounts[id]);
+	}
+
+	/**
+	 * The given classes and every class that depends on them, directly or
+	 * not. Classes that are not in the graph are ignored.
+	 */
+	Set<JavaClass> findDependentClasses(Collection<JavaClass> javaClasses) {
+		BitSet visited = new BitSet(nextId);
+		int[] stack = new int[INITIAL_CAPACITY];
+		int stackSize = 0;
+		for (JavaClass each : javaClasses) {
+			Integer id = ids.get(each.getName());
+			if ((id != null) && !visited.get(id)) {
+				visited.set(id);
+				stack = grow(stack, stackSize + 1);
+				stack[stackSize++] = id;
+			}
+		}
+		while (stackSize > 0) {
+			int id = stack[--stackSize];
+			for (int i = 0; i < predecessorCounts[id]; i++) {
+				int parentId = predecessors[id][i];
+				if (!visited.get(parentId)) {
+					visited.set(parentId);
+					stack = grow(stack, stackSize + 1);
+					stack[stackSize++] = parentId;
+				}
+			}
+		}
+
+		Set<JavaClass> dependentClasses = newHashSetWithExpectedSize(visited.cardinality());
+		for (int id = visited.nextSetBit(0); id >= 0; id = visited.nextSetBit(id + 1)) {
+			dependentClasses.add(classes[id]);
+		}
+		return dependentClasses;
+	}
+
+	/**
+	 * The tests among the given classes and the classes that depend on them.
+	 */
+	Set<JavaClass> findDependentTests(Collection<JavaClass> javaClasses) {
+		if (reachability != null) {
+			return reachability.findDependentTests(javaClasses);
+		}
+		Set<JavaClass> dependentTests = newHashSet();
+		for (JavaClass each : findDependentClasses(javaClasses)) {
+			if (each.isATest()) {
+				dependentTests.add(each);
+			}
+		}
+		return dependentTests;
+	}
+
+	/**
+	 * Keeps a {@link TestReachability} up to date, so that the tests that
+	 * depend on classes are found without walking the graph.
+	 */
+	void trackTestReachability() {
+		if (reachability == null) {
+			reachability = new TestReachability(this);
+		}
+	}
+
+	List<JavaClass> getClasses() {
+		List<JavaClass> vertices = newArrayListWithCapacity(ids.size());
+		for (int id = 0; id < nextId; id++) {
+			if (classes[id] != null) {
+				vertices.add(classes[id]);
+			}
+		}
+		return vertices;
+	}
+
+	Set<String> getClassNames() {
+		return newHashSet(ids.keySet());
+	}
+
+	// Low level access for TestReachability, by id
+
+	int idCapacity() {
+		return nextId;
+	}
+
+	Integer findId(String classname) {
+		return ids.get(classname);
+	}
+
+	JavaClass classWithId(int id) {
+		return classes[id];
+	}
+
+	int successorCount(int id) {
+		return successorCounts[id];
+	}
+
+	int successor(int id, int index) {
+		return successors[id][index];
+	}
+
+	int predecessorCount(int id) {
+		return predecessorCounts[id];
+	}
+
+	int predecessor(int id, int index) {
+		return predecessors[id][index];
+	}
+
+	private int idOf(JavaClass javaClass) {
+		Integer id = ids.get(javaClass.getName());
+		if (id == null) {
+			throw new IllegalArgumentException("Not in the dependency graph: " + javaClass.getName());
+		}
+		return id;
+	}
+
+	private int newId() {
+		if (freeIdCount > 0) {
+			return freeIds[--freeIdCount];
+		}
+		if (nextId == classes.length) {
+			int capacity = classes.length * 2;
+			classes = Arrays.copyOf(classes, capacity);
+			successors = Arrays.copyOf(successors, capacity);
+			successorCounts = Arrays.copyOf(successorCounts, capacity);
+			predecessors = Arrays.copyOf(predecessors, capacity);
+			predecessorCounts = Arrays.copyOf(predecessorCounts, capacity);
+		}
+		return nextId++;
+	}
+
+	private void removeSuccessors(int id) {
+		for (int i = 0; i < successorCounts[id]; i++) {
+			removeId(predecessors, predecessorCounts, successors[id][i], id);
+			if (reachability != null) {
+				reachability.edgeRemoved(id, successors[id][i]);
+			}
+		}
+		successors[id] = NO_EDGES;
+		successorCounts[id] = 0;
+	}
+
+	private List<JavaClass> classesOf(int[] edges, int count) {
+		List<JavaClass> edgeClasses = newArrayListWithCapacity(count);
+		for (int i = 0; i < count; i++) {
+			edgeClasses.add(classes[edges[i]]);
+		}
+		return edgeClasses;
+	}
+
+	private static void addId(int[][] lists, int[] counts, int listId, int id) {
+		lists[listId] = grow(lists[listId], counts[listId] + 1);
+		lists[listId][counts[listId]++] = id;
+	}
+
+	private static void removeId(int[][] lists, int[] counts, int listId, int id) {
+		int[] list = lists[listId];
+		for (int i = 0; i < counts[listId]; i++) {
+			if (list[i] == id) {
+				// Order doesn't matter, move the last id into the gap
+				list[i] = list[--counts[listId]];
+				return;
+			}
+		}
+	}
+
+	private static boolean contains(int[] list, int count, int id) {
+		for (int i = 0; i < count; i++) {
+			if (list[i] == id) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int[] grow(int[] list, int minCapacity) {
+		if (list.length >= minCapacity) {
+			return list;
+		}
+		return Arrays.copyOf(list, Math.max(minCapacity, list.length + (list.length >> 1) + 2));
+	}
+}
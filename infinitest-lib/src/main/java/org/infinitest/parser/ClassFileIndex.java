@@ -27,22 +27,41 @@
  */
 package org.infinitest.parser;
 
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Maps.*;
 import static com.google.common.collect.Sets.*;
-import static org.jgrapht.Graphs.*;
+import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
 
 import org.infinitest.*;
-import org.jgrapht.*;
-import org.jgrapht.graph.*;
 
 import com.google.common.annotations.*;
 import com.google.common.collect.*;
 
 public class ClassFileIndex {
+	private static final int PARALLEL_PARSING_THRESHOLD = 64;
+	private static final int PARSING_BATCH_SIZE = 16;
+	// Shared by every index, so that several cores do not use more threads
+	// than there are processors
+	private static final ForkJoinPool PARSING_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
 	private final ClassBuilder builder;
-	private DirectedGraph<JavaClass, DefaultEdge> graph;
+	private boolean parallelParsing = true;
+	private boolean trackTestReachability;
+	private JarSymbolTable jarSymbolTable;
+	private ClassDependencyGraph graph;
+	private Map<String, Long> classFileTimestamps;
+	private Map<File, RestoredJavaClass> restoredClasses;
+	private BiMap<File, String> classNamesByFile;
+	private SetMultimap<String, String> danglingReferences;
+	private SetMultimap<String, String> subclasses;
+	private SetMultimap<String, String> importers;
+	private Set<String> testClasses;
+	private Set<String> disabledTests;
 
 	public ClassFileIndex(ClasspathProvider classpath) {
 		this(new JavaClassBuilder(classpath));
@@ -51,63 +70,200 @@ public class ClassFileIndex {
 	@VisibleForTesting
 	ClassFileIndex(ClassBuilder classBuilder) {
 		builder = classBuilder;
-		graph = new DefaultDirectedGraph<JavaClass, DefaultEdge>(DefaultEdge.class);
+		clear();
 	}
 
 	public Set<JavaClass> findClasses(Collection<File> changedFiles) {
+		refreshJarSymbolTable();
+		if (jarSymbolTable != null) {
+			jarSymbolTable.addClassFiles(changedFiles);
+		}
 		Set<JavaClass> changedClasses = newHashSet();
+		List<File> filesToParse = newArrayList();
 		for (File file : changedFiles) {
-			JavaClass javaClass = loadClassFromFile(file);
-			if (javaClass != null) {
+			JavaClass javaClass = findRestoredClass(file);
+			if (javaClass == null) {
+				filesToParse.add(file);
+			} else {
 				changedClasses.add(javaClass);
 			}
 		}
+		invalidateIndexedClasses(filesToParse);
+		List<JavaClass> loadedClasses = loadClassesFromFiles(filesToParse);
+		List<JavaClass> reclassifiedClasses = reclassifySubclassesOf(loadedClasses, filesToParse);
+		// Restored subclasses that were parsed again are replaced
+		changedClasses.removeAll(reclassifiedClasses);
+		changedClasses.addAll(loadedClasses);
+		changedClasses.addAll(reclassifiedClasses);
 		builder.clear();
 		return changedClasses;
 	}
 
+	// Whether a class is a test depends on its supertypes, so the subclasses
+	// of the parsed classes are parsed again, even if they did not change
+	private List<JavaClass> reclassifySubclassesOf(List<JavaClass> parsedClasses, List<File> parsedFiles) {
+		Set<File> files = newHashSet();
+		for (File each : parsedFiles) {
+			files.add(each.getAbsoluteFile());
+		}
+		List<File> subclassFiles = newArrayList();
+		Set<String> subclassNames = newHashSet();
+		Deque<String> supertypes = new ArrayDeque<String>(classNames(parsedClasses));
+		while (!supertypes.isEmpty()) {
+			for (String each : subclasses.get(supertypes.pop())) {
+				JavaClass subclass = findClass(each);
+				if ((subclass != null) && subclass.locatedInClassFile() && files.add(subclass.getClassFile().getAbsoluteFile())) {
+					subclassFiles.add(subclass.getClassFile());
+					subclassNames.add(each);
+					supertypes.push(each);
+				}
+			}
+		}
+		if (subclassFiles.isEmpty()) {
+			return Collections.emptyList();
+		}
+		builder.invalidate(subclassNames);
+		return loadClassesFromFiles(subclassFiles);
+	}
+
+	// What the builder learnt about the classes of these files, such as
+	// whether they inherit test methods, is wrong for them and for the classes
+	// that depend on them once they are parsed again
+	private void invalidateIndexedClasses(List<File> classFiles) {
+		Set<JavaClass> indexedClasses = newHashSet();
+		for (File each : classFiles) {
+			JavaClass indexedClass = findClass(each);
+			if (indexedClass != null) {
+				indexedClasses.add(indexedClass);
+			}
+		}
+		if (!indexedClasses.isEmpty()) {
+			builder.invalidate(classNames(findChangedParents(indexedClasses)));
+		}
+	}
+
+	private static Set<String> classNames(Collection<JavaClass> classes) {
+		Set<String> names = newHashSet();
+		for (JavaClass each : classes) {
+			names.add(each.getName());
+		}
+		return names;
+	}
+
+	// Parsing is done in parallel for large change sets, but the graph is
+	// only updated by the calling thread. Every class is added before any
+	// dependency, so that classes being loaded are not parsed again as
+	// dependencies of each other.
+	private List<JavaClass> loadClassesFromFiles(List<File> files) {
+		JavaClass[] classes = new JavaClass[files.size()];
+		long[] timestamps = new long[files.size()];
+		ParseTask parseTask = new ParseTask(files, classes, timestamps, 0, files.size());
+		if (parallelParsing && (files.size() > PARALLEL_PARSING_THRESHOLD)) {
+			PARSING_POOL.invoke(parseTask);
+		} else {
+			parseTask.parse();
+		}
+
+		List<JavaClass> loadedClasses = newArrayList();
+		for (int i = 0; i < classes.length; i++) {
+			if (classes[i] != null) {
+				classFileTimestamps.put(classes[i].getName(), timestamps[i]);
+				addToGraph(classes[i]);
+				putClassFile(files.get(i), classes[i]);
+				loadedClasses.add(classes[i]);
+			}
+		}
+		for (JavaClass each : loadedClasses) {
+			updateParentReferences(each);
+			restoreDanglingReferences(each);
+		}
+		return loadedClasses;
+	}
+
+	@VisibleForTesting
+	void setParallelParsing(boolean parallelParsing) {
+		this.parallelParsing = parallelParsing;
+	}
+
+	private JavaClass findRestoredClass(File file) {
+		RestoredJavaClass restoredClass = restoredClasses.remove(file.getAbsoluteFile());
+		if ((restoredClass != null) && restoredClass.isUpToDate() && (findClass(restoredClass.getName()) == restoredClass)) {
+			return restoredClass;
+		}
+		return null;
+	}
+
 	public JavaClass findJavaClass(String classname) {
 		JavaClass clazz = findClass(classname);
+		if ((clazz == null) && isInJar(classname)) {
+			return new ExternalClass(classname);
+		}
 		if (clazz == null) {
 			clazz = builder.createClass(classname);
 			if (clazz.locatedInClassFile()) {
-				addToIndex(clazz);
+				addToIndex(clazz, clazz.getClassFile().lastModified());
+				putClassFile(clazz.getClassFile(), clazz);
 			}
 		}
 		return clazz;
 	}
 
 	private JavaClass findClass(String classname) {
-		for (JavaClass jClass : graph.vertexSet()) {
-			if (jClass.getName().equals(classname)) {
-				return jClass;
-			}
-		}
-		return null;
+		return graph.findClass(classname);
 	}
 
-	private void addToIndex(JavaClass newClass) {
+	private JavaClass findClass(File classFile) {
+		String classname = classNamesByFile.get(classFile.getAbsoluteFile());
+		return (classname == null) ? null : findClass(classname);
+	}
+
+	// A class file holds a single class, and a class moved to another
+	// directory is no longer found in its old file
+	private void putClassFile(File classFile, JavaClass javaClass) {
+		classNamesByFile.forcePut(classFile.getAbsoluteFile(), javaClass.getName());
+	}
+
+	private void addToIndex(JavaClass newClass, long timestamp) {
+		classFileTimestamps.put(newClass.getName(), timestamp);
 		addToGraph(newClass);
 		updateParentReferences(newClass);
+		restoreDanglingReferences(newClass);
 	}
 
 	private void addToGraph(JavaClass newClass) {
-		if (!graph.addVertex(newClass)) {
-			replaceVertex(newClass);
+		JavaClass oldClass = findClass(newClass.getName());
+		if (oldClass == null) {
+			graph.addVertex(newClass);
+		} else {
+			removeNamesUsedBy(oldClass);
+			graph.replaceVertex(newClass);
+		}
+		addNamesUsedBy(newClass);
+		if (newClass.isATest()) {
+			testClasses.add(newClass.getName());
+			disabledTests.remove(newClass.getName());
+		} else if (testClasses.remove(newClass.getName())) {
+			disabledTests.add(newClass.getName());
 		}
 	}
 
-	private List<JavaClass> getParents(JavaClass childClass) {
-		return predecessorListOf(graph, childClass);
+	// Indexes the class by the names of its supertypes and imports, which
+	// don't have to be indexed classes
+	private void addNamesUsedBy(JavaClass javaClass) {
+		for (String each : javaClass.getSupertypes()) {
+			subclasses.put(each, javaClass.getName());
+		}
+		for (String each : javaClass.getImports()) {
+			importers.put(each, javaClass.getName());
+		}
 	}
 
-	private void replaceVertex(JavaClass newClass) {
-		List<JavaClass> incomingEdges = getParents(newClass);
-
-		graph.removeVertex(newClass);
-		graph.addVertex(newClass);
-		for (JavaClass each : incomingEdges) {
-			graph.addEdge(each, newClass);
+	private void removeNamesUsedBy(JavaClass javaClass) {
+		for (String each : javaClass.getSupertypes()) {
+			subclasses.remove(each, javaClass.getName());
+		}
+		for (String each : javaClass.getImports()) {
+			importers.remove(each, javaClass.getName());
 		}
 	}
 
@@ -122,35 +278,255 @@ public class ClassFileIndex {
 		}
 	}
 
-	JavaClass loadClassFromFile(File file) {
-		JavaClass javaClass = builder.loadClass(file);
-		if (javaClass != null) {
-			addToIndex(javaClass);
+	private class ParseTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<File> files;
+		private final JavaClass[] classes;
+		private final long[] timestamps;
+		private final int from;
+		private final int to;
+
+		ParseTask(List<File> files, JavaClass[] classes, long[] timestamps, int from, int to) {
+			this.files = files;
+			this.classes = classes;
+			this.timestamps = timestamps;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if ((to - from) <= PARSING_BATCH_SIZE) {
+				parse();
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ParseTask(files, classes, timestamps, from, middle), new ParseTask(files, classes, timestamps, middle, to));
+			}
+		}
+
+		void parse() {
+			for (int i = from; i < to; i++) {
+				File file = files.get(i);
+				// Read before parsing, so a concurrent change makes the class
+				// look stale rather than up to date
+				timestamps[i] = file.lastModified();
+				classes[i] = builder.loadClass(file);
+			}
 		}
-		return javaClass;
 	}
 
-	// Loop through all changed classes, adding their parents (and their
-	// parents)
-	// to another set of changed classes
-	public Set<JavaClass> findChangedParents(Set<JavaClass> classes) {
-		Set<JavaClass> changedParents = Sets.newHashSet(classes);
-		for (JavaClass jclass : classes) {
-			findParents(jclass, changedParents);
+	// Classes that imported a removed class depend on it again once it is
+	// recreated, even if they are not recompiled
+	private void restoreDanglingReferences(JavaClass newClass) {
+		for (String parentName : danglingReferences.removeAll(newClass.getName())) {
+			JavaClass parentClass = findClass(parentName);
+			if ((parentClass != null) && !parentClass.equals(newClass) && parentClass.getImports().contains(newClass.getName())) {
+				graph.addEdge(parentClass, newClass);
+			}
 		}
-		return changedParents;
 	}
 
-	private void findParents(JavaClass jclass, Set<JavaClass> changedParents) {
-		for (JavaClass parent : getParents(jclass)) {
-			if (changedParents.add(parent)) {
-				findParents(parent, changedParents);
+	/**
+	 * Finds the indexed classes that import any of the given classes. Those
+	 * don't have to be indexed, like the classes of library jars.
+	 */
+	public Set<JavaClass> findClassesImporting(Collection<String> classNames) {
+		Set<JavaClass> importingClasses = newHashSet();
+		for (String each : classNames) {
+			for (String importer : importers.get(each)) {
+				JavaClass importingClass = findClass(importer);
+				if (importingClass != null) {
+					importingClasses.add(importingClass);
+				}
 			}
 		}
+		return importingClasses;
+	}
+
+	/**
+	 * Removes the classes of the given class files from the index, along with
+	 * their dependencies in both directions.
+	 * 
+	 * @return the classes that depended on the removed classes, directly or
+	 *         not
+	 */
+	public Set<JavaClass> removeClasses(Collection<File> removedFiles) {
+		if (jarSymbolTable != null) {
+			jarSymbolTable.removeClassFiles(removedFiles);
+		}
+		Set<JavaClass> removedClasses = newHashSet();
+		for (File each : removedFiles) {
+			JavaClass removedClass = findClass(each);
+			if (removedClass != null) {
+				removedClasses.add(removedClass);
+			}
+			restoredClasses.remove(each.getAbsoluteFile());
+		}
+
+		Set<JavaClass> affectedParents = findChangedParents(removedClasses);
+		builder.invalidate(classNames(affectedParents));
+		affectedParents.removeAll(removedClasses);
+		for (JavaClass each : removedClasses) {
+			for (JavaClass parent : graph.predecessorsOf(each)) {
+				danglingReferences.put(each.getName(), parent.getName());
+			}
+			graph.removeVertex(each);
+			removeNamesUsedBy(each);
+			classNamesByFile.inverse().remove(each.getName());
+			if (testClasses.remove(each.getName())) {
+				disabledTests.add(each.getName());
+			}
+			classFileTimestamps.remove(each.getName());
+		}
+		if (!removedClasses.isEmpty()) {
+			log(Level.FINE, "Removed from index: " + removedClasses);
+		}
+		return affectedParents;
+	}
+
+	// The changed classes, their parents, and their parents' parents...
+	public Set<JavaClass> findChangedParents(Set<JavaClass> classes) {
+		Set<JavaClass> changedParents = newHashSet(classes);
+		changedParents.addAll(graph.findDependentClasses(classes));
+		return changedParents;
+	}
+
+	/**
+	 * The tests among the given classes and the classes that depend on them,
+	 * directly or not.
+	 */
+	public Set<JavaClass> findDependentTests(Set<JavaClass> classes) {
+		return graph.findDependentTests(classes);
+	}
+
+	/**
+	 * Keeps the tests that depend on each class up to date, so
+	 * {@link #findDependentTests(Set)} does not walk the graph.
+	 */
+	public void setTrackTestReachability(boolean trackTestReachability) {
+		this.trackTestReachability = trackTestReachability;
+		if (trackTestReachability) {
+			graph.trackTestReachability();
+		}
+	}
+
+	/**
+	 * Classes found in the jars of the symbol table are not parsed: they are
+	 * never indexed, and the classes that use them only need their names.
+	 */
+	void setJarSymbolTable(JarSymbolTable jarSymbolTable) {
+		this.jarSymbolTable = jarSymbolTable;
+	}
+
+	private boolean isInJar(String classname) {
+		return (jarSymbolTable != null) && jarSymbolTable.isInJar(classname);
+	}
+
+	private void refreshJarSymbolTable() {
+		if (jarSymbolTable != null) {
+			jarSymbolTable.refresh();
+		}
 	}
 
 	public void clear() {
-		graph = new DefaultDirectedGraph<JavaClass, DefaultEdge>(DefaultEdge.class);
+		graph = new ClassDependencyGraph();
+		if (trackTestReachability) {
+			graph.trackTestReachability();
+		}
+		classFileTimestamps = newHashMap();
+		restoredClasses = newHashMap();
+		classNamesByFile = HashBiMap.create();
+		danglingReferences = HashMultimap.create();
+		subclasses = HashMultimap.create();
+		importers = HashMultimap.create();
+		testClasses = newHashSet();
+		disabledTests = newHashSet();
+	}
+
+	/**
+	 * Writes every indexed class file, with its imports, supertypes,
+	 * dependencies, test flag and timestamp, to a snapshot that can be restored by
+	 * {@link #restoreSnapshot(File, long)}.
+	 */
+	public void saveSnapshot(File snapshotFile, long classpathDigest) throws IOException {
+		List<RestoredJavaClass> classes = newArrayList();
+		for (JavaClass each : graph.getClasses()) {
+			Long timestamp = classFileTimestamps.get(each.getName());
+			if (each.locatedInClassFile() && (timestamp != null)) {
+				Set<String> dependencies = newHashSet();
+				for (JavaClass dependency : graph.successorsOf(each)) {
+					dependencies.add(dependency.getName());
+				}
+				classes.add(new RestoredJavaClass(each.getName(), each.getImports(), each.getSupertypes(), dependencies, each.isATest(), each.getClassFile(), timestamp));
+			}
+		}
+		ClassFileIndexSnapshot.save(snapshotFile, classpathDigest, classes);
+		log(Level.CONFIG, "Saved " + classes.size() + " classes to index snapshot " + snapshotFile);
+	}
+
+	/**
+	 * Restores the classes of a snapshot whose class files, and those of
+	 * their supertypes, have not changed since it was taken. They are still
+	 * reported by {@link #findClasses(Collection)} when their class file is
+	 * found, but are not parsed again.
+	 */
+	public void restoreSnapshot(File snapshotFile, long classpathDigest) throws IOException {
+		refreshJarSymbolTable();
+		List<RestoredJavaClass> snapshot = ClassFileIndexSnapshot.load(snapshotFile, classpathDigest);
+		Set<String> staleClasses = findStaleClasses(snapshot);
+		List<RestoredJavaClass> upToDateClasses = newArrayList();
+		for (RestoredJavaClass each : snapshot) {
+			if (!staleClasses.contains(each.getName()) && !graph.containsVertex(each)) {
+				upToDateClasses.add(each);
+				if (jarSymbolTable != null) {
+					jarSymbolTable.addClassFiles(Collections.singleton(each.getClassFile()));
+				}
+				graph.addVertex(each);
+				putClassFile(each.getClassFile(), each);
+				addNamesUsedBy(each);
+				if (each.isATest()) {
+					testClasses.add(each.getName());
+				}
+				classFileTimestamps.put(each.getName(), each.getTimestamp());
+				restoredClasses.put(each.getClassFile().getAbsoluteFile(), each);
+			}
+		}
+		for (RestoredJavaClass each : upToDateClasses) {
+			for (String dependency : each.getDependencies()) {
+				// Stale dependencies are parsed again here
+				JavaClass dependencyClass = findJavaClass(dependency);
+				if (graph.containsVertex(dependencyClass) && !dependencyClass.equals(each)) {
+					graph.addEdge(each, dependencyClass);
+				}
+			}
+		}
+		builder.clear();
+		log(Level.CONFIG, "Restored " + upToDateClasses.size() + " classes from index snapshot " + snapshotFile);
+	}
+
+	// The classes that changed since the snapshot was taken, and their
+	// subclasses, which may not be tests anymore
+	private static Set<String> findStaleClasses(List<RestoredJavaClass> snapshot) {
+		SetMultimap<String, String> subclassesInSnapshot = HashMultimap.create();
+		Deque<String> staleSupertypes = new ArrayDeque<String>();
+		for (RestoredJavaClass each : snapshot) {
+			for (String supertype : each.getSupertypes()) {
+				subclassesInSnapshot.put(supertype, each.getName());
+			}
+			if (!each.isUpToDate()) {
+				staleSupertypes.add(each.getName());
+			}
+		}
+		Set<String> staleClasses = newHashSet(staleSupertypes);
+		while (!staleSupertypes.isEmpty()) {
+			for (String each : subclassesInSnapshot.get(staleSupertypes.pop())) {
+				if (staleClasses.add(each)) {
+					staleSupertypes.push(each);
+				}
+			}
+		}
+		return staleClasses;
 	}
 
 	public boolean isIndexed(Class<Object> clazz) {
@@ -158,11 +534,23 @@ public class ClassFileIndex {
 	}
 
 	public Set<String> getIndexedClasses() {
-		Set<String> classes = newHashSet();
-		Set<JavaClass> vertexSet = graph.vertexSet();
-		for (JavaClass each : vertexSet) {
-			classes.add(each.getName());
-		}
-		return classes;
+		return graph.getClassNames();
+	}
+
+	/**
+	 * The names of the indexed classes that are tests, filtered or not.
+	 */
+	public Set<String> getTestClasses() {
+		return Collections.unmodifiableSet(testClasses);
+	}
+
+	/**
+	 * Returns the indexed tests that were removed, or are no longer tests,
+	 * since this was last called.
+	 */
+	public Set<String> takeDisabledTests() {
+		Set<String> tests = disabledTests;
+		disabledTests = newHashSet();
+		return tests;
 	}
 }
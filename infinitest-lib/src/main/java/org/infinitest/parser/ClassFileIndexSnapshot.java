@@ -0,0 +1,177 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Maps.*;
+
+import java.io.*;
+import java.util.*;
+
+import com.google.common.collect.*;
+
+/**
+ * Binary snapshot of a {@link ClassFileIndex}, so that a restarted core does
+ * not have to parse every class file again.
+ * <p/>
+ * Layout: magic, version, classpath digest, a table of every distinct string,
+ * then one record per class (name, class file, timestamp, test flag, imports,
+ * supertypes and dependencies), with strings written as indexes in the table.
+ */
+class ClassFileIndexSnapshot {
+	private static final int MAGIC = 0x494E4649; // "INFI"
+	static final int VERSION = 2;
+
+	private ClassFileIndexSnapshot() {
+		// Utility class
+	}
+
+	static void save(File snapshotFile, long classpathDigest, Collection<RestoredJavaClass> classes) throws IOException {
+		Map<String, Integer> strings = newLinkedHashMap();
+		for (RestoredJavaClass each : classes) {
+			addString(strings, each.getName());
+			addString(strings, each.getClassFile().getPath());
+			for (String anImport : each.getImports()) {
+				addString(strings, anImport);
+			}
+			for (String supertype : each.getSupertypes()) {
+				addString(strings, supertype);
+			}
+			for (String dependency : each.getDependencies()) {
+				addString(strings, dependency);
+			}
+		}
+
+		File tempFile = new File(snapshotFile.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(classpathDigest);
+			out.writeInt(strings.size());
+			for (String each : strings.keySet()) {
+				out.writeUTF(each);
+			}
+			out.writeInt(classes.size());
+			for (RestoredJavaClass each : classes) {
+				out.writeInt(strings.get(each.getName()));
+				out.writeInt(strings.get(each.getClassFile().getPath()));
+				out.writeLong(each.getTimestamp());
+				out.writeBoolean(each.isATest());
+				writeStrings(out, strings, each.getImports());
+				writeStrings(out, strings, each.getSupertypes());
+				writeStrings(out, strings, each.getDependencies());
+			}
+		} finally {
+			out.close();
+		}
+
+		snapshotFile.delete();
+		if (!tempFile.renameTo(snapshotFile)) {
+			throw new IOException("Could not write index snapshot " + snapshotFile);
+		}
+	}
+
+	/**
+	 * @return the classes in the snapshot, or an empty list if the snapshot
+	 *         does not exist or was taken with another version or classpath
+	 */
+	static List<RestoredJavaClass> load(File snapshotFile, long classpathDigest) throws IOException {
+		List<RestoredJavaClass> classes = newArrayList();
+		if (!snapshotFile.exists()) {
+			return classes;
+		}
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+		try {
+			if ((in.readInt() != MAGIC) || (in.readInt() != VERSION) || (in.readLong() != classpathDigest)) {
+				return classes;
+			}
+			// Every string takes at least its two byte length, and every class
+			// at least its fixed size fields
+			String[] strings = new String[readCount(in, snapshotFile.length() / 2)];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = in.readUTF().intern();
+			}
+			int classCount = readCount(in, snapshotFile.length() / 29);
+			for (int i = 0; i < classCount; i++) {
+				String name = readString(in, strings);
+				File classFile = new File(readString(in, strings));
+				long timestamp = in.readLong();
+				boolean isATest = in.readBoolean();
+				Set<String> imports = readStrings(in, strings);
+				Set<String> supertypes = readStrings(in, strings);
+				Set<String> dependencies = readStrings(in, strings);
+				classes.add(new RestoredJavaClass(name, imports, supertypes, dependencies, isATest, classFile, timestamp));
+			}
+			return classes;
+		} catch (EOFException e) {
+			throw new IOException("Truncated index snapshot " + snapshotFile, e);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void addString(Map<String, Integer> strings, String string) {
+		if (!strings.containsKey(string)) {
+			strings.put(string, strings.size());
+		}
+	}
+
+	private static void writeStrings(DataOutputStream out, Map<String, Integer> strings, Set<String> values) throws IOException {
+		out.writeInt(values.size());
+		for (String each : values) {
+			out.writeInt(strings.get(each));
+		}
+	}
+
+	private static Set<String> readStrings(DataInputStream in, String[] strings) throws IOException {
+		int count = readCount(in, strings.length);
+		ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+		for (int i = 0; i < count; i++) {
+			builder.add(readString(in, strings));
+		}
+		return builder.build();
+	}
+
+	private static String readString(DataInputStream in, String[] strings) throws IOException {
+		int index = in.readInt();
+		if ((index < 0) || (index >= strings.length)) {
+			throw new IOException("Corrupt index snapshot: string " + index + " is not in the table of " + strings.length);
+		}
+		return strings[index];
+	}
+
+	private static int readCount(DataInputStream in, long maxCount) throws IOException {
+		int count = in.readInt();
+		if ((count < 0) || (count > maxCount)) {
+			throw new IOException("Corrupt index snapshot: count " + count + " is out of bounds");
+		}
+		return count;
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A class read by the {@link StreamingClassParser}.
+ */
+class ClassFileJavaClass extends AbstractJavaClass {
+	private final String name;
+	private final Set<String> imports;
+	private final Set<String> supertypes;
+	private final boolean isATest;
+	private final File classFile;
+
+	ClassFileJavaClass(String name, Set<String> imports, Set<String> supertypes, boolean isATest, File classFile) {
+		this.name = name;
+		this.imports = imports;
+		this.supertypes = supertypes;
+		this.isATest = isATest;
+		this.classFile = classFile;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public Set<String> getImports() {
+		return imports;
+	}
+
+	@Override
+	public Set<String> getSupertypes() {
+		return supertypes;
+	}
+
+	@Override
+	public boolean isATest() {
+		return isATest;
+	}
+
+	@Override
+	public boolean locatedInClassFile() {
+		return classFile != null;
+	}
+
+	@Override
+	public File getClassFile() {
+		return classFile;
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.base.Splitter.*;
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Maps.*;
+import static java.io.File.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.jar.*;
+import java.util.logging.*;
+import java.util.zip.*;
+
+/**
+ * Finds class files in the JDK, then in the directories and jars of a
+ * classpath, in the same order as the Javassist class pool.
+ */
+class ClassFileLocator {
+	private static final ClassLoader JDK_CLASSES = findPlatformClassLoader();
+
+	private final List<File> pathElements;
+	private final Map<File, JarFile> jars;
+
+	ClassFileLocator(String classpath) {
+		pathElements = newArrayList();
+		for (String each : on(pathSeparator).omitEmptyStrings().split(classpath)) {
+			File pathElement = new File(each);
+			if (pathElement.exists()) {
+				pathElements.add(pathElement);
+			}
+		}
+		jars = newHashMap();
+	}
+
+	/**
+	 * @return the contents of the class file, or null if it cannot be found
+	 */
+	InputStream open(String className) throws IOException {
+		String path = classFilePath(className);
+		URL jdkClass = findJdkClass(path);
+		if (jdkClass != null) {
+			return jdkClass.openStream();
+		}
+		for (File each : pathElements) {
+			if (each.isDirectory()) {
+				File classFile = new File(each, path);
+				if (classFile.isFile()) {
+					return new FileInputStream(classFile);
+				}
+			} else {
+				JarFile jar = openJar(each);
+				ZipEntry entry = (jar == null) ? null : jar.getEntry(path);
+				if (entry != null) {
+					return jar.getInputStream(entry);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the class file of a class found in a directory, or null if the
+	 *         class is in the JDK, in a jar, or cannot be found
+	 */
+	File findClassFile(String className) {
+		String path = classFilePath(className);
+		if (findJdkClass(path) != null) {
+			return null;
+		}
+		for (File each : pathElements) {
+			if (each.isDirectory()) {
+				File classFile = new File(each, path);
+				if (classFile.isFile()) {
+					return classFile;
+				}
+			} else {
+				JarFile jar = openJar(each);
+				if ((jar != null) && (jar.getEntry(path) != null)) {
+					return null;
+				}
+			}
+		}
+		return null;
+	}
+
+	private synchronized JarFile openJar(File file) {
+		if (!jars.containsKey(file)) {
+			JarFile jar = null;
+			try {
+				jar = new JarFile(file);
+			} catch (IOException e) {
+				log(Level.CONFIG, "Ignoring classpath element " + file + ": " + e.getMessage());
+			}
+			jars.put(file, jar);
+		}
+		return jars.get(file);
+	}
+
+	synchronized void close() {
+		for (JarFile each : jars.values()) {
+			if (each != null) {
+				try {
+					each.close();
+				} catch (IOException e) {
+					log(Level.WARNING, "Could not close " + each.getName());
+				}
+			}
+		}
+		jars.clear();
+	}
+
+	private static URL findJdkClass(String path) {
+		if (JDK_CLASSES == null) {
+			return Object.class.getResource("/" + path);
+		}
+		return JDK_CLASSES.getResource(path);
+	}
+
+	/**
+	 * Since Java 9 the bootstrap class loader only has the java.base module;
+	 * the platform class loader finds the classes of the other JDK modules,
+	 * but not the application classes.
+	 */
+	private static ClassLoader findPlatformClassLoader() {
+		try {
+			return (ClassLoader) ClassLoader.class.getMethod("getPlatformClassLoader").invoke(null);
+		} catch (Exception e) {
+			// Before Java 9 the bootstrap class loader has all the JDK classes
+			return null;
+		}
+	}
+
+	private static String classFilePath(String className) {
+		return className.replace('.', '/') + ".class";
+	}
+}
@@ -0,0 +1,489 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Sets.*;
+
+import java.io.*;
+import java.util.*;
+
+import com.google.common.base.*;
+import com.google.common.collect.*;
+
+/**
+ * Reads a class file in a single pass over its bytes, keeping only what
+ * {@link ClassFileSummary} needs. The buffers are reused from one class file
+ * to the next, so a reader must not be shared between threads.
+ */
+class ClassFileReader {
+	private static final int MAGIC = 0xCAFEBABE;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_FLOAT = 4;
+	private static final int CONSTANT_LONG = 5;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+	private static final int CONSTANT_METHOD_HANDLE = 15;
+	private static final int CONSTANT_METHOD_TYPE = 16;
+	private static final int CONSTANT_DYNAMIC = 17;
+	private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+	private static final int CONSTANT_MODULE = 19;
+	private static final int CONSTANT_PACKAGE = 20;
+
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_PRIVATE = 0x0002;
+
+	private static final int RUN_WITH = 8;
+
+	private static final byte[] CONSTRUCTOR = utf8("<init>");
+	private static final byte[] CLASS_INITIALIZER = utf8("<clinit>");
+	private static final byte[] NO_PARAMETERS = utf8("()V");
+	private static final byte[] STRING_PARAMETER = utf8("(Ljava/lang/String;)V");
+	private static final byte[] TEST_PREFIX = utf8("test");
+	private static final byte[] VISIBLE_ANNOTATIONS = utf8("RuntimeVisibleAnnotations");
+	private static final byte[] INVISIBLE_ANNOTATIONS = utf8("RuntimeInvisibleAnnotations");
+	private static final byte[] VISIBLE_PARAMETER_ANNOTATIONS = utf8("RuntimeVisibleParameterAnnotations");
+	private static final byte[] INVISIBLE_PARAMETER_ANNOTATIONS = utf8("RuntimeInvisibleParameterAnnotations");
+	private static final byte[] JUNIT4_TEST = utf8("Lorg/junit/Test;");
+	private static final byte[] TESTNG_TEST = utf8("Lorg/testng/annotations/Test;");
+	private static final byte[] RUN_WITH_ANNOTATION = utf8("Lorg/junit/runner/RunWith;");
+
+	private byte[] buffer = new byte[16 * 1024];
+	private int length;
+	private int position;
+	private int[] offsets = new int[1024];
+	private int constantPoolCount;
+	private char[] chars = new char[256];
+
+	private final Set<String> imports = newHashSet();
+	private long[] methodSignatures = new long[64];
+	private int[] methodFlags = new int[64];
+	private int methodCount;
+	private boolean runWith;
+	private boolean hasNonPrivateConstructor;
+	private boolean hasJUnitCompatibleConstructor;
+
+	/**
+	 * @param source
+	 *            where the class file comes from, for error messages
+	 */
+	ClassFileSummary read(InputStream in, String source) throws IOException {
+		length = 0;
+		int count;
+		while ((count = in.read(buffer, length, buffer.length - length)) != -1) {
+			length += count;
+			if (length == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+		}
+
+		try {
+			ClassFileSummary summary = readClassFile(source);
+			if (position > length) {
+				throw new MalformedClassFileException(source);
+			}
+			return summary;
+		} catch (IndexOutOfBoundsException e) {
+			throw new MalformedClassFileException(source);
+		}
+	}
+
+	private ClassFileSummary readClassFile(String source) throws IOException {
+		position = 0;
+		if ((length < 10) || (readInt() != MAGIC)) {
+			throw new MalformedClassFileException(source);
+		}
+		position += 4; // Version
+		readConstantPool(source);
+
+		int accessFlags = readUnsignedShort();
+		String name = readClassName(readUnsignedShort());
+		int superclassIndex = readUnsignedShort();
+		String superclassName = (superclassIndex == 0) ? null : readClassName(superclassIndex);
+		String[] interfaceNames = new String[readUnsignedShort()];
+		for (int i = 0; i < interfaceNames.length; i++) {
+			interfaceNames[i] = readClassName(readUnsignedShort());
+		}
+
+		imports.clear();
+		methodCount = 0;
+		runWith = false;
+		hasNonPrivateConstructor = false;
+		hasJUnitCompatibleConstructor = false;
+
+		addClassesFromConstantPool();
+		readFields();
+		readMethods();
+		readClassAttributes();
+
+		return new ClassFileSummary(name, superclassName, interfaceNames, accessFlags, internedImports(), runWith, hasNonPrivateConstructor, hasJUnitCompatibleConstructor, Arrays.copyOf(methodSignatures, methodCount), Arrays.copyOf(methodFlags, methodCount));
+	}
+
+	private void readConstantPool(String source) throws IOException {
+		constantPoolCount = readUnsignedShort();
+		if (offsets.length < constantPoolCount) {
+			offsets = new int[Math.max(constantPoolCount, offsets.length * 2)];
+		}
+		for (int i = 1; i < constantPoolCount; i++) {
+			offsets[i] = position;
+			int tag = buffer[position++];
+			switch (tag) {
+			case CONSTANT_UTF8:
+				position += 2 + readUnsignedShort(position);
+				break;
+			case CONSTANT_CLASS:
+			case CONSTANT_STRING:
+			case CONSTANT_METHOD_TYPE:
+			case CONSTANT_MODULE:
+			case CONSTANT_PACKAGE:
+				position += 2;
+				break;
+			case CONSTANT_METHOD_HANDLE:
+				position += 3;
+				break;
+			case CONSTANT_INTEGER:
+			case CONSTANT_FLOAT:
+			case CONSTANT_FIELDREF:
+			case CONSTANT_METHODREF:
+			case CONSTANT_INTERFACE_METHODREF:
+			case CONSTANT_NAME_AND_TYPE:
+			case CONSTANT_DYNAMIC:
+			case CONSTANT_INVOKE_DYNAMIC:
+				position += 4;
+				break;
+			case CONSTANT_LONG:
+			case CONSTANT_DOUBLE:
+				position += 8;
+				// Takes two entries
+				offsets[++i] = -1;
+				break;
+			default:
+				throw new MalformedClassFileException(source);
+			}
+		}
+	}
+
+	private void addClassesFromConstantPool() {
+		for (int i = 1; i < constantPoolCount; i++) {
+			if ((offsets[i] != -1) && (buffer[offsets[i]] == CONSTANT_CLASS)) {
+				imports.add(readUtf8(readUnsignedShort(offsets[i] + 1), true));
+			}
+		}
+	}
+
+	private void readFields() {
+		int fieldCount = readUnsignedShort();
+		for (int i = 0; i < fieldCount; i++) {
+			position += 4; // Access flags and name
+			imports.add(readClassNameFromDescriptor(readUnsignedShort()));
+			readMemberAttributes();
+		}
+	}
+
+	private void readMethods() {
+		int count = readUnsignedShort();
+		for (int i = 0; i < count; i++) {
+			int accessFlags = readUnsignedShort();
+			int nameIndex = readUnsignedShort();
+			int descriptorIndex = readUnsignedShort();
+			if (utf8Equals(nameIndex, CONSTRUCTOR)) {
+				readConstructor(accessFlags, descriptorIndex);
+				skipAttributes();
+			} else if (utf8Equals(nameIndex, CLASS_INITIALIZER)) {
+				skipAttributes();
+			} else {
+				int flags = readMemberAttributes();
+				if ((accessFlags & ACC_PRIVATE) == 0) {
+					if (utf8StartsWith(nameIndex, TEST_PREFIX)) {
+						flags |= ClassFileSummary.TEST_PREFIX;
+					}
+					addMethod(signature(nameIndex, descriptorIndex), flags & ~RUN_WITH);
+				}
+			}
+		}
+	}
+
+	private void readConstructor(int accessFlags, int descriptorIndex) {
+		if ((accessFlags & ACC_PRIVATE) == 0) {
+			hasNonPrivateConstructor = true;
+		}
+		if (((accessFlags & ACC_PUBLIC) != 0) && (utf8Equals(descriptorIndex, NO_PARAMETERS) || utf8Equals(descriptorIndex, STRING_PARAMETER))) {
+			hasJUnitCompatibleConstructor = true;
+		}
+	}
+
+	private void addMethod(long signature, int flags) {
+		if (methodCount == methodSignatures.length) {
+			methodSignatures = Arrays.copyOf(methodSignatures, methodCount * 2);
+			methodFlags = Arrays.copyOf(methodFlags, methodCount * 2);
+		}
+		methodSignatures[methodCount] = signature;
+		methodFlags[methodCount] = flags;
+		methodCount++;
+	}
+
+	/**
+	 * Adds the annotations of a field or method to the imports.
+	 * 
+	 * @return the test annotations found
+	 */
+	private int readMemberAttributes() {
+		int flags = 0;
+		int attributeCount = readUnsignedShort();
+		for (int i = 0; i < attributeCount; i++) {
+			int nameIndex = readUnsignedShort();
+			int end = readInt() + position;
+			if (utf8Equals(nameIndex, VISIBLE_ANNOTATIONS) || utf8Equals(nameIndex, INVISIBLE_ANNOTATIONS)) {
+				flags |= readAnnotations();
+			} else if (utf8Equals(nameIndex, VISIBLE_PARAMETER_ANNOTATIONS) || utf8Equals(nameIndex, INVISIBLE_PARAMETER_ANNOTATIONS)) {
+				int parameterCount = buffer[position++] & 0xFF;
+				for (int j = 0; j < parameterCount; j++) {
+					readAnnotations();
+				}
+			}
+			position = end;
+		}
+		return flags;
+	}
+
+	private void readClassAttributes() {
+		int attributeCount = readUnsignedShort();
+		for (int i = 0; i < attributeCount; i++) {
+			int nameIndex = readUnsignedShort();
+			int end = readInt() + position;
+			if (utf8Equals(nameIndex, VISIBLE_ANNOTATIONS)) {
+				runWith |= (readAnnotations() & RUN_WITH) != 0;
+			} else if (utf8Equals(nameIndex, INVISIBLE_ANNOTATIONS)) {
+				readAnnotations();
+			}
+			position = end;
+		}
+	}
+
+	private void skipAttributes() {
+		int attributeCount = readUnsignedShort();
+		for (int i = 0; i < attributeCount; i++) {
+			position += 2;
+			int attributeLength = readInt();
+			position += attributeLength;
+		}
+	}
+
+	/**
+	 * Adds the types of an annotations attribute to the imports.
+	 * 
+	 * @return the test and runner annotations found
+	 */
+	private int readAnnotations() {
+		int flags = 0;
+		int annotationCount = readUnsignedShort();
+		for (int i = 0; i < annotationCount; i++) {
+			int typeIndex = readUnsignedShort();
+			imports.add(readClassNameFromDescriptor(typeIndex));
+			if (utf8Equals(typeIndex, JUNIT4_TEST)) {
+				flags |= ClassFileSummary.JUNIT4_TEST;
+			} else if (utf8Equals(typeIndex, TESTNG_TEST)) {
+				flags |= ClassFileSummary.TESTNG_TEST;
+			} else if (utf8Equals(typeIndex, RUN_WITH_ANNOTATION)) {
+				flags |= RUN_WITH;
+			}
+			skipElementValuePairs();
+		}
+		return flags;
+	}
+
+	private void skipElementValuePairs() {
+		int pairCount = readUnsignedShort();
+		for (int i = 0; i < pairCount; i++) {
+			position += 2;
+			skipElementValue();
+		}
+	}
+
+	private void skipElementValue() {
+		int tag = buffer[position++];
+		switch (tag) {
+		case 'e':
+			position += 4;
+			break;
+		case '@':
+			position += 2;
+			skipElementValuePairs();
+			break;
+		case '[':
+			int valueCount = readUnsignedShort();
+			for (int i = 0; i < valueCount; i++) {
+				skipElementValue();
+			}
+			break;
+		default:
+			position += 2;
+		}
+	}
+
+	private String readClassName(int classIndex) {
+		return readUtf8(readUnsignedShort(offsets[checkIndex(classIndex)] + 1), true);
+	}
+
+	/**
+	 * Same as
+	 * {@link DescriptorParser#parseClassNameFromConstantPoolDescriptor(String)}
+	 * , without the intermediate strings.
+	 */
+	private String readClassNameFromDescriptor(int descriptorIndex) {
+		int count = decodeUtf8(descriptorIndex, true);
+		int start = 0;
+		int end = 0;
+		for (int i = 0; i < count; i++) {
+			if (chars[i] != '[') {
+				chars[end++] = chars[i];
+			}
+		}
+		if ((end > 0) && (chars[0] == 'L')) {
+			start = 1;
+		}
+		if ((end - start) == 1) {
+			return Object.class.getName();
+		}
+		int nameLength = 0;
+		for (int i = start; i < end; i++) {
+			if (chars[i] != ';') {
+				chars[nameLength++] = chars[i];
+			}
+		}
+		return new String(chars, 0, nameLength);
+	}
+
+	private String readUtf8(int index, boolean className) {
+		return new String(chars, 0, decodeUtf8(index, className));
+	}
+
+	/**
+	 * Decodes a modified UTF-8 constant into {@link #chars}.
+	 * 
+	 * @return the number of chars
+	 */
+	private int decodeUtf8(int index, boolean className) {
+		int offset = offsets[checkIndex(index)];
+		int end = offset + 3 + readUnsignedShort(offset + 1);
+		if (chars.length < (end - offset)) {
+			chars = new char[Math.max(end - offset, chars.length * 2)];
+		}
+		int count = 0;
+		for (int i = offset + 3; i < end; i++) {
+			int b = buffer[i] & 0xFF;
+			char c;
+			if (b < 0x80) {
+				c = (char) b;
+			} else if ((b & 0xE0) == 0xC0) {
+				c = (char) (((b & 0x1F) << 6) | (buffer[++i] & 0x3F));
+			} else {
+				c = (char) (((b & 0x0F) << 12) | ((buffer[++i] & 0x3F) << 6) | (buffer[++i] & 0x3F));
+			}
+			chars[count++] = (className && (c == '/')) ? '.' : c;
+		}
+		return count;
+	}
+
+	private boolean utf8Equals(int index, byte[] expected) {
+		int offset = offsets[checkIndex(index)];
+		return (readUnsignedShort(offset + 1) == expected.length) && regionMatches(offset + 3, expected);
+	}
+
+	private boolean utf8StartsWith(int index, byte[] prefix) {
+		int offset = offsets[checkIndex(index)];
+		return (readUnsignedShort(offset + 1) >= prefix.length) && regionMatches(offset + 3, prefix);
+	}
+
+	private boolean regionMatches(int offset, byte[] expected) {
+		for (int i = 0; i < expected.length; i++) {
+			if (buffer[offset + i] != expected[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// FNV-1a over the bytes of the name and the descriptor
+	private long signature(int nameIndex, int descriptorIndex) {
+		long hash = 0xcbf29ce484222325L;
+		hash = hashUtf8(hash, nameIndex);
+		return hashUtf8(hash, descriptorIndex);
+	}
+
+	private long hashUtf8(long hash, int index) {
+		int offset = offsets[checkIndex(index)];
+		int end = offset + 3 + readUnsignedShort(offset + 1);
+		for (int i = offset + 3; i < end; i++) {
+			hash ^= buffer[i] & 0xFF;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private int checkIndex(int index) {
+		if ((index <= 0) || (index >= constantPoolCount) || (offsets[index] == -1)) {
+			throw new IndexOutOfBoundsException("Invalid constant pool index " + index);
+		}
+		return index;
+	}
+
+	private Set<String> internedImports() {
+		ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+		for (String each : imports) {
+			builder.add(each.intern()); // Use less memory
+		}
+		return builder.build();
+	}
+
+	private int readUnsignedShort() {
+		int value = readUnsignedShort(position);
+		position += 2;
+		return value;
+	}
+
+	private int readUnsignedShort(int offset) {
+		return ((buffer[offset] & 0xFF) << 8) | (buffer[offset + 1] & 0xFF);
+	}
+
+	private int readInt() {
+		int value = (readUnsignedShort(position) << 16) | readUnsignedShort(position + 2);
+		position += 4;
+		return value;
+	}
+
+	private static byte[] utf8(String value) {
+		return value.getBytes(Charsets.UTF_8);
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import java.util.*;
+
+/**
+ * What {@link ClassFileReader} found in a class file: enough to list the
+ * classes it depends on and to tell if it is a test, once its superclasses
+ * and interfaces are known.
+ */
+class ClassFileSummary {
+	static final int JUNIT4_TEST = 1;
+	static final int TESTNG_TEST = 2;
+	static final int TEST_PREFIX = 4;
+
+	private static final int ACC_INTERFACE = 0x0200;
+	private static final int ACC_ABSTRACT = 0x0400;
+
+	private final String name;
+	private final String superclassName;
+	private final String[] interfaceNames;
+	private final int accessFlags;
+	private final Set<String> imports;
+	private final boolean runWith;
+	private final boolean hasNonPrivateConstructor;
+	private final boolean hasJUnitCompatibleConstructor;
+	private final long[] methodSignatures;
+	private final int[] methodFlags;
+
+	ClassFileSummary(String name, String superclassName, String[] interfaceNames, int accessFlags, Set<String> imports, boolean runWith, boolean hasNonPrivateConstructor, boolean hasJUnitCompatibleConstructor, long[] methodSignatures, int[] methodFlags) {
+		this.name = name;
+		this.superclassName = superclassName;
+		this.interfaceNames = interfaceNames;
+		this.accessFlags = accessFlags;
+		this.imports = imports;
+		this.runWith = runWith;
+		this.hasNonPrivateConstructor = hasNonPrivateConstructor;
+		this.hasJUnitCompatibleConstructor = hasJUnitCompatibleConstructor;
+		this.methodSignatures = methodSignatures;
+		this.methodFlags = methodFlags;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * @return null for java.lang.Object
+	 */
+	String getSuperclassName() {
+		return superclassName;
+	}
+
+	String[] getInterfaceNames() {
+		return interfaceNames;
+	}
+
+	boolean isAbstract() {
+		return (accessFlags & (ACC_INTERFACE | ACC_ABSTRACT)) != 0;
+	}
+
+	Set<String> getImports() {
+		return imports;
+	}
+
+	/**
+	 * @return true if the class is annotated with a visible @RunWith
+	 */
+	boolean isAnnotatedWithCustomRunner() {
+		return runWith;
+	}
+
+	boolean hasNonPrivateConstructor() {
+		return hasNonPrivateConstructor;
+	}
+
+	/**
+	 * @return true if the class has a public constructor without parameters
+	 *         or with a single String parameter
+	 */
+	boolean hasJUnitCompatibleConstructor() {
+		return hasJUnitCompatibleConstructor;
+	}
+
+	/**
+	 * The number of non-private methods, excluding constructors.
+	 */
+	int getMethodCount() {
+		return methodSignatures.length;
+	}
+
+	/**
+	 * A hash of the name and descriptor of a method, equal for a method and
+	 * the methods it overrides.
+	 */
+	long getMethodSignature(int method) {
+		return methodSignatures[method];
+	}
+
+	/**
+	 * A combination of {@link #JUNIT4_TEST}, {@link #TESTNG_TEST} and
+	 * {@link #TEST_PREFIX}.
+	 */
+	int getMethodFlags(int method) {
+		return methodFlags[method];
+	}
+
+	boolean hasTestMethodCandidates() {
+		for (int flags : methodFlags) {
+			if (flags != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
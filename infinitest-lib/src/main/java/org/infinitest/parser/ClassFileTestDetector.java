@@ -32,26 +32,104 @@ import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.logging.*;
 
 import org.infinitest.*;
 import org.infinitest.filter.*;
 
+import com.google.common.hash.*;
+
 /**
  * @author <a href="mailto:benrady@gmail.com"Ben Rady</a>
  */
 public class ClassFileTestDetector implements TestDetector {
+	private static final long SNAPSHOT_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+
+	// Weak, so discarded cores are not kept alive until shutdown
+	private static Set<ClassFileTestDetector> detectorsToSnapshot;
+
 	private final TestFilter filters;
 	private ClassFileIndex index;
 	private ClasspathProvider classpath;
+	private File snapshotFile;
+	private long lastSnapshotTime;
+	private boolean indexChangedSinceSnapshot;
+	private boolean snapshotRestored;
+	private boolean useStreamingClassParser;
+	private boolean trackTestReachability;
+	private boolean useJarSymbolTables;
+	private Set<String> disabledTests = newHashSet();
+	// The indexed tests that matched the filters during the last update, or
+	// null if they have not been checked since the index was created
+	private Set<String> filteredTests;
 
 	public ClassFileTestDetector(TestFilter testFilterList) {
 		filters = testFilterList;
 	}
 
 	@Override
-	public void clear() {
+	public synchronized void clear() {
 		index.clear();
+		filteredTests = null;
+	}
+
+	/**
+	 * Keeps a snapshot of the class index in the given file, so only the
+	 * classes that changed since the snapshot was taken have to be parsed after
+	 * a restart. The snapshot is saved periodically and when the JVM shuts
+	 * down, and is only restored the first time the classpath is set.
+	 */
+	public void setIndexSnapshotFile(File snapshotFile) {
+		this.snapshotFile = snapshotFile;
+		snapshotOnShutdown(this);
+	}
+
+	private static synchronized void snapshotOnShutdown(ClassFileTestDetector detector) {
+		if (detectorsToSnapshot == null) {
+			detectorsToSnapshot = Collections.newSetFromMap(new WeakHashMap<ClassFileTestDetector, Boolean>());
+			Runtime.getRuntime().addShutdownHook(new SnapshotOnShutdown());
+		}
+		detectorsToSnapshot.add(detector);
+	}
+
+	private static synchronized List<ClassFileTestDetector> detectorsToSnapshot() {
+		return new ArrayList<ClassFileTestDetector>(detectorsToSnapshot);
+	}
+
+	synchronized void saveIndexSnapshot() {
+		if ((snapshotFile != null) && (index != null) && indexChangedSinceSnapshot) {
+			try {
+				index.saveSnapshot(snapshotFile, classpathDigest());
+				indexChangedSinceSnapshot = false;
+			} catch (IOException e) {
+				log(Level.WARNING, "Could not save class index snapshot " + snapshotFile + ": " + e.getMessage());
+			}
+			lastSnapshotTime = System.currentTimeMillis();
+		}
+	}
+
+	private void restoreIndexSnapshot() {
+		if ((snapshotFile != null) && !snapshotRestored) {
+			snapshotRestored = true;
+			try {
+				index.restoreSnapshot(snapshotFile, classpathDigest());
+			} catch (IOException e) {
+				log(Level.WARNING, "Could not restore class index snapshot " + snapshotFile + ": " + e.getMessage());
+				index.clear();
+			}
+			lastSnapshotTime = System.currentTimeMillis();
+		}
+	}
+
+	private long classpathDigest() {
+		return Hashing.murmur3_128().hashString(classpath.getCompleteClasspath()).asLong();
+	}
+
+	private void saveIndexSnapshotPeriodically() {
+		if (System.currentTimeMillis() - lastSnapshotTime > SNAPSHOT_INTERVAL) {
+			saveIndexSnapshot();
+		}
 	}
 
 	/**
@@ -60,10 +138,22 @@ public class ClassFileTestDetector implements TestDetector {
 	 */
 	@Override
 	public synchronized Set<JavaClass> findTestsToRun(Collection<File> changedFiles) {
-		filters.updateFilterList();
+		if (filters.updateFilterList() || (filteredTests == null)) {
+			findNewlyFilteredTests();
+		}
 
 		// Find changed classes
 		Set<JavaClass> changedClasses = index.findClasses(changedFiles);
+		if (!changedClasses.isEmpty()) {
+			indexChangedSinceSnapshot = true;
+			saveIndexSnapshotPeriodically();
+		}
+		findDisabledTests(changedClasses);
+		if (trackTestReachability) {
+			Set<JavaClass> dependentTests = index.findDependentTests(changedClasses);
+			log(Level.FINE, "Tests depending on the changeset: " + dependentTests);
+			return filterTests(dependentTests);
+		}
 		Set<JavaClass> changedParents = index.findChangedParents(changedClasses);
 
 		// combine two sets
@@ -74,6 +164,58 @@ public class ClassFileTestDetector implements TestDetector {
 		return filterTests(changedClasses);
 	}
 
+	@Override
+	public synchronized Set<JavaClass> removeClasses(Collection<File> removedFiles) {
+		Set<JavaClass> affectedParents = index.removeClasses(removedFiles);
+		indexChangedSinceSnapshot = true;
+		findDisabledTests(Collections.<JavaClass> emptySet());
+		log(Level.FINE, "Classes affected by removal: " + affectedParents);
+		return filterTests(affectedParents);
+	}
+
+	@Override
+	public synchronized Set<JavaClass> findTestsUsingLibraryClasses(Collection<String> changedLibraryClasses) {
+		Set<JavaClass> importingClasses = index.findClassesImporting(changedLibraryClasses);
+		log(Level.FINE, "Classes using changed library classes: " + importingClasses);
+		if (trackTestReachability) {
+			return filterTests(index.findDependentTests(importingClasses));
+		}
+		importingClasses.addAll(index.findChangedParents(importingClasses));
+		return filterTests(importingClasses);
+	}
+
+	// Tests that were run until the filters changed. New tests that are
+	// filtered as soon as they appear were never run, so they are not
+	// reported later. Between filter changes, the filtered tests are kept up
+	// to date from the changed classes instead.
+	private void findNewlyFilteredTests() {
+		Set<String> tests = newHashSet();
+		for (String each : index.getTestClasses()) {
+			if (filters.match(each)) {
+				tests.add(each);
+				if ((filteredTests != null) && !filteredTests.contains(each)) {
+					disabledTests.add(each);
+				}
+			}
+		}
+		filteredTests = tests;
+	}
+
+	private void findDisabledTests(Set<JavaClass> changedClasses) {
+		for (String each : index.takeDisabledTests()) {
+			if (!filters.match(each)) {
+				disabledTests.add(each);
+			} else if (filteredTests != null) {
+				filteredTests.remove(each);
+			}
+		}
+		for (JavaClass each : changedClasses) {
+			if (each.isATest() && filters.match(each.getName())) {
+				filteredTests.add(each.getName());
+			}
+		}
+	}
+
 	private Set<JavaClass> filterTests(Set<JavaClass> changedClasses) {
 		Set<JavaClass> testsToRun = new HashSet<JavaClass>();
 		for (JavaClass jclass : changedClasses) {
@@ -118,19 +260,80 @@ public class ClassFileTestDetector implements TestDetector {
 	}
 
 	@Override
-	public void setClasspathProvider(ClasspathProvider classpath) {
+	public synchronized void setClasspathProvider(ClasspathProvider classpath) {
+		saveIndexSnapshot();
 		this.classpath = classpath;
-		index = new ClassFileIndex(classpath);
+		index = createIndex(classpath);
+		filteredTests = null;
+		restoreIndexSnapshot();
+	}
+
+	private ClassFileIndex createIndex(ClasspathProvider classpath) {
+		ClassFileIndex classFileIndex;
+		if (useStreamingClassParser) {
+			classFileIndex = new ClassFileIndex(new JavaClassBuilder(new StreamingClassParser(classpath.getCompleteClasspath())));
+		} else {
+			classFileIndex = new ClassFileIndex(classpath);
+		}
+		classFileIndex.setTrackTestReachability(trackTestReachability);
+		if (useJarSymbolTables) {
+			classFileIndex.setJarSymbolTable(new JarSymbolTable(classpath.getCompleteClasspath()));
+		}
+		return classFileIndex;
+	}
+
+	/**
+	 * Reads class files with the {@link StreamingClassParser} instead of
+	 * Javassist, from the next time the classpath is set.
+	 */
+	public synchronized void setUseStreamingClassParser(boolean useStreamingClassParser) {
+		this.useStreamingClassParser = useStreamingClassParser;
+	}
+
+	/**
+	 * Finds the tests to run with a {@link TestReachability} instead of
+	 * walking the dependency graph, from the next time the classpath is set.
+	 */
+	public synchronized void setTrackTestReachability(boolean trackTestReachability) {
+		this.trackTestReachability = trackTestReachability;
+	}
+
+	/**
+	 * Treats the classes of library jars as leaves known only by their name,
+	 * instead of parsing them, from the next time the classpath is set.
+	 */
+	public synchronized void setUseJarSymbolTables(boolean useJarSymbolTables) {
+		this.useJarSymbolTables = useJarSymbolTables;
 	}
 
 	@Override
-	public Set<String> getCurrentTests() {
+	public synchronized Set<String> getCurrentTests() {
 		Set<String> tests = newHashSet();
-		for (String each : getIndexedClasses()) {
-			if (isATest(index.findJavaClass(each))) {
+		for (String each : index.getTestClasses()) {
+			if (!filters.match(each)) {
 				tests.add(each);
 			}
 		}
 		return tests;
 	}
+
+	@Override
+	public synchronized Set<String> takeDisabledTests() {
+		Set<String> tests = disabledTests;
+		disabledTests = newHashSet();
+		return tests;
+	}
+
+	private static class SnapshotOnShutdown extends Thread {
+		SnapshotOnShutdown() {
+			super("Infinitest class index snapshot");
+		}
+
+		@Override
+		public void run() {
+			for (ClassFileTestDetector each : detectorsToSnapshot()) {
+				each.saveIndexSnapshot();
+			}
+		}
+	}
 }
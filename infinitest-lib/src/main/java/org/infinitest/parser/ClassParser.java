@@ -28,11 +28,20 @@
 package org.infinitest.parser;
 
 import java.io.*;
+import java.util.*;
 
 interface ClassParser {
 	JavaClass getClass(String className);
 
+	/**
+	 * Can be called from several threads at once.
+	 */
 	JavaClass parse(File file) throws IOException;
 
 	void clear();
+
+	/**
+	 * Forgets what was learnt about classes that changed or were removed.
+	 */
+	void invalidate(Collection<String> classNames);
 }
\ No newline at end of file
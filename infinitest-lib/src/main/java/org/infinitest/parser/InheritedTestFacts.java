@@ -0,0 +1,248 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Maps.*;
+import static javassist.Modifier.*;
+import static javassist.bytecode.AnnotationsAttribute.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import javassist.*;
+import javassist.bytecode.*;
+import javassist.bytecode.annotation.*;
+import junit.framework.*;
+
+import org.junit.Test;
+import org.junit.runner.*;
+
+import com.google.common.collect.*;
+
+/**
+ * What a class inherits from its supertypes that decides if it is a test. It
+ * is shared by the classes of an index, so tests with a common base class do
+ * not each walk its hierarchy again.
+ */
+class InheritedTestFacts {
+	private final ConcurrentMap<String, ClassFacts> factsByClass = newConcurrentMap();
+
+	ClassFacts get(String className) {
+		return factsByClass.get(className);
+	}
+
+	void put(String className, ClassFacts facts) {
+		factsByClass.put(className, facts);
+	}
+
+	ClassFacts of(CtClass classReference) {
+		ClassFacts facts = get(classReference.getName());
+		if (facts == null) {
+			facts = findFacts(classReference);
+			put(classReference.getName(), facts);
+		}
+		return facts;
+	}
+
+	/**
+	 * The facts of the superclass and of the interfaces of a class, by name.
+	 */
+	Map<String, ClassFacts> ofSupertypes(CtClass classReference) {
+		Map<String, ClassFacts> supertypeFacts = newHashMap();
+		for (CtClass each : findInterfaces(classReference)) {
+			supertypeFacts.put(each.getName(), of(each));
+		}
+		CtClass superclass = findSuperclass(classReference);
+		if (superclass != null) {
+			supertypeFacts.put(superclass.getName(), of(superclass));
+		}
+		return supertypeFacts;
+	}
+
+	/**
+	 * Forgets the facts of classes that changed. Their subclasses must be
+	 * invalidated too.
+	 */
+	void invalidate(Collection<String> classNames) {
+		factsByClass.keySet().removeAll(classNames);
+	}
+
+	void clear() {
+		factsByClass.clear();
+	}
+
+	private boolean isAnnotatedWithCustomRunner(CtClass classReference) {
+		AnnotationsAttribute annotations = JavaAssistClass.getAnnotationsOfType(visibleTag, classReference);
+		if (annotations != null) {
+			for (Annotation annotation : annotations.getAnnotations()) {
+				if (annotation.getTypeName().equals(RunWith.class.getName())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	// Test methods are found like CtClass.getMethods() does: the non-private
+	// methods of the interfaces, then of the superclass, then of the class,
+	// where a method hides the ones it overrides
+	private ClassFacts findFacts(CtClass classReference) {
+		CtClass superclass = findSuperclass(classReference);
+		ClassFacts superclassFacts = (superclass == null) ? null : of(superclass);
+		boolean inheritsFromTestCase = (superclassFacts != null) && superclassFacts.isTestCase();
+		boolean inheritsCustomRunner = (superclassFacts != null) && superclassFacts.usesCustomRunner();
+
+		Set<String> testMethods = Sets.newHashSet();
+		for (CtClass each : findInterfaces(classReference)) {
+			testMethods.addAll(of(each).getTestMethods());
+		}
+		if (superclassFacts != null) {
+			testMethods.addAll(superclassFacts.getTestMethods());
+		}
+		for (CtMethod ctMethod : classReference.getDeclaredMethods()) {
+			if (!isPrivate(ctMethod.getModifiers())) {
+				String signature = ctMethod.getName() + ctMethod.getSignature();
+				if (isJUnit4TestMethod(ctMethod) || isTestNGTestMethod(ctMethod) || (inheritsFromTestCase && ctMethod.getName().startsWith("test"))) {
+					testMethods.add(signature);
+				} else {
+					testMethods.remove(signature);
+				}
+			}
+		}
+
+		boolean isTestCase = inheritsFromTestCase || classReference.getName().equals(TestCase.class.getName());
+		boolean usesCustomRunner = inheritsCustomRunner || isAnnotatedWithCustomRunner(classReference);
+		return new ClassFacts(isTestCase, usesCustomRunner, ImmutableSet.copyOf(testMethods));
+	}
+
+	private CtClass[] findInterfaces(CtClass classReference) {
+		try {
+			return classReference.getInterfaces();
+		} catch (NotFoundException e) {
+			return new CtClass[0];
+		}
+	}
+
+	private CtClass findSuperclass(CtClass aClassReference) {
+		try {
+			return aClassReference.getSuperclass();
+		} catch (NotFoundException e) {
+			// If we can't access the superclass, it's not in the project
+			// classpath (probably in the
+			// JDK), and we don't care.
+			// The one exception to this might be if you've added a testing
+			// library to your JDK
+			// ext/lib directory, but I'm not going to handle that case until we
+			// know we need to.
+			return null;
+		}
+	}
+
+	private boolean isTestNGTestMethod(CtMethod ctMethod) {
+		MethodInfo methodInfo = ctMethod.getMethodInfo2();
+		List<?> attributes = methodInfo.getAttributes();
+		for (Object attribute : attributes) {
+			if (attribute instanceof AnnotationsAttribute) {
+				AnnotationsAttribute annotations = (AnnotationsAttribute) attribute;
+				for (Annotation each : annotations.getAnnotations()) {
+					if (org.testng.annotations.Test.class.getName().equals(each.getTypeName())) {
+						return true;
+					}
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private boolean isJUnit4TestMethod(CtMethod ctMethod) {
+		MethodInfo methodInfo = ctMethod.getMethodInfo2();
+		List<?> attributes = methodInfo.getAttributes();
+		for (Object attribute : attributes) {
+			if (attribute instanceof AnnotationsAttribute) {
+				AnnotationsAttribute annotations = (AnnotationsAttribute) attribute;
+				for (Annotation each : annotations.getAnnotations()) {
+					if (Test.class.getName().equals(each.getTypeName())) {
+						return true;
+					}
+				}
+			}
+		}
+
+		return false;
+	}
+
+	static class ClassFacts {
+		private final boolean isTestCase;
+		private final boolean usesCustomRunner;
+		private final Set<String> testMethods;
+
+		ClassFacts(boolean isTestCase, boolean usesCustomRunner, Set<String> testMethods) {
+			this.isTestCase = isTestCase;
+			this.usesCustomRunner = usesCustomRunner;
+			this.testMethods = testMethods;
+		}
+
+		/**
+		 * True for {@code junit.framework.TestCase} and its subclasses.
+		 */
+		boolean isTestCase() {
+			return isTestCase;
+		}
+
+		/**
+		 * True when the class or one of its superclasses has a
+		 * {@code @RunWith} annotation.
+		 */
+		boolean usesCustomRunner() {
+			return usesCustomRunner;
+		}
+
+		/**
+		 * The name and descriptor of the test methods declared or inherited by
+		 * the class.
+		 */
+		Set<String> getTestMethods() {
+			return testMethods;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ClassFacts)) {
+				return false;
+			}
+			ClassFacts other = (ClassFacts) obj;
+			return (isTestCase == other.isTestCase) && (usesCustomRunner == other.usesCustomRunner) && testMethods.equals(other.testMethods);
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * testMethods.hashCode()) + (isTestCase ? 2 : 0) + (usesCustomRunner ? 1 : 0);
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.base.Splitter.*;
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Sets.*;
+import static java.io.File.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.*;
+import java.util.zip.*;
+
+import com.google.common.cache.*;
+import com.google.common.collect.*;
+
+/**
+ * The names of the classes found in the jars of a classpath, read from the
+ * central directory of each jar without parsing any class file. The classes of
+ * the class directories, which hide those of the jars, are the ones reported
+ * by {@link #addClassFiles(Collection)}.
+ */
+class JarSymbolTable {
+	// Shared by every core, since most of them use the same libraries
+	private static final Cache<File, JarSymbols> symbolsByJar = CacheBuilder.newBuilder().softValues().build();
+
+	private final List<String> directories = newArrayList();
+	private final List<File> jars = newArrayList();
+	private final Set<String> directoryClasses = newHashSet();
+	private List<JarSymbols> jarSymbols;
+	private Set<String> jarClasses;
+
+	JarSymbolTable(String classpath) {
+		for (String each : on(pathSeparator).omitEmptyStrings().split(classpath)) {
+			File pathElement = new File(each);
+			if (pathElement.getName().endsWith(".jar") || pathElement.getName().endsWith(".zip")) {
+				jars.add(pathElement);
+			} else {
+				directories.add(pathElement.getAbsolutePath() + separator);
+			}
+		}
+		refresh();
+	}
+
+	/**
+	 * Reads again the jars that changed since they were last read.
+	 */
+	synchronized void refresh() {
+		List<JarSymbols> symbols = newArrayList();
+		for (File each : jars) {
+			symbols.add(symbolsOf(each));
+		}
+		if (!symbols.equals(jarSymbols)) {
+			Set<String> classes = newHashSet();
+			for (JarSymbols each : symbols) {
+				classes.addAll(each.getClassNames());
+			}
+			jarSymbols = symbols;
+			jarClasses = classes;
+		}
+	}
+
+	/**
+	 * @return true if the class is found in a jar of the classpath and not in
+	 *         one of its class directories
+	 */
+	synchronized boolean isInJar(String className) {
+		return jarClasses.contains(className) && !directoryClasses.contains(className);
+	}
+
+	/**
+	 * Records the class files found in the class directories of the classpath.
+	 */
+	synchronized void addClassFiles(Collection<File> classFiles) {
+		for (File each : classFiles) {
+			String className = classNameInDirectories(each);
+			if (className != null) {
+				directoryClasses.add(className);
+			}
+		}
+	}
+
+	/**
+	 * Forgets class files removed from the class directories of the classpath.
+	 */
+	synchronized void removeClassFiles(Collection<File> classFiles) {
+		for (File each : classFiles) {
+			directoryClasses.remove(classNameInDirectories(each));
+		}
+	}
+
+	private String classNameInDirectories(File classFile) {
+		String path = classFile.getAbsolutePath();
+		if (path.endsWith(".class")) {
+			for (String each : directories) {
+				if (path.startsWith(each)) {
+					return path.substring(each.length(), path.length() - ".class".length()).replace(separatorChar, '.');
+				}
+			}
+		}
+		return null;
+	}
+
+	private static JarSymbols symbolsOf(File jar) {
+		long length = jar.length();
+		long lastModified = jar.lastModified();
+		JarSymbols symbols = symbolsByJar.getIfPresent(jar);
+		if ((symbols == null) || !symbols.isStampedWith(length, lastModified)) {
+			symbols = new JarSymbols(length, lastModified, readClassNames(jar));
+			symbolsByJar.put(jar, symbols);
+		}
+		return symbols;
+	}
+
+	private static Set<String> readClassNames(File jar) {
+		if (!jar.isFile()) {
+			return Collections.emptySet();
+		}
+		Set<String> classNames = newHashSet();
+		try {
+			ZipFile zipFile = new ZipFile(jar);
+			try {
+				for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+					String entryName = entries.nextElement().getName();
+					if (entryName.endsWith(".class") && !entryName.startsWith("META-INF/")) {
+						classNames.add(entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.'));
+					}
+				}
+			} finally {
+				zipFile.close();
+			}
+		} catch (IOException e) {
+			log(Level.CONFIG, "Ignoring classpath element " + jar + ": " + e.getMessage());
+		}
+		return ImmutableSet.copyOf(classNames);
+	}
+
+	private static class JarSymbols {
+		private final long length;
+		private final long lastModified;
+		private final Set<String> classNames;
+
+		JarSymbols(long length, long lastModified, Set<String> classNames) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.classNames = classNames;
+		}
+
+		boolean isStampedWith(long otherLength, long otherLastModified) {
+			return (length == otherLength) && (lastModified == otherLastModified);
+		}
+
+		Set<String> getClassNames() {
+			return classNames;
+		}
+	}
+}
@@ -37,12 +37,9 @@ import java.util.*;
 import javassist.*;
 import javassist.bytecode.*;
 import javassist.bytecode.annotation.*;
-import junit.framework.*;
 
-import org.junit.Test;
-import org.junit.runner.*;
+import org.infinitest.parser.InheritedTestFacts.ClassFacts;
 
-import com.google.common.base.*;
 import com.google.common.collect.*;
 import com.google.common.collect.ImmutableSet.*;
 
@@ -51,9 +48,17 @@ public class JavaAssistClass extends AbstractJavaClass {
 	private final boolean isATest;
 	private final String className;
 	private File classFile;
+	private final InheritedTestFacts inheritedFacts;
+	private final Map<String, ClassFacts> supertypeFacts;
 
 	public JavaAssistClass(CtClass classReference) {
+		this(classReference, new InheritedTestFacts());
+	}
+
+	JavaAssistClass(CtClass classReference, InheritedTestFacts inheritedFacts) {
+		this.inheritedFacts = inheritedFacts;
 		imports = findImports(classReference);
+		supertypeFacts = inheritedFacts.ofSupertypes(classReference);
 		isATest = !isAbstract(classReference) && isAJUnitTest(classReference) && canInstantiate(classReference);
 		className = classReference.getName();
 	}
@@ -131,7 +136,7 @@ public class JavaAssistClass extends AbstractJavaClass {
 		addAnnotations(imports, getAnnotationsOfType(tag, classRef));
 	}
 
-	private AnnotationsAttribute getAnnotationsOfType(String tag, CtClass classRef) {
+	static AnnotationsAttribute getAnnotationsOfType(String tag, CtClass classRef) {
 		return (AnnotationsAttribute) classRef.getClassFile2().getAttribute(tag);
 	}
 
@@ -160,6 +165,29 @@ public class JavaAssistClass extends AbstractJavaClass {
 		return className;
 	}
 
+	@Override
+	public Set<String> getSupertypes() {
+		return supertypeFacts.keySet();
+	}
+
+	/**
+	 * True if the supertypes of this class make it a test, or not, the same
+	 * way with the given facts as with the ones it was parsed with. Otherwise
+	 * a class with the same bytes has to be parsed again.
+	 */
+	boolean inheritsTheSameFacts(InheritedTestFacts facts, ClassPool classPool) {
+		for (Map.Entry<String, ClassFacts> each : supertypeFacts.entrySet()) {
+			try {
+				if (!facts.of(classPool.get(each.getKey())).equals(each.getValue())) {
+					return false;
+				}
+			} catch (NotFoundException e) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private boolean isAbstract(CtClass classReference) {
 		return classReference.isInterface() || Modifier.isAbstract(classReference.getModifiers());
 	}
@@ -213,125 +241,12 @@ public class JavaAssistClass extends AbstractJavaClass {
 	}
 
 	private boolean isAJUnitTest(CtClass classReference) {
-		return hasJUnitTestMethods(classReference) //
-			|| hasTestNGTestMethods(classReference) //
-			|| usesCustomRunner(classReference);
+		ClassFacts facts = inheritedFacts.of(classReference);
+		return !facts.getTestMethods().isEmpty() || facts.usesCustomRunner();
 	}
 
 	private boolean usesCustomRunner(CtClass classReference) {
-		return isAnnotatedWithCustomRunner(classReference) || anySuperclassOf(classReference, hasACustomRunner());
-	}
-
-	private boolean isAnnotatedWithCustomRunner(CtClass classReference) {
-		AnnotationsAttribute annotations = getAnnotationsOfType(visibleTag, classReference);
-		if (annotations != null) {
-			for (Annotation annotation : annotations.getAnnotations()) {
-				if (annotation.getTypeName().equals(RunWith.class.getName())) {
-					return true;
-				}
-			}
-		}
-		return false;
-	}
-
-	private Predicate<CtClass> hasACustomRunner() {
-		return new Predicate<CtClass>() {
-			@Override
-			public boolean apply(CtClass input) {
-				return isAnnotatedWithCustomRunner(input);
-			}
-		};
-	}
-
-	private boolean hasTestNGTestMethods(CtClass classReference) {
-		for (CtMethod ctMethod : classReference.getMethods()) {
-			if (isTestNGTestMethod(ctMethod)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	private boolean hasJUnitTestMethods(CtClass classReference) {
-		for (CtMethod ctMethod : classReference.getMethods()) {
-			if (isJUnit4TestMethod(ctMethod) || isJUnit3TestMethod(ctMethod)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	private boolean isJUnit3TestMethod(CtMethod ctMethod) {
-		return ctMethod.getName().startsWith("test") && anySuperclassOf(ctMethod.getDeclaringClass(), isTestCase());
-	}
-
-	private boolean anySuperclassOf(CtClass classReference, Predicate<CtClass> predicate) {
-		CtClass superclass = findSuperclass(classReference);
-		while (superclass != null) {
-			if (predicate.apply(superclass)) {
-				return true;
-			}
-			superclass = findSuperclass(superclass);
-		}
-		return false;
-	}
-
-	private Predicate<CtClass> isTestCase() {
-		return new Predicate<CtClass>() {
-			@Override
-			public boolean apply(CtClass input) {
-				return input.getName().equals(TestCase.class.getName());
-			}
-		};
-	}
-
-	private CtClass findSuperclass(CtClass aClassReference) {
-		try {
-			return aClassReference.getSuperclass();
-		} catch (NotFoundException e) {
-			// If we can't access the superclass, it's not in the project
-			// classpath (probably in the
-			// JDK), and we don't care.
-			// The one exception to this might be if you've added a testing
-			// library to your JDK
-			// ext/lib directory, but I'm not going to handle that case until we
-			// know we need to.
-			return null;
-		}
-	}
-
-	private boolean isTestNGTestMethod(CtMethod ctMethod) {
-		MethodInfo methodInfo = ctMethod.getMethodInfo2();
-		List<?> attributes = methodInfo.getAttributes();
-		for (Object attribute : attributes) {
-			if (attribute instanceof AnnotationsAttribute) {
-				AnnotationsAttribute annotations = (AnnotationsAttribute) attribute;
-				for (Annotation each : annotations.getAnnotations()) {
-					if (org.testng.annotations.Test.class.getName().equals(each.getTypeName())) {
-						return true;
-					}
-				}
-			}
-		}
-
-		return false;
-	}
-
-	private boolean isJUnit4TestMethod(CtMethod ctMethod) {
-		MethodInfo methodInfo = ctMethod.getMethodInfo2();
-		List<?> attributes = methodInfo.getAttributes();
-		for (Object attribute : attributes) {
-			if (attribute instanceof AnnotationsAttribute) {
-				AnnotationsAttribute annotations = (AnnotationsAttribute) attribute;
-				for (Annotation each : annotations.getAnnotations()) {
-					if (Test.class.getName().equals(each.getTypeName())) {
-						return true;
-					}
-				}
-			}
-		}
-
-		return false;
+		return inheritedFacts.of(classReference).usesCustomRunner();
 	}
 
 	public void setClassFile(File classFile) {
@@ -30,49 +30,134 @@ package org.infinitest.parser;
 import static com.google.common.base.Splitter.*;
 import static com.google.common.collect.Lists.*;
 import static java.io.File.*;
+import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.logging.*;
 
 import javassist.*;
 
 import org.infinitest.*;
 
-import com.beust.jcommander.internal.*;
+import com.google.common.cache.*;
 import com.google.common.hash.*;
+import com.google.common.io.*;
 
 public class JavaAssistClassParser implements ClassParser {
-	private final static Map<String, JavaAssistClass> classesByHash = Maps.newHashMap();
+	// Each parsed class weighs one plus its number of imports, so this bounds
+	// the cache to a million class names, whatever their size in memory
+	private static final long MAXIMUM_CACHE_WEIGHT = 1000000;
+
+	// Shared by every core, so identical classes in several modules (or
+	// several versions of the same module) are only kept once
+	private static final Cache<HashCode, JavaAssistClass> classesByHash = CacheBuilder.newBuilder()
+			.maximumWeight(MAXIMUM_CACHE_WEIGHT)
+			.weigher(new ImportCountWeigher())
+			.recordStats()
+			.build();
 
 	private final String classpath;
-	private ClassPool classPool;
+	// Class pools are not thread safe, so each parse checks one out. There is
+	// at most one per parsing thread, and they are kept from one cycle to the
+	// next with their jars open, whichever threads use them.
+	private final int maximumPoolCount;
+	private final List<ReusableClassPool> classPools;
+	private final Deque<ReusableClassPool> idlePools;
+	private int reservedPoolCount;
+	private final InheritedTestFacts inheritedFacts;
+	private List<List<Long>> pathStamps;
 
 	public JavaAssistClassParser(String classpath) {
+		this(classpath, Runtime.getRuntime().availableProcessors());
+	}
+
+	JavaAssistClassParser(String classpath, int maximumPoolCount) {
 		this.classpath = classpath;
+		this.maximumPoolCount = maximumPoolCount;
+		classPools = newArrayList();
+		idlePools = new ArrayDeque<ReusableClassPool>();
+		inheritedFacts = new InheritedTestFacts();
+		pathStamps = stampPathElements();
 	}
 
-	private ClassPool getClassPool() {
-		if (classPool == null) {
-			classPool = new ClassPool();
-			// This is used primarily for getting Java core objects like String
-			// and Integer,
-			// so if we don't have the project's JDK classpath, it's probably
-			// OK.
-			classPool.appendSystemPath();
-			try {
-				for (String pathElement : getPathElements()) {
-					classPool.appendClassPath(pathElement);
+	private ReusableClassPool checkOutClassPool() {
+		synchronized (classPools) {
+			boolean interrupted = false;
+			while (idlePools.isEmpty() && (reservedPoolCount >= maximumPoolCount)) {
+				try {
+					classPools.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
 				}
-			} catch (NotFoundException e) {
-				classPool = null; // RISK Untested
-				// Blank out the class pool so we try again next time
-				throw new MissingClassException("Could not create class pool", e);
 			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (!idlePools.isEmpty()) {
+				return idlePools.pop();
+			}
+			reservedPoolCount++;
+		}
+
+		// Opening the jars takes a while, so it is done outside the lock
+		try {
+			ReusableClassPool classPool = createClassPool();
+			synchronized (classPools) {
+				classPools.add(classPool);
+			}
+			return classPool;
+		} catch (RuntimeException e) {
+			releaseReservation();
+			throw e;
+		}
+	}
+
+	private void checkIn(ReusableClassPool classPool) {
+		synchronized (classPools) {
+			// Pools discarded by clear() while in use are not reused
+			if (classPools.contains(classPool)) {
+				idlePools.push(classPool);
+			} else {
+				reservedPoolCount--;
+			}
+			classPools.notify();
+		}
+	}
+
+	private void releaseReservation() {
+		synchronized (classPools) {
+			reservedPoolCount--;
+			classPools.notify();
+		}
+	}
+
+	private ReusableClassPool createClassPool() {
+		ReusableClassPool classPool = new ReusableClassPool();
+		// This is used primarily for getting Java core objects like String
+		// and Integer,
+		// so if we don't have the project's JDK classpath, it's probably
+		// OK.
+		classPool.appendSystemPath();
+		try {
+			for (String pathElement : getPathElements()) {
+				classPool.appendClassPath(pathElement);
+			}
+		} catch (NotFoundException e) {
+			// RISK Untested
+			// The class pool is not kept, so we try again next time
+			throw new MissingClassException("Could not create class pool", e);
 		}
 		return classPool;
 	}
 
+	int getClassPoolCount() {
+		synchronized (classPools) {
+			return classPools.size();
+		}
+	}
+
 	private Iterable<String> getPathElements() {
 		List<String> entries = newArrayList(on(pathSeparator).split(classpath));
 		ListIterator<String> iter = entries.listIterator();
@@ -88,78 +173,169 @@ public class JavaAssistClassParser implements ClassParser {
 		return !new File(iter.next()).exists();
 	}
 
+	// Jars are stamped with their size and modification time. Directories are
+	// read one class file at a time, so only their existence matters.
+	private List<List<Long>> stampPathElements() {
+		List<List<Long>> stamps = newArrayList();
+		for (String pathElement : on(pathSeparator).split(classpath)) {
+			File file = new File(pathElement);
+			if (file.isFile()) {
+				stamps.add(Arrays.asList(file.length(), file.lastModified()));
+			} else {
+				stamps.add(Arrays.asList(file.exists() ? 1L : 0L));
+			}
+		}
+		return stamps;
+	}
+
 	@Override
 	public JavaClass getClass(String className) {
-		CtClass ctClass = getCachedClass(className);
+		ReusableClassPool classPool = checkOutClassPool();
+		try {
+			return getClass(classPool, className);
+		} finally {
+			checkIn(classPool);
+		}
+	}
+
+	private JavaClass getClass(ReusableClassPool classPool, String className) {
+		URL url = classPool.find(className);
+		// Classes in jars are read by the class pool, which keeps the jars
+		// open. Reading them through their URL would go through the JVM's own
+		// jar cache, which doesn't notice when a jar is rewritten.
+		boolean inClassFile = (url != null) && url.getProtocol().equals("file");
+		HashCode hash = inClassFile ? hash(readClassFile(className, url)) : null;
+		JavaAssistClass clazz = (hash == null) ? null : findParsedClass(hash, classPool);
+		if (clazz != null) {
+			return clazz;
+		}
+
+		CtClass ctClass = getCachedClass(classPool, className);
 		if (unparsableClass(ctClass)) {
 			return new UnparsableClass(className);
 		}
 
-		String hash = hash(ctClass);
-		JavaAssistClass clazz = classesByHash.get(hash);
-		if (clazz == null) {
-			clazz = new JavaAssistClass(ctClass);
-			URL url = getClassPool().find(className);
-			if ((url != null) && url.getProtocol().equals("file")) {
-				clazz.setClassFile(new File(url.getFile()));
-			}
-
+		clazz = new JavaAssistClass(ctClass, inheritedFacts);
+		if (inClassFile) {
+			clazz.setClassFile(new File(url.getFile()));
+		}
+		if (hash != null) {
 			classesByHash.put(hash, clazz);
 		}
-
 		return clazz;
 	}
 
+	private byte[] readClassFile(String className, URL url) {
+		try {
+			return Resources.toByteArray(url);
+		} catch (IOException e) {
+			throw new MissingClassException("Could not read " + className, e);
+		}
+	}
+
 	private boolean unparsableClass(CtClass cachedClass) {
 		return cachedClass.getClassFile2() == null;
 	}
 
-	private CtClass getCachedClass(String className) {
+	private CtClass getCachedClass(ReusableClassPool classPool, String className) {
 		try {
-			return getClassPool().get(className);
+			return classPool.get(className);
 		} catch (NotFoundException e) {
 			throw new MissingClassException("Expected to find " + className, e);
 		}
 	}
 
-	private String hash(CtClass ctClass) {
-		try {
-			String hash = Hashing.sha256().hashBytes(ctClass.toBytecode()).toString();
-			ctClass.defrost();
-			return hash;
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		} catch (CannotCompileException e) {
-			throw new RuntimeException(e);
-		}
+	// Classes with the same bytes are parsed only once, so the class file is
+	// hashed before Javassist reads it
+	private HashCode hash(byte[] bytecode) {
+		return Hashing.murmur3_128().hashBytes(bytecode);
 	}
 
 	@Override
 	public JavaClass parse(File file) throws IOException {
-		FileInputStream inputStream = null;
+		byte[] bytecode = Files.toByteArray(file);
+		HashCode hash = hash(bytecode);
+		ReusableClassPool classPool = checkOutClassPool();
 		try {
-			inputStream = new FileInputStream(file);
-			CtClass ctClass = getClassPool().makeClass(inputStream);
-
-			String hash = hash(ctClass);
-			JavaAssistClass clazz = classesByHash.get(hash);
+			JavaAssistClass clazz = findParsedClass(hash, classPool);
 			if (clazz == null) {
-				clazz = new JavaAssistClass(ctClass);
+				clazz = new JavaAssistClass(classPool.makeClass(new ByteArrayInputStream(bytecode)), inheritedFacts);
 				clazz.setClassFile(file);
 
 				classesByHash.put(hash, clazz);
 			}
-
 			return clazz;
 		} finally {
-			if (inputStream != null) {
-				inputStream.close();
-			}
+			checkIn(classPool);
+		}
+	}
+
+	// The bytes of a class don't say if it is a test: its supertypes may have
+	// changed since it was parsed, or be different in another core
+	private JavaAssistClass findParsedClass(HashCode hash, ReusableClassPool classPool) {
+		JavaAssistClass clazz = classesByHash.getIfPresent(hash);
+		if ((clazz != null) && !clazz.inheritsTheSameFacts(inheritedFacts, classPool)) {
+			return null;
 		}
+		return clazz;
 	}
 
+	/**
+	 * Keeps the class pools, unless a jar or a directory of the classpath has
+	 * changed since they were created.
+	 */
 	@Override
 	public void clear() {
-		classPool = null;
+		List<List<Long>> newStamps = stampPathElements();
+		if (!newStamps.equals(pathStamps)) {
+			log(Level.FINE, "Classpath of " + classpath + " has changed, reopening its jars");
+			pathStamps = newStamps;
+			synchronized (classPools) {
+				// Pools in use are released when they are checked in
+				reservedPoolCount -= idlePools.size();
+				classPools.clear();
+				idlePools.clear();
+				classPools.notifyAll();
+			}
+			inheritedFacts.clear();
+		}
+		log(Level.FINE, "Parsed class cache: " + getCacheStats());
+	}
+
+	/**
+	 * Forgets the given classes in every class pool, so they are read again
+	 * from their class files. Should not be called while parsing.
+	 */
+	@Override
+	public void invalidate(Collection<String> classNames) {
+		inheritedFacts.invalidate(classNames);
+		synchronized (classPools) {
+			for (ReusableClassPool classPool : classPools) {
+				classPool.forget(classNames);
+			}
+		}
+	}
+
+	/**
+	 * Hits, misses and evictions of the parsed classes shared by every
+	 * parser, since the start of the VM.
+	 */
+	public static CacheStats getCacheStats() {
+		return classesByHash.stats();
+	}
+
+	private static class ReusableClassPool extends ClassPool {
+		void forget(Collection<String> classNames) {
+			for (String className : classNames) {
+				removeCached(className);
+			}
+		}
+	}
+
+	private static class ImportCountWeigher implements Weigher<HashCode, JavaAssistClass> {
+		@Override
+		public int weigh(HashCode hash, JavaAssistClass clazz) {
+			return 1 + clazz.getImports().size();
+		}
 	}
 }
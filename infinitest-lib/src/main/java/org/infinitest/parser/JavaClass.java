@@ -39,6 +39,12 @@ public interface JavaClass {
 	 */
 	Set<String> getImports();
 
+	/**
+	 * The names of the superclass and of the interfaces of this class, which
+	 * decide with it whether it is a test.
+	 */
+	Set<String> getSupertypes();
+
 	boolean isATest();
 
 	boolean locatedInClassFile();
@@ -28,6 +28,7 @@
 package org.infinitest.parser;
 
 import java.io.*;
+import java.util.*;
 
 import javassist.*;
 
@@ -93,4 +94,9 @@ class JavaClassBuilder implements ClassBuilder {
 	public void clear() {
 		parser.clear();
 	}
+
+	@Override
+	public void invalidate(Collection<String> classNames) {
+		parser.invalidate(classNames);
+	}
 }
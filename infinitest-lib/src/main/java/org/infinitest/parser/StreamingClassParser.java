@@ -0,0 +1,255 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Maps.*;
+import static com.google.common.collect.Sets.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+import junit.framework.*;
+
+import org.infinitest.*;
+
+import com.google.common.collect.*;
+
+/**
+ * A {@link ClassParser} that reads class files with a {@link ClassFileReader}
+ * instead of building a Javassist {@code CtClass} for each of them. It finds
+ * the same imports and tests as the {@link JavaAssistClassParser}.
+ */
+public class StreamingClassParser implements ClassParser {
+	private static final int TEST_ANNOTATIONS = ClassFileSummary.JUNIT4_TEST | ClassFileSummary.TESTNG_TEST;
+
+	private final String classpath;
+	// Readers reuse their buffer, so each parsing thread gets its own
+	private final ThreadLocal<ClassFileReader> readers;
+	// Classes read since the last clear
+	private final ConcurrentMap<String, ClassFileSummary> summaries;
+	private final Set<String> missingClasses;
+	private ClassFileLocator locator;
+
+	public StreamingClassParser(String classpath) {
+		this.classpath = classpath;
+		readers = new ThreadLocal<ClassFileReader>() {
+			@Override
+			protected ClassFileReader initialValue() {
+				return new ClassFileReader();
+			}
+		};
+		summaries = newConcurrentMap();
+		missingClasses = newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	}
+
+	@Override
+	public JavaClass getClass(String className) {
+		ClassFileSummary summary = findSummary(className);
+		if (summary == null) {
+			throw new MissingClassException("Expected to find " + className);
+		}
+		return createClass(summary, getLocator().findClassFile(className));
+	}
+
+	@Override
+	public JavaClass parse(File file) throws IOException {
+		InputStream inputStream = new FileInputStream(file);
+		try {
+			ClassFileSummary summary = readers.get().read(inputStream, file.getPath());
+			summaries.put(summary.getName(), summary);
+			return createClass(summary, file);
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		summaries.clear();
+		missingClasses.clear();
+		if (locator != null) {
+			locator.close();
+			locator = null;
+		}
+	}
+
+	@Override
+	public void invalidate(Collection<String> classNames) {
+		summaries.keySet().removeAll(classNames);
+		missingClasses.removeAll(classNames);
+	}
+
+	private synchronized ClassFileLocator getLocator() {
+		if (locator == null) {
+			locator = new ClassFileLocator(classpath);
+		}
+		return locator;
+	}
+
+	private ClassFileSummary findSummary(String className) {
+		ClassFileSummary summary = summaries.get(className);
+		if ((summary == null) && !missingClasses.contains(className)) {
+			summary = readSummary(className);
+			if (summary == null) {
+				missingClasses.add(className);
+			} else {
+				summaries.putIfAbsent(className, summary);
+			}
+		}
+		return summary;
+	}
+
+	private ClassFileSummary readSummary(String className) {
+		try {
+			InputStream inputStream = getLocator().open(className);
+			if (inputStream == null) {
+				return null;
+			}
+			try {
+				return readers.get().read(inputStream, className);
+			} finally {
+				inputStream.close();
+			}
+		} catch (IOException e) {
+			log(Level.FINE, "Could not read " + className + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private JavaClass createClass(ClassFileSummary summary, File classFile) {
+		return new ClassFileJavaClass(summary.getName(), summary.getImports(), supertypeNamesOf(summary), isATest(summary), classFile);
+	}
+
+	private static Set<String> supertypeNamesOf(ClassFileSummary summary) {
+		ImmutableSet.Builder<String> supertypes = ImmutableSet.builder();
+		supertypes.add(summary.getInterfaceNames());
+		if (summary.getSuperclassName() != null) {
+			supertypes.add(summary.getSuperclassName());
+		}
+		return supertypes.build();
+	}
+
+	private boolean isATest(ClassFileSummary summary) {
+		if (summary.isAbstract()) {
+			return false;
+		}
+		boolean usesCustomRunner = usesCustomRunner(summary);
+		if (!usesCustomRunner && !hasTestMethods(summary)) {
+			return false;
+		}
+		return usesCustomRunner ? summary.hasNonPrivateConstructor() : summary.hasJUnitCompatibleConstructor();
+	}
+
+	private boolean usesCustomRunner(ClassFileSummary summary) {
+		for (ClassFileSummary each = summary; each != null; each = findSuperclass(each)) {
+			if (each.isAnnotatedWithCustomRunner()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean hasTestMethods(ClassFileSummary summary) {
+		if (!hasTestMethodCandidates(summary)) {
+			return false;
+		}
+
+		Map<Long, ClassFileSummary> declaringClasses = newHashMap();
+		Map<Long, Integer> methodFlags = newHashMap();
+		collectMethods(summary, declaringClasses, methodFlags);
+		for (Map.Entry<Long, Integer> each : methodFlags.entrySet()) {
+			int flags = each.getValue();
+			if ((flags & TEST_ANNOTATIONS) != 0) {
+				return true;
+			}
+			if (((flags & ClassFileSummary.TEST_PREFIX) != 0) && extendsTestCase(declaringClasses.get(each.getKey()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean hasTestMethodCandidates(ClassFileSummary summary) {
+		if (summary.hasTestMethodCandidates()) {
+			return true;
+		}
+		for (ClassFileSummary each : findSupertypes(summary)) {
+			if (hasTestMethodCandidates(each)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Like CtClass.getMethods(), the non-private methods of a class and its
+	// supertypes, where a method hides the ones it overrides
+	private void collectMethods(ClassFileSummary summary, Map<Long, ClassFileSummary> declaringClasses, Map<Long, Integer> methodFlags) {
+		for (ClassFileSummary each : findSupertypes(summary)) {
+			collectMethods(each, declaringClasses, methodFlags);
+		}
+		for (int i = 0; i < summary.getMethodCount(); i++) {
+			declaringClasses.put(summary.getMethodSignature(i), summary);
+			methodFlags.put(summary.getMethodSignature(i), summary.getMethodFlags(i));
+		}
+	}
+
+	private boolean extendsTestCase(ClassFileSummary summary) {
+		for (ClassFileSummary each = findSuperclass(summary); each != null; each = findSuperclass(each)) {
+			if (each.getName().equals(TestCase.class.getName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Interfaces first, then the superclass
+	private List<ClassFileSummary> findSupertypes(ClassFileSummary summary) {
+		List<ClassFileSummary> supertypes = new ArrayList<ClassFileSummary>();
+		for (String each : summary.getInterfaceNames()) {
+			ClassFileSummary anInterface = findSummary(each);
+			if (anInterface != null) {
+				supertypes.add(anInterface);
+			}
+		}
+		ClassFileSummary superclass = findSuperclass(summary);
+		if (superclass != null) {
+			supertypes.add(superclass);
+		}
+		return supertypes;
+	}
+
+	private ClassFileSummary findSuperclass(ClassFileSummary summary) {
+		if (summary.getSuperclassName() == null) {
+			return null;
+		}
+		return findSummary(summary.getSuperclassName());
+	}
+}
@@ -37,7 +37,27 @@ public interface TestDetector {
 
 	Set<JavaClass> findTestsToRun(Collection<File> changedFiles);
 
+	/**
+	 * Forgets the classes of removed class files.
+	 * 
+	 * @return the tests that depended on the removed classes and need to be
+	 *         run again
+	 */
+	Set<JavaClass> removeClasses(Collection<File> removedFiles);
+
+	/**
+	 * @return the tests that depend on the given classes of library jars,
+	 *         which changed, and need to be run again
+	 */
+	Set<JavaClass> findTestsUsingLibraryClasses(Collection<String> changedLibraryClasses);
+
 	void setClasspathProvider(ClasspathProvider classpath);
 
 	Set<String> getCurrentTests();
+
+	/**
+	 * Returns the tests that were removed, are no longer tests, or are now
+	 * filtered, since this was last called.
+	 */
+	Set<String> takeDisabledTests();
 }
\ No newline at end of file
@@ -0,0 +1,320 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Maps.*;
+import static com.google.common.collect.Sets.*;
+
+import java.util.*;
+
+/**
+ * Answers which tests depend on a set of classes without walking the
+ * dependency graph. The graph is condensed into its strongly connected
+ * components, and each component has the set of tests that depend on it, as
+ * bits numbering the tests.
+ * <p/>
+ * Added edges and tests are pushed down to the components they reach. Removed
+ * edges leave extra tests behind, which are only dropped when the components
+ * are computed again: when a component may have been split, or when too many
+ * edges were removed since the last time.
+ */
+class TestReachability {
+	private static final int MINIMUM_STALE_EDGES_BEFORE_REBUILD = 1024;
+
+	private final ClassDependencyGraph graph;
+	private boolean built;
+	private int[] componentOf;
+	private List<BitSet> componentTests;
+	private List<int[]> componentMembers;
+	private Map<String, Integer> testNumbers;
+	private List<String> testNames;
+	// Edges removed since the last query, with the id of the parent in the
+	// high bits, unless they were added again
+	private Set<Long> removedEdges;
+	private int staleEdges;
+	private int edgesWhenBuilt;
+
+	TestReachability(ClassDependencyGraph graph) {
+		this.graph = graph;
+	}
+
+	void vertexAdded(int id) {
+		if (built) {
+			componentOf = grow(componentOf, id + 1);
+			componentOf[id] = newComponent(new int[] { id });
+			if (graph.classWithId(id).isATest()) {
+				addTest(id);
+			}
+		}
+	}
+
+	void vertexReplaced(int id) {
+		if (built && graph.classWithId(id).isATest()) {
+			addTest(id);
+		}
+	}
+
+	void vertexRemoved(int id) {
+		if (built) {
+			int component = componentOf[id];
+			componentOf[id] = -1;
+			// Without this class, the others may no longer depend on each
+			// other
+			if (componentMembers.get(component).length > 1) {
+				built = false;
+			}
+		}
+	}
+
+	void edgeAdded(int parentId, int childId) {
+		if (built) {
+			removedEdges.remove(edge(parentId, childId));
+			propagate(componentTests.get(componentOf[parentId]), childId);
+		}
+	}
+
+	void edgeRemoved(int parentId, int childId) {
+		if (built) {
+			removedEdges.add(edge(parentId, childId));
+		}
+	}
+
+	/**
+	 * The tests that depend on the given classes, directly or not, including
+	 * the given classes that are tests.
+	 */
+	Set<JavaClass> findDependentTests(Collection<JavaClass> javaClasses) {
+		updateComponents();
+		BitSet tests = new BitSet();
+		for (JavaClass each : javaClasses) {
+			Integer id = graph.findId(each.getName());
+			if (id != null) {
+				tests.or(componentTests.get(componentOf[id]));
+			}
+		}
+
+		Set<JavaClass> dependentTests = newHashSet();
+		for (int test = tests.nextSetBit(0); test >= 0; test = tests.nextSetBit(test + 1)) {
+			// Tests that were removed or changed may still have a bit
+			JavaClass testClass = graph.findClass(testNames.get(test));
+			if ((testClass != null) && testClass.isATest()) {
+				dependentTests.add(testClass);
+			}
+		}
+		return dependentTests;
+	}
+
+	private void updateComponents() {
+		if (built) {
+			for (long each : removedEdges) {
+				int parentId = (int) (each >>> 32);
+				int childId = (int) each;
+				if ((componentOf[parentId] >= 0) && (componentOf[parentId] == componentOf[childId])) {
+					// The component may have been split
+					built = false;
+				}
+			}
+			staleEdges += removedEdges.size();
+			removedEdges.clear();
+		}
+		if (!built || (staleEdges > Math.max(MINIMUM_STALE_EDGES_BEFORE_REBUILD, edgesWhenBuilt / 4))) {
+			build();
+		}
+	}
+
+	private void build() {
+		int capacity = graph.idCapacity();
+		componentOf = new int[capacity];
+		Arrays.fill(componentOf, -1);
+		componentTests = newArrayList();
+		componentMembers = newArrayList();
+		testNumbers = newHashMap();
+		testNames = newArrayList();
+		removedEdges = newHashSet();
+		staleEdges = 0;
+		edgesWhenBuilt = 0;
+
+		findComponents(capacity);
+		// Components are found before the ones that depend on them, so the
+		// tests flow from the last ones to the first ones
+		for (int component = componentMembers.size() - 1; component >= 0; component--) {
+			BitSet tests = componentTests.get(component);
+			for (int member : componentMembers.get(component)) {
+				if (graph.classWithId(member).isATest()) {
+					tests.set(testNumber(member));
+				}
+				for (int i = 0; i < graph.predecessorCount(member); i++) {
+					int parentComponent = componentOf[graph.predecessor(member, i)];
+					if (parentComponent != component) {
+						tests.or(componentTests.get(parentComponent));
+					}
+				}
+				edgesWhenBuilt += graph.successorCount(member);
+			}
+		}
+		built = true;
+	}
+
+	// Tarjan's algorithm, with explicit stacks so deep graphs do not overflow
+	// the thread stack
+	private void findComponents(int capacity) {
+		int[] index = new int[capacity];
+		Arrays.fill(index, -1);
+		int[] lowLink = new int[capacity];
+		BitSet onStack = new BitSet(capacity);
+		int[] componentStack = new int[capacity];
+		int componentStackSize = 0;
+		int[] callStack = new int[capacity];
+		int[] nextEdge = new int[capacity];
+		int nextIndex = 0;
+
+		for (int root = 0; root < capacity; root++) {
+			if ((graph.classWithId(root) == null) || (index[root] >= 0)) {
+				continue;
+			}
+			int depth = 0;
+			callStack[0] = root;
+			nextEdge[0] = 0;
+			index[root] = lowLink[root] = nextIndex++;
+			componentStack[componentStackSize++] = root;
+			onStack.set(root);
+			while (depth >= 0) {
+				int id = callStack[depth];
+				if (nextEdge[depth] < graph.successorCount(id)) {
+					int childId = graph.successor(id, nextEdge[depth]++);
+					if (index[childId] < 0) {
+						depth++;
+						callStack[depth] = childId;
+						nextEdge[depth] = 0;
+						index[childId] = lowLink[childId] = nextIndex++;
+						componentStack[componentStackSize++] = childId;
+						onStack.set(childId);
+					} else if (onStack.get(childId)) {
+						lowLink[id] = Math.min(lowLink[id], index[childId]);
+					}
+				} else {
+					if (lowLink[id] == index[id]) {
+						int size = 0;
+						while (componentStack[componentStackSize - 1 - size] != id) {
+							size++;
+						}
+						size++;
+						int[] members = Arrays.copyOfRange(componentStack, componentStackSize - size, componentStackSize);
+						componentStackSize -= size;
+						int component = newComponent(members);
+						for (int member : members) {
+							onStack.clear(member);
+							componentOf[member] = component;
+						}
+					}
+					depth--;
+					if (depth >= 0) {
+						int parentId = callStack[depth];
+						lowLink[parentId] = Math.min(lowLink[parentId], lowLink[id]);
+					}
+				}
+			}
+		}
+	}
+
+	private int newComponent(int[] members) {
+		componentTests.add(new BitSet());
+		componentMembers.add(members);
+		return componentMembers.size() - 1;
+	}
+
+	private void addTest(int id) {
+		BitSet test = new BitSet();
+		test.set(testNumber(id));
+		propagate(test, id);
+	}
+
+	private int testNumber(int id) {
+		String name = graph.classWithId(id).getName();
+		Integer number = testNumbers.get(name);
+		if (number == null) {
+			number = testNames.size();
+			testNumbers.put(name, number);
+			testNames.add(name);
+		}
+		return number;
+	}
+
+	// Adds the tests to the component of the class and to every component
+	// it depends on. A component that already has them does not need to be
+	// visited, since the components it depends on have them too, unless it
+	// got them during this call.
+	private void propagate(BitSet tests, int startId) {
+		BitSet visited = new BitSet();
+		BitSet changedComponents = new BitSet();
+		int[] stack = new int[16];
+		int stackSize = 0;
+		stack[stackSize++] = startId;
+		while (stackSize > 0) {
+			int id = stack[--stackSize];
+			if (visited.get(id)) {
+				continue;
+			}
+			visited.set(id);
+			int component = componentOf[id];
+			if (!changedComponents.get(component)) {
+				BitSet componentBits = componentTests.get(component);
+				if (containsAll(componentBits, tests)) {
+					continue;
+				}
+				componentBits.or(tests);
+				changedComponents.set(component);
+			}
+			for (int i = 0; i < graph.successorCount(id); i++) {
+				stack = grow(stack, stackSize + 1);
+				stack[stackSize++] = graph.successor(id, i);
+			}
+		}
+	}
+
+	private static boolean containsAll(BitSet bits, BitSet otherBits) {
+		for (int bit = otherBits.nextSetBit(0); bit >= 0; bit = otherBits.nextSetBit(bit + 1)) {
+			if (!bits.get(bit)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long edge(int parentId, int childId) {
+		return ((long) parentId << 32) | (childId & 0xFFFFFFFFL);
+	}
+
+	private static int[] grow(int[] list, int minCapacity) {
+		if (list.length >= minCapacity) {
+			return list;
+		}
+		return Arrays.copyOf(list, Math.max(minCapacity, list.length + (list.length >> 1) + 2));
+	}
+}
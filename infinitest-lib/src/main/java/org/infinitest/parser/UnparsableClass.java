@@ -47,6 +47,11 @@ public class UnparsableClass implements JavaClass {
 		return Collections.emptySet();
 	}
 
+	@Override
+	public Set<String> getSupertypes() {
+		return Collections.emptySet();
+	}
+
 	@Override
 	public String getName() {
 		return classname;
@@ -49,6 +49,11 @@ abstract class AbstractTestRunner implements TestRunner {
 		this.concurrencyController = concurrencyController;
 	}
 
+	@Override
+	public void dispose() {
+		// Nothing is held between test runs
+	}
+
 	protected ConcurrencyController getConcurrencySemaphore() {
 		if (concurrencyController == null) {
 			concurrencyController = new SingleLockConcurrencyController();
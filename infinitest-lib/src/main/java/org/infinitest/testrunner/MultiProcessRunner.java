@@ -38,24 +38,55 @@ public class MultiProcessRunner extends AbstractTestRunner {
 	private QueueConsumer queueConsumer;
 
 	// DEBT Move into QueueConsumer.
-	private Queue<String> queue;
+	private TestQueue queue;
 
 	public MultiProcessRunner() {
 		this(new NativeConnectionFactory(JUnit4Runner.class), null);
 	}
 
-	public MultiProcessRunner(final ProcessConnectionFactory remoteProcessManager, RuntimeEnvironment environment) {
+	private volatile ProcessConnectionFactory connectionFactory;
+
+	public MultiProcessRunner(ProcessConnectionFactory remoteProcessManager, RuntimeEnvironment environment) {
+		// The priority is set once the runner is created
 		queue = new TestQueue(getTestPriority());
+		connectionFactory = remoteProcessManager;
 
 		setRuntimeEnvironment(environment);
 		queueConsumer = new QueueConsumer(getEventSupport(), queue) {
 			@Override
-			protected QueueProcessor createQueueProcessor() throws IOException {
-				return new TestQueueProcessor(getEventSupport(), remoteProcessManager, getRuntimeEnvironment());
+			protected QueueProcessor createQueueProcessor(RunnerEventSupport shardEvents) throws IOException {
+				return new TestQueueProcessor(shardEvents, connectionFactory, getRuntimeEnvironment());
 			}
 		};
 	}
 
+	/**
+	 * Keeps the given number of test runner processes started ahead of time,
+	 * so test runs don't wait for a JVM to start.
+	 */
+	public void setWarmProcessCount(int warmProcessCount) {
+		ProcessConnectionFactory factory = connectionFactory;
+		if (factory instanceof WarmConnectionPool) {
+			((WarmConnectionPool) factory).shutdown();
+			factory = ((WarmConnectionPool) factory).getFactory();
+		}
+		if (warmProcessCount > 0) {
+			factory = new WarmConnectionPool(factory, warmProcessCount);
+		}
+		connectionFactory = factory;
+	}
+
+	@Override
+	public void dispose() {
+		setWarmProcessCount(0);
+	}
+
+	@Override
+	public void setTestPriority(Comparator<String> testPriority) {
+		super.setTestPriority(testPriority);
+		queue.setPriority(testPriority);
+	}
+
 	@Override
 	public void setConcurrencyController(ConcurrencyController semaphore) {
 		super.setConcurrencyController(semaphore);
@@ -27,37 +27,162 @@
  */
 package org.infinitest.testrunner;
 
+import static com.google.common.collect.Lists.*;
 import static com.google.common.collect.Maps.*;
 import static java.lang.System.*;
+import static org.infinitest.util.InfinitestUtils.*;
 
+import java.io.*;
 import java.util.*;
+import java.util.logging.*;
 
 public class RunStatistics implements TestResultsListener {
-	private final Map<String, Long> failureTimestamps;
+	// Enough runs to see through the odd slow one, like the first run in a
+	// freshly started process
+	static final int DURATION_HISTORY_SIZE = 10;
+
+	private final Map<String, TestHistory> histories;
+	private RunStatisticsLog statisticsLog;
 
 	public RunStatistics() {
-		failureTimestamps = newHashMap();
+		histories = newHashMap();
+	}
+
+	/**
+	 * Loads the statistics recorded in the given file by previous sessions,
+	 * and records the results of every test run from now on in it.
+	 */
+	public synchronized void persistTo(File logFile) {
+		statisticsLog = new RunStatisticsLog(logFile);
+		try {
+			statisticsLog.load(this);
+		} catch (IOException e) {
+			log(Level.WARNING, "Could not read test statistics " + logFile + ": " + e.getMessage());
+		}
+		try {
+			statisticsLog.compact(histories);
+		} catch (IOException e) {
+			log(Level.WARNING, "Could not write test statistics " + logFile + ": " + e.getMessage());
+		}
+	}
+
+	public synchronized long getLastFailureTime(String testName) {
+		TestHistory history = histories.get(testName);
+		if (history == null) {
+			return 0;
+		}
+		return history.lastFailureTime;
+	}
+
+	public synchronized int getPassCount(String testName) {
+		TestHistory history = histories.get(testName);
+		if (history == null) {
+			return 0;
+		}
+		return history.passCount;
+	}
+
+	public synchronized int getFailureCount(String testName) {
+		TestHistory history = histories.get(testName);
+		if (history == null) {
+			return 0;
+		}
+		return history.failureCount;
 	}
 
-	private void update(TestEvent event) {
-		failureTimestamps.put(event.getTestName(), currentTimeMillis());
+	/**
+	 * The median time, in milliseconds, taken by the methods of the test over
+	 * its last few runs, or 0 if it was never run.
+	 */
+	public long getExpectedDuration(String testName) {
+		return getDurationPercentile(testName, 50);
 	}
 
-	public long getLastFailureTime(String testName) {
-		if (!failureTimestamps.containsKey(testName)) {
+	/**
+	 * The time, in milliseconds, the methods of the test took in the given
+	 * percentage of its last few runs, or 0 if it was never run.
+	 */
+	public synchronized long getDurationPercentile(String testName, int percentile) {
+		TestHistory history = histories.get(testName);
+		if ((history == null) || history.durations.isEmpty()) {
 			return 0;
 		}
-		return failureTimestamps.get(testName);
+		List<Long> sorted = newArrayList(history.durations);
+		Collections.sort(sorted);
+		return sorted.get(Math.min(sorted.size() - 1, (sorted.size() * percentile) / 100));
+	}
+
+	private static long duration(TestCaseEvent event) {
+		long duration = 0;
+		boolean timed = false;
+		for (MethodStats each : event.getRunStats()) {
+			if (each.stopTime >= each.startTime) {
+				duration += each.duration();
+				timed = true;
+			}
+		}
+		if (!timed) {
+			return -1;
+		}
+		return duration;
+	}
+
+	// A duration of -1 means the run was not timed
+	synchronized void record(String testName, long timestamp, boolean failed, long duration) {
+		TestHistory history = histories.get(testName);
+		if (history == null) {
+			history = new TestHistory();
+			histories.put(testName, history);
+		}
+		history.record(timestamp, failed, duration);
+	}
+
+	synchronized void restore(String testName, TestHistory history) {
+		histories.put(testName, history);
 	}
 
 	@Override
-	public void testCaseComplete(TestCaseEvent event) {
-		for (TestEvent each : event.getFailureEvents()) {
-			update(each);
+	public synchronized void testCaseComplete(TestCaseEvent event) {
+		long timestamp = currentTimeMillis();
+		boolean failed = event.failed();
+		long duration = duration(event);
+		record(event.getTestName(), timestamp, failed, duration);
+		if (statisticsLog != null) {
+			try {
+				statisticsLog.append(event.getTestName(), timestamp, failed, duration, histories);
+			} catch (IOException e) {
+				log(Level.WARNING, "Could not record test statistics: " + e.getMessage());
+			}
 		}
 	}
 
 	@Override
 	public void testCaseStarting(TestEvent event) {
 	}
+
+	static class TestHistory {
+		long lastFailureTime;
+		int passCount;
+		int failureCount;
+		final LinkedList<Long> durations = new LinkedList<Long>();
+
+		void record(long timestamp, boolean failed, long duration) {
+			if (failed) {
+				lastFailureTime = timestamp;
+				failureCount++;
+			} else {
+				passCount++;
+			}
+			if (duration >= 0) {
+				addDuration(duration);
+			}
+		}
+
+		void addDuration(long duration) {
+			durations.addLast(duration);
+			if (durations.size() > DURATION_HISTORY_SIZE) {
+				durations.removeFirst();
+			}
+		}
+	}
 }
@@ -0,0 +1,151 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static java.nio.file.StandardCopyOption.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.infinitest.testrunner.RunStatistics.TestHistory;
+
+/**
+ * Append-only file of the {@link RunStatistics} of a project, so that the
+ * tests are prioritized from the first run after a restart.
+ * <p/>
+ * Layout: magic and version, then records. A summary record holds everything
+ * known about a test (name, last failure time, pass and failure counts and
+ * recent durations); a run record holds the outcome of a single run (name,
+ * time, failed flag and duration). Each run appends a run record. The file is
+ * rewritten with one summary per test when it is loaded, and whenever it holds
+ * many more runs than tests.
+ */
+class RunStatisticsLog {
+	private static final int MAGIC = 0x494E4653; // "INFS"
+	static final int VERSION = 1;
+	private static final byte SUMMARY = 1;
+	private static final byte RUN = 2;
+	private static final int MIN_RECORDS_BEFORE_COMPACTING = 1000;
+
+	private final File logFile;
+	private int recordCount;
+
+	RunStatisticsLog(File logFile) {
+		this.logFile = logFile;
+	}
+
+	/**
+	 * Replays the records of the file into the given statistics. A record cut
+	 * short, by a crash while it was written, is ignored.
+	 */
+	void load(RunStatistics stats) throws IOException {
+		if (!logFile.exists()) {
+			return;
+		}
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+		try {
+			if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+				return;
+			}
+			while (true) {
+				byte type = in.readByte();
+				String testName = in.readUTF();
+				if (type == SUMMARY) {
+					TestHistory history = new TestHistory();
+					history.lastFailureTime = in.readLong();
+					history.passCount = in.readInt();
+					history.failureCount = in.readInt();
+					int durationCount = in.readByte();
+					for (int i = 0; i < durationCount; i++) {
+						history.addDuration(in.readLong());
+					}
+					stats.restore(testName, history);
+				} else if (type == RUN) {
+					long timestamp = in.readLong();
+					boolean failed = in.readBoolean();
+					long duration = in.readLong();
+					stats.record(testName, timestamp, failed, duration);
+				} else {
+					throw new IOException("Unknown record type " + type + " in " + logFile);
+				}
+			}
+		} catch (EOFException e) {
+			// Read up to the last complete record
+		} finally {
+			in.close();
+		}
+	}
+
+	void compact(Map<String, TestHistory> histories) throws IOException {
+		File tempFile = new File(logFile.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			for (Map.Entry<String, TestHistory> each : histories.entrySet()) {
+				TestHistory history = each.getValue();
+				out.writeByte(SUMMARY);
+				out.writeUTF(each.getKey());
+				out.writeLong(history.lastFailureTime);
+				out.writeInt(history.passCount);
+				out.writeInt(history.failureCount);
+				out.writeByte(history.durations.size());
+				for (long duration : history.durations) {
+					out.writeLong(duration);
+				}
+			}
+		} finally {
+			out.close();
+		}
+
+		// Replaces the log in one step, so a crash leaves either log whole
+		Files.move(tempFile.toPath(), logFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+		recordCount = histories.size();
+	}
+
+	void append(String testName, long timestamp, boolean failed, long duration, Map<String, TestHistory> histories) throws IOException {
+		if (recordCount > Math.max(MIN_RECORDS_BEFORE_COMPACTING, 4 * histories.size())) {
+			compact(histories);
+			return;
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true)));
+		try {
+			out.writeByte(RUN);
+			out.writeUTF(testName);
+			out.writeLong(timestamp);
+			out.writeBoolean(failed);
+			out.writeLong(duration);
+		} finally {
+			out.close();
+		}
+		recordCount++;
+	}
+}
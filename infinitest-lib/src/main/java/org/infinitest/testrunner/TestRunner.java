@@ -51,4 +51,10 @@ public interface TestRunner {
 	void removeTestQueueListener(ReloadListener testQueueNormalizer);
 
 	void setConcurrencyController(ConcurrencyController semaphore);
+
+	/**
+	 * Releases the resources held between test runs, like test runner
+	 * processes started ahead of time.
+	 */
+	void dispose();
 }
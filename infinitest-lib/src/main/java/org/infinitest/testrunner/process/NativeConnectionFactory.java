@@ -27,6 +27,7 @@
  */
 package org.infinitest.testrunner.process;
 
+import static com.google.common.collect.Lists.*;
 import static java.util.Arrays.*;
 import static java.util.logging.Level.*;
 import static org.infinitest.util.InfinitestUtils.*;
@@ -47,31 +48,51 @@ public class NativeConnectionFactory implements ProcessConnectionFactory {
 
 	@Override
 	public ProcessConnection getConnection(RuntimeEnvironment environment, OutputStreamHandler outputListener) throws IOException {
-		TcpSocketProcessCommunicator communicator = createCommunicator();
-		Process process = startProcess(communicator.createSocket(), environment);
+		SocketProcessCommunicator communicator = createCommunicator();
+		Process process;
+		try {
+			process = startProcess(communicator.listen(), environment);
+		} catch (IOException e) {
+			communicator.closeSocket();
+			throw e;
+		} catch (RuntimeException e) {
+			communicator.closeSocket();
+			throw e;
+		}
 		outputListener.processStream(process.getErrorStream(), OutputType.STDERR);
 		outputListener.processStream(process.getInputStream(), OutputType.STDOUT);
 		communicator.openSocket();
 		return new NativeProcessConnection(communicator, process);
 	}
 
-	protected TcpSocketProcessCommunicator createCommunicator() {
+	/**
+	 * Uses a Unix domain socket when the JVM supports it, and a loopback port
+	 * otherwise.
+	 */
+	protected SocketProcessCommunicator createCommunicator() {
+		if (UnixSocketProcessCommunicator.isSupported()) {
+			return new UnixSocketProcessCommunicator();
+		}
 		return new TcpSocketProcessCommunicator();
 	}
 
 	Process startProcess(int port, RuntimeEnvironment environment) throws IOException {
-		ProcessBuilder builder = buildProcess(port, environment);
+		return startProcess(asList(String.valueOf(port)), environment);
+	}
+
+	Process startProcess(List<String> address, RuntimeEnvironment environment) throws IOException {
+		ProcessBuilder builder = buildProcess(address, environment);
 		return builder.start();
 	}
 
-	ProcessBuilder buildProcess(int port, RuntimeEnvironment environment) {
+	ProcessBuilder buildProcess(List<String> address, RuntimeEnvironment environment) {
 		// Could extract this to a class. Could then replace with:
 		// http://wiki.eclipse.org/FAQ_How_do_I_launch_a_Java_program%3F
 		ProcessBuilder builder = new ProcessBuilder();
 		builder.directory(environment.getWorkingDirectory());
 
 		List<String> arguments = environment.createProcessArguments();
-		arguments.addAll(buildRunnerArgs(port));
+		arguments.addAll(buildRunnerArgs(address));
 		builder.command(arguments);
 
 		builder.environment().putAll(environment.createProcessEnvironment());
@@ -90,7 +111,9 @@ public class NativeConnectionFactory implements ProcessConnectionFactory {
 		log(INFO, message.toString());
 	}
 
-	private Collection<String> buildRunnerArgs(int portNum) {
-		return asList(TestRunnerProcess.class.getName(), runnerClass.getName(), String.valueOf(portNum));
+	private Collection<String> buildRunnerArgs(List<String> address) {
+		List<String> arguments = newArrayList(TestRunnerProcess.class.getName(), runnerClass.getName());
+		arguments.addAll(address);
+		return arguments;
 	}
 }
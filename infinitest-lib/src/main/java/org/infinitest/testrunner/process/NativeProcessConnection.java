@@ -30,10 +30,10 @@ package org.infinitest.testrunner.process;
 import org.infinitest.testrunner.*;
 
 public class NativeProcessConnection implements ProcessConnection {
-	private final TcpSocketProcessCommunicator communicator;
+	private final SocketProcessCommunicator communicator;
 	private final Process process;
 
-	public NativeProcessConnection(TcpSocketProcessCommunicator communicator, Process process) {
+	public NativeProcessConnection(SocketProcessCommunicator communicator, Process process) {
 		this.communicator = communicator;
 		this.process = process;
 	}
@@ -0,0 +1,102 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.process;
+
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.*;
+
+import org.infinitest.*;
+import org.infinitest.testrunner.*;
+
+/**
+ * Talks to a test runner process over a socket it connects to, using the
+ * {@link FramedProtocol}. Subclasses provide the transport.
+ */
+public abstract class SocketProcessCommunicator {
+	private FramedProtocol protocol;
+	private Closeable connection;
+
+	/**
+	 * Starts listening for the test runner process.
+	 * 
+	 * @return the arguments telling the test runner process where to connect
+	 */
+	public abstract List<String> listen();
+
+	/**
+	 * Waits for the test runner process to connect.
+	 */
+	public abstract void openSocket();
+
+	/**
+	 * Stops waiting for the test runner process to connect, releasing what
+	 * {@link #listen()} opened.
+	 */
+	protected abstract void stopListening();
+
+	protected void connect(InputStream in, OutputStream out, Closeable newConnection) throws IOException {
+		connection = newConnection;
+		protocol = new FramedProtocol(in, out);
+		protocol.handshake();
+	}
+
+	/**
+	 * Also stops listening, if the test runner process never connected.
+	 * 
+	 * @see #sendMessage(String)
+	 */
+	public synchronized void closeSocket() {
+		stopListening();
+		try {
+			if (protocol != null) {
+				protocol.sendEnd();
+				protocol.close();
+				protocol = null;
+				connection.close();
+				connection = null;
+				log(Level.CONFIG, "Socket closed");
+			}
+		} catch (IOException e) {
+			log(Level.INFO, "Tried to close socket, but was already closed");
+		}
+	}
+
+	// Synchronized to prevent sending a message while the socket is being
+	// closed
+	public synchronized TestResults sendMessage(String testName) {
+		try {
+			protocol.sendTestName(testName);
+			return protocol.receiveResults();
+		} catch (IOException e) {
+			throw new TestRunAborted(testName, e);
+		}
+	}
+}
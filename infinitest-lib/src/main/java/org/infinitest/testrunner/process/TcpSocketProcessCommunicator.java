@@ -27,20 +27,16 @@
  */
 package org.infinitest.testrunner.process;
 
+import static java.util.Collections.*;
 import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
 import java.net.*;
+import java.util.*;
 import java.util.logging.*;
 
-import org.infinitest.*;
-import org.infinitest.testrunner.*;
-
-public class TcpSocketProcessCommunicator {
+public class TcpSocketProcessCommunicator extends SocketProcessCommunicator {
 	private ServerSocket serverSocket;
-	private ObjectInputStream inStream;
-	private ObjectOutputStream outStream;
-	private Socket socket;
 	private final int timeout;
 
 	public TcpSocketProcessCommunicator() {
@@ -65,55 +61,37 @@ public class TcpSocketProcessCommunicator {
 		return serverSocket.getLocalPort();
 	}
 
+	@Override
+	public List<String> listen() {
+		return singletonList(String.valueOf(createSocket()));
+	}
+
+	@Override
 	public void openSocket() {
 		try {
-			socket = serverSocket.accept();
+			Socket socket = serverSocket.accept();
 			log(Level.CONFIG, "Socket opened");
-			inStream = new ObjectInputStream(socket.getInputStream());
-			outStream = new ObjectOutputStream(socket.getOutputStream());
+			socket.setTcpNoDelay(true);
+			connect(socket.getInputStream(), socket.getOutputStream(), socket);
 		} catch (SocketTimeoutException e) {
 			log("Test runner process failed to start in a timely manner", e);
 			throw new RuntimeException(e);
 		} catch (IOException e) {
 			log("Error connecting to test runner process", e);
 			throw new RuntimeException(e);
+		} finally {
+			stopListening();
 		}
 	}
 
-	/**
-	 * @see #sendMessage(String)
-	 */
-	public synchronized void closeSocket() {
-		try {
-			if (outStream != null) {
-				outStream.writeObject(null);
-				if (!socket.isClosed()) {
-					inStream.close();
-					inStream = null;
-					outStream.close();
-					outStream = null;
-					socket.close();
-					socket = null;
-					log(Level.CONFIG, "Socket closed");
-				}
+	@Override
+	protected void stopListening() {
+		if (serverSocket != null) {
+			try {
+				serverSocket.close();
+			} catch (IOException e) {
+				log(Level.FINE, "Could not close test runner socket: " + e.getMessage());
 			}
-		} catch (IOException e) {
-			log(Level.INFO, "Tried to close socket, but was already closed");
 		}
 	}
-
-	// Synchronized to prevent sending a message while the socket is being
-	// closed
-	public synchronized TestResults sendMessage(String testName) {
-		try {
-			outStream.writeObject(testName);
-			return (TestResults) inStream.readObject();
-		} catch (IOException e) {
-			throw new TestRunAborted(testName, e);
-		} catch (ClassNotFoundException e) {
-			log("Error reading from socket", e);
-			throw new MissingClassException("Error reading from socket", e);
-		}
-
-	}
 }
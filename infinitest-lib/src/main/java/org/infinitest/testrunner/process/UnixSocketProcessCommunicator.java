@@ -0,0 +1,205 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.process;
+
+import static com.google.common.collect.Lists.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.logging.*;
+
+/**
+ * Lets the test runner process connect through a Unix domain socket, which
+ * skips the TCP stack and doesn't use up ephemeral ports as runners are
+ * restarted. It listens on a loopback port too, for runners on a JVM that
+ * doesn't support Unix domain sockets (before Java 16), and takes the first
+ * connection on either.
+ */
+public class UnixSocketProcessCommunicator extends SocketProcessCommunicator {
+	// Looked up by reflection, to keep working on JVMs older than Java 16
+	private static final Method OPEN_SERVER_CHANNEL = findOpenServerChannel();
+	private static final Method CREATE_ADDRESS = findCreateAddress();
+	private static final ProtocolFamily UNIX = findUnixProtocolFamily();
+
+	private final int timeout;
+	private Selector selector;
+	private ServerSocketChannel tcpServer;
+	private ServerSocketChannel unixServer;
+	private File socketFile;
+
+	public UnixSocketProcessCommunicator() {
+		this(2500);
+	}
+
+	public UnixSocketProcessCommunicator(int timeout) {
+		this.timeout = timeout;
+	}
+
+	public static boolean isSupported() {
+		return (OPEN_SERVER_CHANNEL != null) && (CREATE_ADDRESS != null) && (UNIX != null);
+	}
+
+	@Override
+	public List<String> listen() {
+		if (selector != null) {
+			throw new IllegalStateException("Test runner socket is already open");
+		}
+
+		try {
+			selector = Selector.open();
+			tcpServer = ServerSocketChannel.open();
+			tcpServer.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+			tcpServer.configureBlocking(false);
+			tcpServer.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			stopListening();
+			throw new RuntimeException("Cannot open port for interprocess communication", e);
+		}
+		List<String> arguments = newArrayList(String.valueOf(tcpServer.socket().getLocalPort()));
+		try {
+			listenOnUnixSocket();
+			arguments.add(socketFile.getPath());
+		} catch (IOException e) {
+			log(Level.CONFIG, "Cannot open Unix domain socket, falling back to TCP: " + e.getMessage());
+		}
+		return arguments;
+	}
+
+	private void listenOnUnixSocket() throws IOException {
+		socketFile = File.createTempFile("infinitest", ".sock");
+		socketFile.delete();
+		unixServer = openUnixServerChannel();
+		unixServer.bind(createAddress(socketFile));
+		unixServer.configureBlocking(false);
+		unixServer.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	@Override
+	public void openSocket() {
+		try {
+			if (selector.select(timeout) == 0) {
+				throw new SocketTimeoutException("Test runner process did not connect within " + timeout + "ms");
+			}
+			ServerSocketChannel server = (ServerSocketChannel) selector.selectedKeys().iterator().next().channel();
+			SocketChannel channel = server.accept();
+			if (channel == null) {
+				throw new IOException("Test runner process connection was lost");
+			}
+			channel.configureBlocking(true);
+			if (server == tcpServer) {
+				channel.socket().setTcpNoDelay(true);
+				log(Level.CONFIG, "Socket opened");
+			} else {
+				log(Level.CONFIG, "Unix domain socket opened");
+			}
+			connect(Channels.newInputStream(channel), Channels.newOutputStream(channel), channel);
+		} catch (SocketTimeoutException e) {
+			log("Test runner process failed to start in a timely manner", e);
+			throw new RuntimeException(e);
+		} catch (IOException e) {
+			log("Error connecting to test runner process", e);
+			throw new RuntimeException(e);
+		} finally {
+			stopListening();
+		}
+	}
+
+	@Override
+	protected void stopListening() {
+		closeQuietly(tcpServer);
+		closeQuietly(unixServer);
+		closeQuietly(selector);
+		if (socketFile != null) {
+			socketFile.delete();
+		}
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				log(Level.FINE, "Could not close " + closeable + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private static ServerSocketChannel openUnixServerChannel() throws IOException {
+		return (ServerSocketChannel) invoke(OPEN_SERVER_CHANNEL, UNIX);
+	}
+
+	private static SocketAddress createAddress(File file) throws IOException {
+		return (SocketAddress) invoke(CREATE_ADDRESS, file.getPath());
+	}
+
+	private static Object invoke(Method staticMethod, Object argument) throws IOException {
+		if (!isSupported()) {
+			throw new IOException("Unix domain sockets are not supported by this JVM");
+		}
+		try {
+			return staticMethod.invoke(null, argument);
+		} catch (IllegalAccessException e) {
+			throw new IOException(e);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private static Method findOpenServerChannel() {
+		try {
+			return ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static Method findCreateAddress() {
+		try {
+			return Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static ProtocolFamily findUnixProtocolFamily() {
+		try {
+			return Enum.valueOf(StandardProtocolFamily.class, "UNIX");
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.process;
+
+import static java.util.logging.Level.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.infinitest.ConsoleOutputListener.OutputType;
+import org.infinitest.*;
+import org.infinitest.testrunner.*;
+
+/**
+ * Keeps test runner processes started and connected ahead of time, so a test
+ * run doesn't wait for a JVM to start. Each process is used by a single run,
+ * and is replaced in the background as soon as it is taken. Idle processes
+ * are only used for the runtime environment they were started with, and are
+ * stopped when the environment changes.
+ */
+public class WarmConnectionPool implements ProcessConnectionFactory {
+	private final ProcessConnectionFactory factory;
+	private final int size;
+	private final ExecutorService starter;
+	private final Deque<WarmConnection> idleConnections = new ArrayDeque<WarmConnection>();
+	private RuntimeEnvironment environment;
+	private int startingCount;
+	private boolean shutdown;
+
+	public WarmConnectionPool(ProcessConnectionFactory factory, int size) {
+		this.factory = factory;
+		this.size = size;
+		starter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Infinitest test runner pool");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	@Override
+	public ProcessConnection getConnection(RuntimeEnvironment runtimeEnvironment, OutputStreamHandler outputHandler) throws IOException {
+		WarmConnection warmConnection;
+		synchronized (this) {
+			useEnvironment(runtimeEnvironment);
+			warmConnection = idleConnections.poll();
+			fill();
+		}
+		if (warmConnection == null) {
+			return factory.getConnection(runtimeEnvironment, outputHandler);
+		}
+		log(CONFIG, "Using a test runner process started ahead of time");
+		return warmConnection.attach(outputHandler);
+	}
+
+	/**
+	 * Stops the idle processes. Connections taken from the pool are not
+	 * affected.
+	 */
+	public synchronized void shutdown() {
+		shutdown = true;
+		abortIdleConnections();
+		starter.shutdown();
+	}
+
+	public ProcessConnectionFactory getFactory() {
+		return factory;
+	}
+
+	synchronized int getIdleCount() {
+		return idleConnections.size();
+	}
+
+	private void useEnvironment(RuntimeEnvironment runtimeEnvironment) {
+		if ((environment == null) || !environment.equals(runtimeEnvironment)) {
+			environment = runtimeEnvironment;
+			abortIdleConnections();
+		}
+	}
+
+	private void abortIdleConnections() {
+		final List<WarmConnection> staleConnections = new ArrayList<WarmConnection>(idleConnections);
+		idleConnections.clear();
+		if (!staleConnections.isEmpty()) {
+			// Waits for the processes to end, so the caller doesn't
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (WarmConnection each : staleConnections) {
+						each.abort();
+					}
+				}
+			}, "Infinitest test runner pool cleanup").start();
+		}
+	}
+
+	private void fill() {
+		while (!shutdown && ((idleConnections.size() + startingCount) < size)) {
+			startingCount++;
+			starter.execute(new ConnectionStarter(environment));
+		}
+	}
+
+	private class ConnectionStarter implements Runnable {
+		private final RuntimeEnvironment startingEnvironment;
+
+		ConnectionStarter(RuntimeEnvironment startingEnvironment) {
+			this.startingEnvironment = startingEnvironment;
+		}
+
+		@Override
+		public void run() {
+			WarmConnection warmConnection = null;
+			try {
+				warmConnection = start();
+			} finally {
+				synchronized (WarmConnectionPool.this) {
+					startingCount--;
+					if ((warmConnection != null) && !shutdown && startingEnvironment.equals(environment)) {
+						idleConnections.add(warmConnection);
+						warmConnection = null;
+					}
+				}
+				if (warmConnection != null) {
+					warmConnection.abort();
+				}
+			}
+		}
+
+		private WarmConnection start() {
+			CapturedOutput output = new CapturedOutput();
+			try {
+				return new WarmConnection(factory.getConnection(startingEnvironment, output), output);
+			} catch (IOException e) {
+				log(WARNING, "Could not start a test runner process ahead of time: " + e.getMessage());
+			}
+			// CHECKSTYLE:OFF
+			catch (RuntimeException e)
+			// CHECKSTYLE:ON
+			{
+				log(WARNING, "Could not start a test runner process ahead of time: " + e.getMessage());
+			}
+			return null;
+		}
+	}
+
+	private static class WarmConnection {
+		private final ProcessConnection connection;
+		private final CapturedOutput output;
+
+		WarmConnection(ProcessConnection connection, CapturedOutput output) {
+			this.connection = connection;
+			this.output = output;
+		}
+
+		ProcessConnection attach(OutputStreamHandler outputHandler) {
+			output.forwardTo(outputHandler);
+			return connection;
+		}
+
+		void abort() {
+			connection.close();
+			connection.abort();
+		}
+	}
+
+	// The console output of an idle process is read once the process is
+	// used, by the handler of the test run
+	private static class CapturedOutput implements OutputStreamHandler {
+		private final Map<InputStream, OutputType> streams = new LinkedHashMap<InputStream, OutputType>();
+
+		@Override
+		public synchronized void processStream(InputStream stream, OutputType type) {
+			streams.put(stream, type);
+		}
+
+		synchronized void forwardTo(OutputStreamHandler outputHandler) {
+			for (Map.Entry<InputStream, OutputType> each : streams.entrySet()) {
+				outputHandler.processStream(each.getKey(), each.getValue());
+			}
+			streams.clear();
+		}
+	}
+}
@@ -28,30 +28,47 @@
 package org.infinitest.testrunner.queue;
 
 import static com.google.common.collect.Lists.*;
+import static java.util.logging.Level.*;
 import static org.infinitest.util.InfinitestUtils.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.infinitest.*;
 import org.infinitest.testrunner.*;
 
 class ProcessorRunnable implements Runnable {
-	private final QueueProcessor processor;
+	private final Callable<QueueProcessor> processorFactory;
+	private QueueProcessor processor;
+	private boolean terminated;
 	private final Queue<String> testQueue;
 	private final RunnerEventSupport eventSupport;
 	private final int initialSize;
 	private final ConcurrencyController concurrencySemaphore;
 
 	public ProcessorRunnable(Queue<String> testQueue, QueueProcessor processor, RunnerEventSupport eventSupport, int initialSize, ConcurrencyController concurrencySemaphore) {
-		this.testQueue = testQueue;
+		this(testQueue, (Callable<QueueProcessor>) null, eventSupport, initialSize, concurrencySemaphore);
 		this.processor = processor;
+	}
+
+	/**
+	 * Creates the processor on the thread of the runnable, so the processors
+	 * of several shards start at the same time. If it cannot be created, the
+	 * other shards run the tests.
+	 */
+	public ProcessorRunnable(Queue<String> testQueue, Callable<QueueProcessor> processorFactory, RunnerEventSupport eventSupport, int initialSize, ConcurrencyController concurrencySemaphore) {
+		this.testQueue = testQueue;
+		this.processorFactory = processorFactory;
 		this.eventSupport = eventSupport;
 		this.initialSize = initialSize;
 		this.concurrencySemaphore = concurrencySemaphore;
 	}
 
-	public void terminate() {
-		processor.cleanup();
+	public synchronized void terminate() {
+		terminated = true;
+		if (processor != null) {
+			processor.cleanup();
+		}
 	}
 
 	private void fireEvent() {
@@ -61,11 +78,17 @@ class ProcessorRunnable implements Runnable {
 	@Override
 	public void run() {
 		try {
+			if (!createProcessor()) {
+				// Still counts as a finished shard
+				eventSupport.fireTestRunComplete();
+				return;
+			}
 			String currentTest = null;
 			try {
 				concurrencySemaphore.acquire();
-				while (!testQueue.isEmpty()) {
-					currentTest = testQueue.poll();
+				// Other shards of the run may take the last test between a
+				// check and a poll, so poll until nothing is left
+				while ((currentTest = testQueue.poll()) != null) {
 					processor.process(currentTest);
 					// RISK There might be a race condition here.
 					// If we fire all the events for a test
@@ -99,6 +122,28 @@ class ProcessorRunnable implements Runnable {
 		}
 	}
 
+	private boolean createProcessor() {
+		if (processorFactory == null) {
+			return true;
+		}
+		QueueProcessor createdProcessor;
+		try {
+			createdProcessor = processorFactory.call();
+		} catch (Exception e) {
+			log(WARNING, "Running tests in fewer processes, could not start one: " + e.getMessage());
+			return false;
+		}
+		synchronized (this) {
+			// The run was stopped while the processor was starting
+			if (terminated || Thread.currentThread().isInterrupted()) {
+				createdProcessor.cleanup();
+				return false;
+			}
+			processor = createdProcessor;
+			return true;
+		}
+	}
+
 	private void reQueueTestAndTerminateProcess(String currentTest) {
 		reQueueTest(currentTest);
 		processor.cleanup();
@@ -33,6 +33,7 @@ import static java.util.concurrent.Executors.*;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import org.infinitest.*;
 import org.infinitest.testrunner.*;
@@ -40,7 +41,7 @@ import org.infinitest.testrunner.*;
 public abstract class QueueConsumer {
 	private final Queue<String> testQueue;
 	private final RunnerEventSupport eventSupport;
-	private QueueProcessorThread processorThread;
+	private List<QueueProcessorThread> processorThreads = newArrayList();
 	private final long testTimeout;
 	private final ExecutorService executor;
 	private ConcurrencyController semaphore;
@@ -63,20 +64,46 @@ public abstract class QueueConsumer {
 	}
 
 	private void startProcessing() {
+		List<ProcessorRunnable> shards = newArrayList();
+		AtomicInteger runningShards = new AtomicInteger();
+		RunnerEventSupport shardEvents = new ShardEventSupport(eventSupport, runningShards);
+		int shardCount = Math.max(1, Math.min(semaphore.getCoreCount(), testQueue.size()));
+		// The first processor is created here so that push() reports the
+		// errors, the others are created by their shards in parallel
+		shards.add(new ProcessorRunnable(testQueue, createFirstQueueProcessor(shardEvents), shardEvents, testQueue.size(), semaphore));
+		for (int i = 1; i < shardCount; i++) {
+			shards.add(new ProcessorRunnable(testQueue, new QueueProcessorFactory(shardEvents), shardEvents, testQueue.size(), semaphore));
+		}
+		runningShards.set(shards.size());
+		executor.execute(new ProcessingKickoffRunnable(shards));
+	}
+
+	private QueueProcessor createFirstQueueProcessor(RunnerEventSupport shardEvents) {
 		try {
-			QueueProcessor processor = createQueueProcessor();
-			ProcessorRunnable runnable = new ProcessorRunnable(testQueue, processor, eventSupport, testQueue.size(), semaphore);
-			executor.execute(new ProcessingKickoffRunnable(runnable));
+			return createQueueProcessor(shardEvents);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	private class QueueProcessorFactory implements Callable<QueueProcessor> {
+		private final RunnerEventSupport shardEvents;
+
+		QueueProcessorFactory(RunnerEventSupport shardEvents) {
+			this.shardEvents = shardEvents;
+		}
+
+		@Override
+		public QueueProcessor call() throws IOException {
+			return createQueueProcessor(shardEvents);
+		}
+	}
+
 	private class ProcessingKickoffRunnable implements Runnable {
-		private final ProcessorRunnable runnable;
+		private final List<ProcessorRunnable> shards;
 
-		private ProcessingKickoffRunnable(ProcessorRunnable runnable) {
-			this.runnable = runnable;
+		private ProcessingKickoffRunnable(List<ProcessorRunnable> shards) {
+			this.shards = shards;
 		}
 
 		@Override
@@ -92,31 +119,51 @@ public abstract class QueueConsumer {
 		}
 
 		private void startNewTestRun() {
-			processorThread = new QueueProcessorThread(runnable);
+			processorThreads = newArrayList();
+			for (ProcessorRunnable each : shards) {
+				processorThreads.add(new QueueProcessorThread(each));
+			}
 			eventSupport.fireQueueEvent(new TestQueueEvent(newArrayList(testQueue), testQueue.size()));
-			processorThread.start();
+			for (QueueProcessorThread each : processorThreads) {
+				each.start();
+			}
 		}
 
 		private boolean testsAreRunning() {
-			return (processorThread != null) && processorThread.isAlive();
+			for (QueueProcessorThread each : processorThreads) {
+				if (each.isAlive()) {
+					return true;
+				}
+			}
+			return false;
 		}
 	}
 
 	private void stopCurrentRun() throws InterruptedException {
 		// Die hard
-		processorThread.interrupt();
-		processorThread.join(testTimeout);
-		if (processorThread.isAlive()) {
-			// Die Harder
-			processorThread.terminate();
-			processorThread.join(5000);
-			if (processorThread.isAlive()) {
-				throw new IllegalStateException();
+		for (QueueProcessorThread each : processorThreads) {
+			each.interrupt();
+		}
+		for (QueueProcessorThread each : processorThreads) {
+			each.join(testTimeout);
+			if (each.isAlive()) {
+				// Die Harder
+				each.terminate();
+				each.join(5000);
+				if (each.isAlive()) {
+					throw new IllegalStateException();
+				}
 			}
 		}
 	}
 
-	protected abstract QueueProcessor createQueueProcessor() throws IOException;
+	/**
+	 * Creates the processor of one shard of a test run. A run is split in as
+	 * many shards as the concurrency controller allows cores, each one pulling
+	 * the next test from the shared queue as soon as it is done with the
+	 * previous one, and reporting to the given event support.
+	 */
+	protected abstract QueueProcessor createQueueProcessor(RunnerEventSupport shardEvents) throws IOException;
 
 	public void setConcurrencySemaphore(ConcurrencyController controller) {
 		semaphore = controller;
@@ -0,0 +1,70 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.queue;
+
+import java.util.*;
+
+import org.infinitest.testrunner.*;
+
+/**
+ * The order in which the tests of a run are taken from the queue.
+ */
+public enum SchedulingPolicy {
+	/**
+	 * The tests that failed most recently first.
+	 */
+	FAILURES_FIRST {
+		@Override
+		public Comparator<String> createComparator(RunStatistics stats) {
+			return new TestComparator(stats);
+		}
+	},
+
+	/**
+	 * The tests that failed most recently first, then the quickest tests.
+	 */
+	FAILURES_THEN_SHORTEST_FIRST {
+		@Override
+		public Comparator<String> createComparator(RunStatistics stats) {
+			return new ShortestFirstComparator(stats);
+		}
+	},
+
+	/**
+	 * The slowest tests first, to finish sooner when tests run in several
+	 * processes.
+	 */
+	LONGEST_FIRST {
+		@Override
+		public Comparator<String> createComparator(RunStatistics stats) {
+			return new LongestFirstComparator(stats);
+		}
+	};
+
+	public abstract Comparator<String> createComparator(RunStatistics stats);
+}
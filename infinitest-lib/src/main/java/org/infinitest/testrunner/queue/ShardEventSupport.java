@@ -0,0 +1,87 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.queue;
+
+import java.util.concurrent.atomic.*;
+
+import org.infinitest.ConsoleOutputListener.OutputType;
+import org.infinitest.*;
+import org.infinitest.testrunner.*;
+
+/**
+ * Merges the events of the shards of a test run into the event stream of the
+ * runner, one event at a time, and reports the run complete once every shard
+ * is done.
+ */
+class ShardEventSupport extends RunnerEventSupport {
+	private final RunnerEventSupport delegate;
+	private final AtomicInteger runningShards;
+
+	ShardEventSupport(RunnerEventSupport delegate, AtomicInteger runningShards) {
+		super(delegate);
+		this.delegate = delegate;
+		this.runningShards = runningShards;
+	}
+
+	@Override
+	public void fireStartingEvent(String testClass) {
+		synchronized (delegate) {
+			delegate.fireStartingEvent(testClass);
+		}
+	}
+
+	@Override
+	public void fireTestCaseComplete(String testName, TestResults results) {
+		synchronized (delegate) {
+			delegate.fireTestCaseComplete(testName, results);
+		}
+	}
+
+	@Override
+	public void fireConsoleUpdateEvent(String newText, OutputType outputType) {
+		synchronized (delegate) {
+			delegate.fireConsoleUpdateEvent(newText, outputType);
+		}
+	}
+
+	@Override
+	public void fireQueueEvent(TestQueueEvent event) {
+		synchronized (delegate) {
+			delegate.fireQueueEvent(event);
+		}
+	}
+
+	@Override
+	public void fireTestRunComplete() {
+		if (runningShards.decrementAndGet() == 0) {
+			synchronized (delegate) {
+				delegate.fireTestRunComplete();
+			}
+		}
+	}
+}
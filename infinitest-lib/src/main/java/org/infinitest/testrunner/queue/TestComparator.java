@@ -27,11 +27,9 @@
  */
 package org.infinitest.testrunner.queue;
 
-import java.util.*;
-
 import org.infinitest.testrunner.*;
 
-public class TestComparator implements Comparator<String> {
+public class TestComparator extends StatisticsComparator {
 	private final RunStatistics stats;
 
 	public TestComparator(RunStatistics stats) {
@@ -39,7 +37,7 @@ public class TestComparator implements Comparator<String> {
 	}
 
 	@Override
-	public int compare(String test1, String test2) {
-		return new Long(stats.getLastFailureTime(test2)).compareTo(stats.getLastFailureTime(test1));
+	public long[] priorityKeyOf(String testName) {
+		return new long[] { -stats.getLastFailureTime(testName) };
 	}
 }
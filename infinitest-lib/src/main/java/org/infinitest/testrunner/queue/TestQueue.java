@@ -27,21 +27,121 @@
  */
 package org.infinitest.testrunner.queue;
 
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Sets.*;
+
 import java.util.*;
-import java.util.concurrent.*;
 
-public class TestQueue extends PriorityBlockingQueue<String> {
-	private static final long serialVersionUID = -1L;
+import com.google.common.primitives.*;
+
+/**
+ * The tests waiting to be run, in the order of a priority. The priority key of
+ * a test is read when it is queued, since the statistics it comes from are
+ * updated by the tests that finish while it waits. Priorities that are not a
+ * {@link StatisticsComparator} are compared when tests are queued and taken.
+ */
+public class TestQueue extends AbstractQueue<String> {
+	private final PriorityQueue<QueuedTest> tests = new PriorityQueue<QueuedTest>();
+	private final Set<String> testNames = newHashSet();
+	private Comparator<String> priority;
+	private long queuedTestCount;
+
+	public TestQueue(Comparator<String> priority) {
+		this.priority = priority;
+	}
 
-	public TestQueue(Comparator<String> comparator) {
-		super(11, comparator);
+	/**
+	 * Orders the tests queued from now on with the given priority.
+	 */
+	public synchronized void setPriority(Comparator<String> priority) {
+		this.priority = priority;
 	}
 
+	/**
+	 * @return false if the test is already queued
+	 */
 	@Override
 	public boolean add(String testName) {
-		if (!contains(testName)) {
-			return super.add(testName);
+		return offer(testName);
+	}
+
+	@Override
+	public synchronized boolean offer(String testName) {
+		if (!testNames.add(testName)) {
+			return false;
+		}
+		long[] priorityKey = null;
+		if (priority instanceof StatisticsComparator) {
+			priorityKey = ((StatisticsComparator) priority).priorityKeyOf(testName);
+		}
+		tests.add(new QueuedTest(testName, priority, priorityKey, queuedTestCount++));
+		return true;
+	}
+
+	@Override
+	public synchronized String poll() {
+		QueuedTest test = tests.poll();
+		if (test == null) {
+			return null;
+		}
+		testNames.remove(test.name);
+		return test.name;
+	}
+
+	@Override
+	public synchronized String peek() {
+		QueuedTest test = tests.peek();
+		return (test == null) ? null : test.name;
+	}
+
+	@Override
+	public synchronized int size() {
+		return tests.size();
+	}
+
+	@Override
+	public synchronized boolean contains(Object testName) {
+		return testNames.contains(testName);
+	}
+
+	/**
+	 * Iterates over a copy of the queued tests, in no particular order.
+	 */
+	@Override
+	public synchronized Iterator<String> iterator() {
+		List<String> queuedTests = newArrayList();
+		for (QueuedTest each : tests) {
+			queuedTests.add(each.name);
+		}
+		return Collections.unmodifiableList(queuedTests).iterator();
+	}
+
+	private static class QueuedTest implements Comparable<QueuedTest> {
+		private final String name;
+		private final Comparator<String> priority;
+		private final long[] priorityKey;
+		private final long sequence;
+
+		QueuedTest(String name, Comparator<String> priority, long[] priorityKey, long sequence) {
+			this.name = name;
+			this.priority = priority;
+			this.priorityKey = priorityKey;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(QueuedTest other) {
+			int byPriority;
+			if ((priorityKey != null) && (other.priorityKey != null)) {
+				byPriority = Longs.lexicographicalComparator().compare(priorityKey, other.priorityKey);
+			} else {
+				byPriority = priority.compare(name, other.name);
+			}
+			if (byPriority != 0) {
+				return byPriority;
+			}
+			// Tests of the same priority are run in the order they were queued
+			return Longs.compare(sequence, other.sequence);
 		}
-		return false;
 	}
 }
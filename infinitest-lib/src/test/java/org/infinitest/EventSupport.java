@@ -203,6 +203,15 @@ public class EventSupport implements StatusChangeListener, TestQueueListener, Te
 		return new TestCaseEvent(testName, new Object(), new TestResults(methodFailed(testName, methodName, throwable)));
 	}
 
+	public static TestCaseEvent testCasePassing(String testName, long durationInMillis) {
+		MethodStats stats = new MethodStats("shouldPass");
+		stats.startTime = 1000;
+		stats.stopTime = 1000 + durationInMillis;
+		TestResults results = new TestResults();
+		results.addMethodStats(Collections.singleton(stats));
+		return new TestCaseEvent(testName, new Object(), results);
+	}
+
 	public void assertTestsStarted(String... testNames) {
 		// Also asserts the order
 		List<String> startedTests = new ArrayList<String>();
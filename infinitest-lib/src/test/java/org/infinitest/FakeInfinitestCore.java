@@ -87,4 +87,7 @@ public class FakeInfinitestCore implements InfinitestCore {
 	public int update(Collection<File> changedFiles) {
 		throw new UnsupportedOperationException();
 	}
+
+	public void dispose() {
+	}
 }
@@ -51,6 +51,16 @@ class StubTestDetector implements TestDetector {
 		return emptySet();
 	}
 
+	@Override
+	public Set<JavaClass> removeClasses(Collection<File> removedFiles) {
+		return emptySet();
+	}
+
+	@Override
+	public Set<JavaClass> findTestsUsingLibraryClasses(Collection<String> changedLibraryClasses) {
+		return emptySet();
+	}
+
 	public boolean isEmpty() {
 		throw new UnsupportedOperationException();
 	}
@@ -68,4 +78,9 @@ class StubTestDetector implements TestDetector {
 	public Set<String> getCurrentTests() {
 		return emptySet();
 	}
+
+	@Override
+	public Set<String> takeDisabledTests() {
+		return emptySet();
+	}
 }
\ No newline at end of file
@@ -45,11 +45,11 @@ public class WhenAnErrorOccurs {
 		shouldFail = true;
 		failingDetector = new FakeChangeDetector() {
 			@Override
-			public Set<File> findChangedFiles() throws IOException {
+			public ChangeSet findChanges() throws IOException {
 				if (shouldFail) {
 					throw new IOException();
 				}
-				return Collections.emptySet();
+				return super.findChanges();
 			}
 		};
 		core = createCore(failingDetector, withNoTestsToRun());
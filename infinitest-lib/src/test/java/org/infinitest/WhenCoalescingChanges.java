@@ -0,0 +1,91 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+public class WhenCoalescingChanges {
+	private AtomicInteger updateCount;
+	private CoalescingUpdateScheduler scheduler;
+
+	@Before
+	public void inContext() {
+		updateCount = new AtomicInteger();
+		scheduler = new CoalescingUpdateScheduler(new Runnable() {
+			@Override
+			public void run() {
+				updateCount.incrementAndGet();
+			}
+		}, 100, 400, MILLISECONDS);
+	}
+
+	@After
+	public void cleanup() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void shouldRunASingleUpdateForABurstOfChanges() throws InterruptedException {
+		for (int i = 0; i < 20; i++) {
+			scheduler.changeDetected();
+		}
+		assertEquals(0, updateCount.get());
+
+		Thread.sleep(500);
+
+		assertEquals(1, updateCount.get());
+	}
+
+	@Test
+	public void shouldNotPostponeTheUpdatePastTheMaximumLatency() throws InterruptedException {
+		long start = System.currentTimeMillis();
+		while (System.currentTimeMillis() - start < 1500) {
+			scheduler.changeDetected();
+			Thread.sleep(20);
+		}
+
+		assertThat(updateCount.get(), greaterThanOrEqualTo(2));
+	}
+
+	@Test
+	public void shouldRunPendingChangesRightAwayWhenAsked() throws InterruptedException {
+		scheduler.changeDetected();
+
+		scheduler.updateNow();
+		assertEquals(1, updateCount.get());
+
+		Thread.sleep(300);
+		assertEquals(1, updateCount.get());
+	}
+}
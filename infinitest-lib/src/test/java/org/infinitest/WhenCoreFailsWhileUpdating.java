@@ -44,7 +44,7 @@ public class WhenCoreFailsWhileUpdating {
 	@Before
 	public void inContext() throws IOException {
 		changeDetector = mock(ChangeDetector.class);
-		when(changeDetector.findChangedFiles()).thenThrow(new IOException());
+		when(changeDetector.findChanges()).thenThrow(new IOException());
 
 		changeDetector.clear();
 
@@ -30,8 +30,10 @@ package org.infinitest;
 import static org.hamcrest.CoreMatchers.*;
 import static org.infinitest.CoreDependencySupport.*;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 import org.infinitest.changedetect.*;
+import org.infinitest.testrunner.*;
 import org.junit.*;
 
 public class WhenDetachingFromTheCore {
@@ -63,6 +65,19 @@ public class WhenDetachingFromTheCore {
 		assertEquals(1, eventCount);
 	}
 
+	@Test
+	public void shouldReleaseTheRunnerAndChangeDetectorWhenDisposed() {
+		TestRunner runner = mock(TestRunner.class);
+		ChangeDetector changeDetector = mock(ChangeDetector.class);
+		DefaultInfinitestCore core = new DefaultInfinitestCore(runner, new FakeEventQueue());
+		core.setChangeDetector(changeDetector);
+
+		core.dispose();
+
+		verify(runner).dispose();
+		verify(changeDetector).close();
+	}
+
 	@Test
 	public void shouldTreatNormalizedListenersAsEquivelent() {
 		EventNormalizer normalizer = new EventNormalizer(new FakeEventQueue());
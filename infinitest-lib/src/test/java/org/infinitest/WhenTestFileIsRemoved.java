@@ -27,25 +27,69 @@
  */
 package org.infinitest;
 
-import static org.infinitest.CoreDependencySupport.*;
+import static com.google.common.collect.Iterables.*;
+import static com.google.common.collect.Sets.*;
+import static org.infinitest.util.InfinitestUtils.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 import java.io.*;
 import java.util.*;
 
 import org.infinitest.changedetect.*;
+import org.infinitest.parser.*;
+import org.infinitest.testrunner.*;
 import org.junit.*;
 
 public class WhenTestFileIsRemoved {
+	private Set<File> removedFiles;
+	private TestRunner runner;
+	private TestDetector testDetector;
+	private DefaultInfinitestCore core;
+
+	@Before
+	public void inContext() {
+		removedFiles = newHashSet(new File("com/fakeco/RemovedTest.class"));
+		runner = mock(TestRunner.class);
+		testDetector = mock(TestDetector.class);
+		core = new DefaultInfinitestCore(runner, new ControlledEventQueue());
+		core.setChangeDetector(new FakeChangeDetector(Collections.<File> emptySet(), removedFiles));
+		core.setTestDetector(testDetector);
+	}
+
 	@Test
-	public void shouldReloadIndex() throws Exception {
-		InfinitestCore core = createCore(withRemovedFiles(), withNoTestsToRun());
+	public void shouldRemoveClassesFromTheIndexInsteadOfReloading() {
 		EventSupport eventSupport = new EventSupport();
 		core.addTestQueueListener(eventSupport);
+
 		core.update();
-		eventSupport.assertReloadOccured();
+
+		verify(testDetector).removeClasses(removedFiles);
+		verify(testDetector, never()).clear();
+		assertEquals(0, eventSupport.getReloadCount());
 	}
 
-	private ChangeDetector withRemovedFiles() {
-		return new FakeChangeDetector(Collections.<File> emptySet(), true);
+	@Test
+	public void shouldRunTestsThatDependedOnRemovedClasses() {
+		when(testDetector.removeClasses(removedFiles)).thenReturn(Collections.<JavaClass> singleton(new FakeJavaClass("DependentTest")));
+
+		assertEquals(1, core.update());
+		verify(runner).runTests(Arrays.asList("DependentTest"));
+	}
+
+	@Test
+	public void shouldDisableRemovedTests() {
+		when(testDetector.takeDisabledTests()).thenReturn(setify("RemovedTest"));
+		final Set<String> disabledTests = newHashSet();
+		core.addDisabledTestListener(new DisabledTestListener() {
+			@Override
+			public void testsDisabled(Collection<String> testNames) {
+				disabledTests.addAll(testNames);
+			}
+		});
+
+		core.update();
+
+		assertEquals("RemovedTest", getOnlyElement(disabledTests));
 	}
 }
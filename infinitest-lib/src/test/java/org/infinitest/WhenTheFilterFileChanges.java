@@ -28,6 +28,7 @@
 package org.infinitest;
 
 import static org.infinitest.util.FakeEnvironments.*;
+import static org.infinitest.util.InfinitestTestUtils.*;
 import static org.junit.Assert.*;
 
 import java.io.*;
@@ -37,6 +38,8 @@ import org.infinitest.filter.*;
 import org.infinitest.parser.*;
 import org.junit.*;
 
+import com.fakeco.fakeproduct.*;
+
 public class WhenTheFilterFileChanges {
 	private TestFilter list;
 	private final String CLASS_NAME = "com.foo.Bar";
@@ -54,12 +57,46 @@ public class WhenTheFilterFileChanges {
 		assertTrue(list.match(CLASS_NAME));
 	}
 
+	@Test
+	public void shouldTellWhetherTheFilterListChanged() throws Exception {
+		File file = File.createTempFile("infinitest", "shouldTellWhetherTheFilterListChanged");
+		list = new RegexFileFilter(file);
+		assertFalse(list.updateFilterList());
+
+		PrintWriter writer = new PrintWriter(file);
+		writer.println(CLASS_NAME);
+		writer.close();
+		assertTrue(list.updateFilterList());
+		assertFalse(list.updateFilterList());
+	}
+
+	@Test
+	public void shouldNotMatchTheIndexedTestsAgainWhileTheFiltersDoNotChange() {
+		final List<String> matchedClasses = new ArrayList<String>();
+		TestFilter countingFilter = new FilterStub() {
+			@Override
+			public boolean match(String className) {
+				matchedClasses.add(className);
+				return super.match(className);
+			}
+		};
+		TestDetector detector = new ClassFileTestDetector(countingFilter);
+		detector.setClasspathProvider(fakeClasspath());
+		detector.findTestsToRun(Collections.singleton(getFileForClass(TestFakeProduct.class)));
+		matchedClasses.clear();
+
+		detector.findTestsToRun(Collections.<File> emptySet());
+
+		assertTrue(matchedClasses.isEmpty());
+	}
+
 	@Test
 	public void shouldRecognizeChangesBeforeLookingForTests() {
 		TestFilter fakeFilterList = new RegexFileFilter() {
 			@Override
-			public void updateFilterList() {
+			public boolean updateFilterList() {
 				addFilter(CLASS_NAME);
+				return true;
 			}
 		};
 		TestDetector detector = new ClassFileTestDetector(fakeFilterList);
@@ -35,6 +35,7 @@ import static org.mockito.Mockito.*;
 import java.io.*;
 import java.util.*;
 
+import org.infinitest.changedetect.*;
 import org.infinitest.parser.*;
 import org.infinitest.testrunner.*;
 import org.junit.*;
@@ -69,4 +70,16 @@ public class WhenTriggeringACoreUpdate {
 
 		assertEquals(1, core.update(updatedFiles));
 	}
+
+	@Test
+	public void shouldRunTheTestsUsingClassesThatChangedInLibraryJars() throws IOException {
+		ChangeDetector changeDetector = mock(ChangeDetector.class);
+		Set<String> changedLibraryClasses = Collections.singleton("com.fakeco.library.Library");
+		Set<File> noFiles = Collections.emptySet();
+		when(changeDetector.findChanges()).thenReturn(new ChangeSet(noFiles, noFiles, noFiles, changedLibraryClasses));
+		when(testDetector.findTestsUsingLibraryClasses(changedLibraryClasses)).thenReturn(newHashSet((JavaClass) new FakeJavaClass("FakeTest")));
+		core.setChangeDetector(changeDetector);
+
+		assertEquals(1, core.update());
+	}
 }
@@ -0,0 +1,124 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.changedetect;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+import com.google.common.io.Files;
+
+/**
+ * Measures how long it takes to scan the class directories of a project of
+ * many modules, one directory at a time or concurrently.
+ */
+public class ClassDirectoryScanSimulation {
+	private static final int MODULE_COUNT = 50;
+	private static final int CLASS_COUNT = 100000;
+	private static final int CLASSES_PER_PACKAGE = 40;
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	public static void main(String[] args) throws IOException {
+		File projectDirectory = Files.createTempDir();
+		try {
+			List<File> classDirectories = generateClassDirectories(projectDirectory, MODULE_COUNT, CLASS_COUNT);
+			System.out.println("Scanning " + CLASS_COUNT + " class files in " + MODULE_COUNT + " class directories");
+			System.out.println("Mode\tFirst scan (ms)\tScan without changes (ms)");
+			for (int i = 0; i < 3; i++) {
+				measureScan("Serial", classDirectories, false);
+				measureScan("Parallel", classDirectories, true);
+			}
+		} finally {
+			deleteRecursively(projectDirectory);
+		}
+	}
+
+	private static void measureScan(String mode, List<File> classDirectories, boolean scanInParallel) throws IOException {
+		FileChangeDetector detector = createDetector(classDirectories, scanInParallel);
+		long start = System.nanoTime();
+		int changedFileCount = detector.findChanges().getChangedFiles().size();
+		long firstScan = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		assertTrue(detector.findChanges().getChangedFiles().isEmpty());
+		long secondScan = System.nanoTime() - start;
+
+		assertEquals(CLASS_COUNT, changedFileCount);
+		System.out.println(mode + "\t" + (firstScan / 1000000) + "\t" + (secondScan / 1000000));
+	}
+
+	@Test
+	public void shouldFindTheSameClassFilesInParallel() throws IOException {
+		List<File> classDirectories = generateClassDirectories(temporaryFolder.getRoot(), 5, 1000);
+		File invalidPackage = new File(classDirectories.get(0), "com/fakeco/.svn/Hidden.class");
+		Files.createParentDirs(invalidPackage);
+		Files.touch(invalidPackage);
+
+		Set<File> changedFiles = createDetector(classDirectories, false).findChanges().getChangedFiles();
+
+		assertEquals(1000, changedFiles.size());
+		assertEquals(changedFiles, createDetector(classDirectories, true).findChanges().getChangedFiles());
+	}
+
+	private static FileChangeDetector createDetector(List<File> classDirectories, boolean scanInParallel) {
+		FileChangeDetector detector = new FileChangeDetector();
+		detector.setClasspathProvider(new StandaloneClasspath(classDirectories, ""));
+		detector.setScanInParallel(scanInParallel);
+		return detector;
+	}
+
+	private static List<File> generateClassDirectories(File projectDirectory, int moduleCount, int classCount) throws IOException {
+		List<File> classDirectories = new ArrayList<File>();
+		for (int i = 0; i < moduleCount; i++) {
+			classDirectories.add(new File(projectDirectory, "module" + i + "/target/classes"));
+		}
+		for (int i = 0; i < classCount; i++) {
+			File classDirectory = classDirectories.get(i % moduleCount);
+			File classFile = new File(classDirectory, "com/fakeco/package" + (i / CLASSES_PER_PACKAGE) + "/Generated" + i + ".class");
+			Files.createParentDirs(classFile);
+			Files.touch(classFile);
+		}
+		return classDirectories;
+	}
+
+	private static void deleteRecursively(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+}
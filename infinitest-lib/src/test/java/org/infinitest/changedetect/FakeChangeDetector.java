@@ -36,15 +36,24 @@ import org.infinitest.*;
 
 public class FakeChangeDetector implements ChangeDetector {
 	private Set<File> changedFiles;
-	private boolean filesRemoved;
+	private Set<File> removedFiles;
 
-	public FakeChangeDetector(Set<File> changedFiles, boolean filesRemoved) {
+	public FakeChangeDetector(Set<File> changedFiles, Set<File> removedFiles) {
 		this.changedFiles = changedFiles;
-		this.filesRemoved = filesRemoved;
+		this.removedFiles = removedFiles;
 	}
 
 	public FakeChangeDetector() {
 		changedFiles = emptySet();
+		removedFiles = emptySet();
+	}
+
+	@Override
+	public ChangeSet findChanges() throws IOException {
+		ChangeSet changes = new ChangeSet(changedFiles, Collections.<File> emptySet(), removedFiles, findChangedLibraryClasses());
+		changedFiles = emptySet();
+		removedFiles = emptySet();
+		return changes;
 	}
 
 	@Override
@@ -53,21 +62,17 @@ public class FakeChangeDetector implements ChangeDetector {
 	}
 
 	@Override
-	public boolean filesWereRemoved() {
-		return filesRemoved;
+	public Set<String> findChangedLibraryClasses() {
+		return emptySet();
 	}
 
-	/**
-	 * @throws IOException
-	 */
 	@Override
-	public Set<File> findChangedFiles() throws IOException {
-		changedFiles = Collections.emptySet();
-		return changedFiles;
+	public void setClasspathProvider(ClasspathProvider classpath) {
+		// nothing to do here
 	}
 
 	@Override
-	public void setClasspathProvider(ClasspathProvider classpath) {
+	public void close() {
 		// nothing to do here
 	}
 }
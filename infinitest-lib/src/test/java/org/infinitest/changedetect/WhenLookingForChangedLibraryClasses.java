@@ -0,0 +1,92 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.changedetect;
+
+import static java.util.Arrays.*;
+import static org.infinitest.util.InfinitestUtils.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.jar.*;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+public class WhenLookingForChangedLibraryClasses {
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	private LibraryJarIndex index;
+	private File jar;
+
+	@Before
+	public void inContext() throws IOException {
+		index = new LibraryJarIndex();
+		jar = temporaryFolder.newFile("library.jar");
+		writeJar(jar, "Unchanged", "Changed", "Removed");
+		assertTrue(index.findChangedClasses(asList(jar)).isEmpty());
+	}
+
+	@Test
+	public void shouldFindClassesWhoseContentsChanged() throws IOException {
+		writeJar(jar, "Unchanged", "Changed!", "Added");
+		jar.setLastModified(jar.lastModified() + 2000);
+
+		assertEquals(setify("com.fakeco.library.Changed", "com.fakeco.library.Removed", "com.fakeco.library.Added"), index.findChangedClasses(asList(jar)));
+		assertTrue(index.findChangedClasses(asList(jar)).isEmpty());
+	}
+
+	@Test
+	public void shouldFindClassesOfRemovedJars() {
+		assertTrue(jar.delete());
+
+		Set<String> changedClasses = index.findChangedClasses(asList(jar));
+
+		assertEquals(setify("com.fakeco.library.Unchanged", "com.fakeco.library.Changed", "com.fakeco.library.Removed"), changedClasses);
+	}
+
+	@Test
+	public void shouldIgnoreJarsThatWereOnlyTouched() {
+		jar.setLastModified(jar.lastModified() + 2000);
+
+		assertTrue(index.findChangedClasses(asList(jar)).isEmpty());
+	}
+
+	// Each class contains its own name, followed by ! when it changed
+	private static void writeJar(File jar, String... classContents) throws IOException {
+		JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+		try {
+			for (String each : classContents) {
+				output.putNextEntry(new JarEntry("com/fakeco/library/" + each.replace("!", "") + ".class"));
+				output.write(each.getBytes("UTF-8"));
+				output.closeEntry();
+			}
+		} finally {
+			output.close();
+		}
+	}
+}
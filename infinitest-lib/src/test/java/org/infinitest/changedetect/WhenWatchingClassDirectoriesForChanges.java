@@ -0,0 +1,143 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.changedetect;
+
+import static java.util.Arrays.*;
+import static java.util.Collections.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public class WhenWatchingClassDirectoriesForChanges {
+	private static final long EVENT_TIMEOUT = 10000;
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File classDir;
+	private WatchServiceChangeDetector detector;
+
+	@Before
+	public void inContext() throws IOException {
+		classDir = temporaryFolder.newFolder("classes");
+		detector = new WatchServiceChangeDetector();
+		detector.setClasspathProvider(new StandaloneClasspath(asList(classDir)));
+	}
+
+	@After
+	public void cleanup() {
+		detector.close();
+	}
+
+	@Test
+	public void shouldScanClassDirectoriesOnFirstUpdate() throws Exception {
+		File classFile = createClassFile("com/fakeco/Foo.class");
+
+		assertThat(detector.findChanges().getChangedFiles(), hasItem(classFile));
+		assertTrue(detector.findChanges().getChangedFiles().isEmpty());
+	}
+
+	@Test
+	public void shouldFindClassFilesCreatedAfterFirstUpdate() throws Exception {
+		createClassFile("com/fakeco/Foo.class");
+		detector.findChanges();
+
+		File newFile = createClassFile("com/fakeco/Bar.class");
+
+		assertThat(waitForChanges(), hasItem(newFile));
+	}
+
+	@Test
+	public void shouldFindClassFilesInNewPackages() throws Exception {
+		detector.findChanges();
+
+		File newFile = createClassFile("com/fakeco/newpackage/Baz.class");
+
+		assertThat(waitForChanges(), hasItem(newFile));
+	}
+
+	@Test
+	public void shouldListRemovedClassFiles() throws Exception {
+		File classFile = createClassFile("com/fakeco/Foo.class");
+		detector.findChanges();
+
+		assertTrue(classFile.delete());
+
+		Set<File> removedFiles = new HashSet<File>();
+		long deadline = System.currentTimeMillis() + EVENT_TIMEOUT;
+		while (removedFiles.isEmpty() && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(50);
+			removedFiles.addAll(detector.findChanges().getRemovedFiles());
+		}
+		assertEquals(singleton(classFile), removedFiles);
+		assertTrue(detector.findChanges().getRemovedFiles().isEmpty());
+	}
+
+	@Test
+	public void shouldRescanAfterBeingCleared() throws Exception {
+		File classFile = createClassFile("com/fakeco/Foo.class");
+		detector.findChanges();
+
+		detector.clear();
+
+		assertThat(detector.findChanges().getChangedFiles(), hasItem(classFile));
+	}
+
+	@Test
+	public void shouldRescanWhenUsedAfterBeingClosed() throws Exception {
+		createClassFile("com/fakeco/Foo.class");
+		detector.findChanges();
+
+		detector.close();
+		File newFile = createClassFile("com/fakeco/Bar.class");
+
+		assertEquals(singleton(newFile), detector.findChanges().getChangedFiles());
+	}
+
+	private Set<File> waitForChanges() throws Exception {
+		Set<File> changedFiles = new HashSet<File>();
+		long deadline = System.currentTimeMillis() + EVENT_TIMEOUT;
+		while (changedFiles.isEmpty() && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(50);
+			changedFiles.addAll(detector.findChanges().getChangedFiles());
+		}
+		return changedFiles;
+	}
+
+	private File createClassFile(String path) throws IOException {
+		File classFile = new File(classDir, path);
+		classFile.getParentFile().mkdirs();
+		assertTrue(classFile.createNewFile());
+		return classFile;
+	}
+}
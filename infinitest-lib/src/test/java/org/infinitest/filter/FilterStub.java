@@ -31,6 +31,7 @@ import java.util.*;
 
 public class FilterStub implements TestFilter {
 	private final List<String> classesToFilter = new ArrayList<String>();
+	private boolean changed;
 
 	@Override
 	public boolean match(String className) {
@@ -38,11 +39,14 @@ public class FilterStub implements TestFilter {
 	}
 
 	@Override
-	public void updateFilterList() {
-		// nothing to do here
+	public boolean updateFilterList() {
+		boolean filtersChanged = changed;
+		changed = false;
+		return filtersChanged;
 	}
 
 	public void addClass(String className) {
 		classesToFilter.add(className);
+		changed = true;
 	}
 }
@@ -0,0 +1,142 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static java.util.Arrays.*;
+import static org.hamcrest.Matchers.*;
+import static org.infinitest.util.InfinitestUtils.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class ClassDependencyGraphTest {
+	private ClassDependencyGraph graph;
+	private JavaClass test;
+	private JavaClass parent;
+	private JavaClass child;
+
+	@Before
+	public void inContext() {
+		graph = new ClassDependencyGraph();
+		test = addClass("Test");
+		parent = addClass("Parent");
+		child = addClass("Child");
+		graph.addEdge(test, parent);
+		graph.addEdge(parent, child);
+	}
+
+	@Test
+	public void shouldNotAddTwoClassesWithTheSameName() {
+		assertFalse(graph.addVertex(new FakeJavaClass("Child")));
+		assertSame(child, graph.findClass("Child"));
+	}
+
+	@Test
+	public void shouldFindDependenciesInBothDirections() {
+		assertEquals(asList(parent), graph.predecessorsOf(child));
+		assertEquals(asList(child), graph.successorsOf(parent));
+	}
+
+	@Test
+	public void shouldNotDuplicateDependencies() {
+		graph.addEdge(parent, child);
+
+		assertEquals(asList(parent), graph.predecessorsOf(child));
+	}
+
+	@Test
+	public void shouldKeepParentsButDropChildrenOfReplacedClasses() {
+		JavaClass newParent = new FakeJavaClass("Parent");
+		graph.replaceVertex(newParent);
+
+		assertSame(newParent, graph.findClass("Parent"));
+		assertEquals(asList(test), graph.predecessorsOf(newParent));
+		assertTrue(graph.successorsOf(newParent).isEmpty());
+		assertTrue(graph.predecessorsOf(child).isEmpty());
+	}
+
+	@Test
+	public void shouldRemoveDependenciesOfRemovedClasses() {
+		graph.removeVertex(parent);
+
+		assertFalse(graph.containsVertex(parent));
+		assertTrue(graph.successorsOf(test).isEmpty());
+		assertTrue(graph.predecessorsOf(child).isEmpty());
+		assertEquals(setify("Test", "Child"), graph.getClassNames());
+	}
+
+	@Test
+	public void shouldReuseIdsOfRemovedClasses() {
+		graph.removeVertex(parent);
+		JavaClass other = addClass("Other");
+		graph.addEdge(test, other);
+
+		assertEquals(asList(test), graph.predecessorsOf(other));
+		assertTrue(graph.predecessorsOf(child).isEmpty());
+		assertEquals(3, graph.getClasses().size());
+	}
+
+	@Test
+	public void shouldFindClassesThatDependOnChangedClassesDirectlyOrNot() {
+		JavaClass unrelated = addClass("Unrelated");
+		graph.addEdge(unrelated, test);
+		graph.addEdge(child, unrelated);
+
+		Set<JavaClass> dependentClasses = graph.findDependentClasses(setify(child));
+
+		assertThat(dependentClasses, hasItems(child, parent, test, unrelated));
+		assertEquals(4, dependentClasses.size());
+	}
+
+	@Test
+	public void shouldIgnoreClassesThatAreNotInTheGraphWhenLookingForDependentClasses() {
+		JavaClass missing = new FakeJavaClass("Missing");
+
+		assertTrue(graph.findDependentClasses(setify(missing)).isEmpty());
+	}
+
+	@Test
+	public void shouldGrowPastItsInitialCapacity() {
+		JavaClass previous = child;
+		for (int i = 0; i < 1000; i++) {
+			JavaClass next = addClass("Class" + i);
+			graph.addEdge(next, previous);
+			previous = next;
+		}
+
+		assertEquals(1003, graph.findDependentClasses(setify(child)).size());
+	}
+
+	private JavaClass addClass(String name) {
+		JavaClass javaClass = new FakeJavaClass(name);
+		assertTrue(graph.addVertex(javaClass));
+		return javaClass;
+	}
+}
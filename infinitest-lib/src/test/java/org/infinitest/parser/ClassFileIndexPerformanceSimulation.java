@@ -0,0 +1,215 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Maps.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+import com.google.common.collect.*;
+
+/**
+ * Measures how long it takes to index a project of generated classes, each
+ * importing a few other classes of the project, as the project grows, and how
+ * much memory the index of a large project takes.
+ */
+public class ClassFileIndexPerformanceSimulation {
+	private static final int[] CLASS_COUNTS = { 1000, 2000, 5000, 10000, 20000, 50000 };
+	private static final int IMPORTS_PER_CLASS = 8;
+	private static final int LARGE_PROJECT_CLASS_COUNT = 40000;
+	private static final int LARGE_PROJECT_IMPORTS_PER_CLASS = 100;
+
+	public static void main(String[] args) {
+		// Warm up
+		indexGeneratedProject(CLASS_COUNTS[0]);
+
+		System.out.println("Classes\tIndexing time (ms)");
+		for (int classCount : CLASS_COUNTS) {
+			long timestamp = System.currentTimeMillis();
+			indexGeneratedProject(classCount);
+			System.out.println(classCount + "\t" + (System.currentTimeMillis() - timestamp));
+		}
+
+		GeneratedProject project = new GeneratedProject(LARGE_PROJECT_CLASS_COUNT, LARGE_PROJECT_IMPORTS_PER_CLASS);
+		long memoryBefore = usedMemory();
+		ClassFileIndex index = new ClassFileIndex(project);
+		index.findClasses(project.getClassFiles());
+		long memoryUsed = usedMemory() - memoryBefore;
+		System.out.println("Index of " + LARGE_PROJECT_CLASS_COUNT + " classes with " + LARGE_PROJECT_IMPORTS_PER_CLASS + " imports each: " + (memoryUsed / (1024 * 1024)) + "MB");
+
+		List<JavaClass> leaves = newArrayList();
+		for (int i = 0; i < 100; i++) {
+			leaves.add(project.createClass(GeneratedProject.className(i)));
+		}
+		long timestamp = System.currentTimeMillis();
+		int parentCount = index.findChangedParents(Sets.newHashSet(leaves)).size();
+		System.out.println("Found " + parentCount + " parents of 100 classes in " + (System.currentTimeMillis() - timestamp) + "ms");
+
+		Set<JavaClass> mostUsedClass = Collections.singleton(project.createClass(GeneratedProject.className(0)));
+		long start = System.nanoTime();
+		int testCount = 0;
+		for (JavaClass each : index.findChangedParents(mostUsedClass)) {
+			if (each.isATest()) {
+				testCount++;
+			}
+		}
+		System.out.println("Walked the graph to find the " + testCount + " tests depending on the most used class in " + ((System.nanoTime() - start) / 1000) + "us");
+
+		start = System.nanoTime();
+		index.setTrackTestReachability(true);
+		index.findDependentTests(mostUsedClass);
+		System.out.println("Computed the tests reaching each class in " + ((System.nanoTime() - start) / 1000000) + "ms");
+		for (int i = 0; i < 1000; i++) {
+			index.findDependentTests(mostUsedClass);
+		}
+		start = System.nanoTime();
+		testCount = index.findDependentTests(mostUsedClass).size();
+		System.out.println("Looked up the " + testCount + " tests depending on the most used class in " + ((System.nanoTime() - start) / 1000) + "us");
+	}
+
+	private static long usedMemory() {
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	@Test
+	public void canIndexTwentyThousandClasses() {
+		long timestamp = System.currentTimeMillis();
+		ClassFileIndex index = indexGeneratedProject(20000);
+
+		assertEquals(20000, index.getIndexedClasses().size());
+		// Takes about a second, compared to half a minute when finding a class
+		// by name was a linear search
+		assertThat(System.currentTimeMillis() - timestamp, lessThan(10000L));
+	}
+
+	private static ClassFileIndex indexGeneratedProject(int classCount) {
+		GeneratedProject project = new GeneratedProject(classCount, IMPORTS_PER_CLASS);
+		ClassFileIndex index = new ClassFileIndex(project);
+		index.findClasses(project.getClassFiles());
+		return index;
+	}
+
+	private static class GeneratedProject implements ClassBuilder {
+		private final Map<File, JavaClass> classesByFile = newLinkedHashMap();
+		private final Map<String, JavaClass> classesByName = newHashMap();
+
+		GeneratedProject(int classCount, int importsPerClass) {
+			Random random = new Random(classCount);
+			for (int i = 0; i < classCount; i++) {
+				Set<String> imports = Sets.newHashSet("java.lang.Object");
+				for (int j = 0; (j < importsPerClass) && (i > 0); j++) {
+					imports.add(className(random.nextInt(i)));
+				}
+				GeneratedClass generatedClass = new GeneratedClass(className(i), imports, (i % 10) == 0);
+				classesByFile.put(generatedClass.getClassFile(), generatedClass);
+				classesByName.put(generatedClass.getName(), generatedClass);
+			}
+		}
+
+		private static String className(int index) {
+			return "com.fakeco.generated.package" + (index % 100) + ".Generated" + index;
+		}
+
+		List<File> getClassFiles() {
+			return newArrayList(classesByFile.keySet());
+		}
+
+		@Override
+		public JavaClass createClass(String classname) {
+			JavaClass generatedClass = classesByName.get(classname);
+			if (generatedClass == null) {
+				return new UnparsableClass(classname);
+			}
+			return generatedClass;
+		}
+
+		@Override
+		public JavaClass loadClass(File file) {
+			return classesByFile.get(file);
+		}
+
+		@Override
+		public void invalidate(Collection<String> classNames) {
+			// Nothing is learnt about the generated classes
+		}
+
+		@Override
+		public void clear() {
+			// Nothing is cached
+		}
+	}
+
+	private static class GeneratedClass extends AbstractJavaClass {
+		private final String name;
+		private final Set<String> imports;
+		private final boolean isATest;
+		private final File classFile;
+
+		GeneratedClass(String name, Set<String> imports, boolean isATest) {
+			this.name = name;
+			this.imports = imports;
+			this.isATest = isATest;
+			classFile = new File(name.replace('.', '/') + ".class");
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Set<String> getImports() {
+			return imports;
+		}
+
+		@Override
+		public boolean isATest() {
+			return isATest;
+		}
+
+		@Override
+		public boolean locatedInClassFile() {
+			return true;
+		}
+
+		@Override
+		public File getClassFile() {
+			return classFile;
+		}
+	}
+}
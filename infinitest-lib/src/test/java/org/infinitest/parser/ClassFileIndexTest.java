@@ -33,6 +33,7 @@ import static org.infinitest.util.FakeEnvironments.*;
 import static org.infinitest.util.InfinitestTestUtils.*;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
 import java.io.*;
@@ -76,16 +77,98 @@ public class ClassFileIndexTest {
 		verify(builder, times(2)).clear();
 	}
 
+	@Test
+	public void shouldNotParseClassesOfLibraryJars() throws Exception {
+		File junitJar = new File(Test.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		index.setJarSymbolTable(new JarSymbolTable(junitJar.getPath()));
+
+		JavaClass testAnnotation = index.findJavaClass(Test.class.getName());
+
+		assertEquals(Test.class.getName(), testAnnotation.getName());
+		assertFalse(testAnnotation.locatedInClassFile());
+		verify(builder, never()).createClass(anyString());
+	}
+
+	@Test
+	public void shouldInvalidateWhatWasLearntAboutChangedClassesAndTheirDependents() {
+		File fakeProductFile = getFileForClass(FakeProduct.class);
+		File dependentFile = getFileForClass(TestFakeProduct.class);
+		when(builder.loadClass(fakeProductFile)).thenReturn(new FakeJavaClass(FakeProduct.class.getName()));
+		when(builder.loadClass(dependentFile)).thenReturn(new FakeJavaClass(TestFakeProduct.class.getName()) {
+			@Override
+			public Set<String> getImports() {
+				return Collections.singleton(FakeProduct.class.getName());
+			}
+		});
+		index.findClasses(asList(fakeProductFile, dependentFile));
+
+		index.findClasses(asList(fakeProductFile));
+
+		verify(builder).invalidate(new HashSet<String>(asList(FakeProduct.class.getName(), TestFakeProduct.class.getName())));
+	}
+
+	@Test
+	public void shouldOnlyInvalidateTheClassesIndexedFromTheChangedFiles() {
+		File fakeProductFile = getFileForClass(FakeProduct.class);
+		File fileWithTheSamePath = new File("com/fakeco/fakeproduct/FakeProduct.class");
+		when(builder.loadClass(fakeProductFile)).thenReturn(new FakeJavaClass(FakeProduct.class.getName()));
+		when(builder.loadClass(fileWithTheSamePath)).thenReturn(new FakeJavaClass("OtherClass"));
+		index.findClasses(asList(fakeProductFile));
+
+		index.findClasses(asList(fileWithTheSamePath));
+
+		verify(builder, never()).invalidate(anyCollectionOf(String.class));
+	}
+
+	@Test
+	public void shouldFindTheClassesImportingLibraryClasses() {
+		ClassFileIndex index = new ClassFileIndex(fakeClasspath());
+		File testFile = getFileForClass(TestFakeProduct.class);
+		index.findClasses(asList(testFile, getFileForClass(FakeProduct.class)));
+		Set<String> libraryClasses = Collections.singleton(junit.framework.TestCase.class.getName());
+
+		assertEquals(Collections.singleton(TestFakeProduct.class.getName()), classNames(index.findClassesImporting(libraryClasses)));
+
+		index.removeClasses(asList(testFile));
+		assertTrue(index.findClassesImporting(libraryClasses).isEmpty());
+	}
+
 	@Test
 	public void shouldIgnoreClassFilesThatCannotBeParsed() {
 		ClassFileIndex index = new ClassFileIndex(fakeClasspath());
 		assertEquals(Collections.emptySet(), index.findClasses(newArrayList(new File("notAClassFile"))));
 	}
 
+	@Test
+	public void shouldIndexLargeChangeSetsInParallelLikeSmallOnes() throws IOException {
+		FileChangeDetector detector = new FileChangeDetector();
+		detector.setClasspathProvider(fakeClasspath());
+		Set<File> files = detector.findChanges().getChangedFiles();
+		ClassFileIndex parallelIndex = new ClassFileIndex(fakeClasspath());
+		ClassFileIndex sequentialIndex = new ClassFileIndex(fakeClasspath());
+		sequentialIndex.setParallelParsing(false);
+
+		Set<JavaClass> parallelClasses = parallelIndex.findClasses(files);
+		Set<JavaClass> sequentialClasses = sequentialIndex.findClasses(files);
+
+		assertEquals(classNames(sequentialClasses), classNames(parallelClasses));
+		assertEquals(sequentialIndex.getIndexedClasses(), parallelIndex.getIndexedClasses());
+		Set<JavaClass> fakeProduct = Collections.singleton(parallelIndex.findJavaClass(FakeProduct.class.getName()));
+		assertEquals(classNames(sequentialIndex.findChangedParents(fakeProduct)), classNames(parallelIndex.findChangedParents(fakeProduct)));
+	}
+
+	private static Set<String> classNames(Set<JavaClass> classes) {
+		Set<String> names = new HashSet<String>();
+		for (JavaClass each : classes) {
+			names.add(each.getName());
+		}
+		return names;
+	}
+
 	public static void main(String[] args) throws IOException {
 		FileChangeDetector detector = new FileChangeDetector();
 		detector.setClasspathProvider(fakeClasspath());
-		ArrayList<File> files = newArrayList(detector.findChangedFiles());
+		ArrayList<File> files = newArrayList(detector.findChanges().getChangedFiles());
 		List<ClassFileIndex> indexes = newArrayList();
 		int totalClasses = 0;
 		long start = System.currentTimeMillis();
@@ -0,0 +1,192 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Lists.*;
+import static org.infinitest.util.FakeEnvironments.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+import javassist.*;
+import javassist.bytecode.*;
+import javassist.bytecode.annotation.*;
+
+import org.infinitest.changedetect.*;
+import org.junit.*;
+import org.junit.Test;
+import org.junit.rules.*;
+
+import com.google.common.io.*;
+
+/**
+ * Compares the time it takes the {@link JavaAssistClassParser} and the
+ * {@link StreamingClassParser} to parse the classes of this project, and a
+ * large corpus of generated classes.
+ */
+public class ClassParserPerformanceSimulation {
+	private static final int GENERATED_CLASS_COUNT = 20000;
+	private static final int FIELDS_PER_CLASS = 10;
+	private static final int PASS_COUNT = 5;
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	public static void main(String[] args) throws Exception {
+		FileChangeDetector detector = new FileChangeDetector();
+		detector.setClasspathProvider(fakeClasspath());
+		List<File> projectClasses = newArrayList(detector.findChanges().getChangedFiles());
+		compareParsers("Infinitest classes", projectClasses, fakeClasspath().getCompleteClasspath());
+
+		File corpusDirectory = Files.createTempDir();
+		try {
+			List<File> generatedClasses = generateClasses(corpusDirectory, GENERATED_CLASS_COUNT);
+			String classpath = corpusDirectory.getPath() + File.pathSeparator + fakeClasspath().getCompleteClasspath();
+			compareParsers("Generated classes", generatedClasses, classpath);
+			compareIndexing(generatedClasses, classpath);
+		} finally {
+			deleteRecursively(corpusDirectory);
+		}
+	}
+
+	@Test
+	public void shouldFindTheSameTestsAsJavassistInGeneratedClasses() throws Exception {
+		File corpusDirectory = temporaryFolder.getRoot();
+		String classpath = corpusDirectory.getPath() + File.pathSeparator + fakeClasspath().getCompleteClasspath();
+		ClassParser javassistParser = new JavaAssistClassParser(classpath);
+		ClassParser streamingParser = new StreamingClassParser(classpath);
+
+		for (File each : generateClasses(corpusDirectory, 200)) {
+			JavaClass expected = javassistParser.parse(each);
+			JavaClass actual = streamingParser.parse(each);
+			assertEquals(expected.getImports(), actual.getImports());
+			assertEquals(expected.getName(), expected.isATest(), actual.isATest());
+		}
+		javassistParser.clear();
+		streamingParser.clear();
+	}
+
+	private static void compareParsers(String corpus, List<File> classFiles, String classpath) throws IOException {
+		System.out.println(corpus + ": " + classFiles.size() + " class files, best of " + PASS_COUNT + " passes");
+		measure("  Javassist", new JavaAssistClassParser(classpath), classFiles);
+		measure("  Streaming", new StreamingClassParser(classpath), classFiles);
+	}
+
+	private static void measure(String parserName, ClassParser parser, List<File> classFiles) throws IOException {
+		long bestTime = Long.MAX_VALUE;
+		long bestAllocation = Long.MAX_VALUE;
+		for (int pass = 0; pass < PASS_COUNT; pass++) {
+			long allocatedBefore = allocatedBytes();
+			long start = System.nanoTime();
+			for (File each : classFiles) {
+				parser.parse(each);
+			}
+			parser.clear();
+			bestTime = Math.min(bestTime, System.nanoTime() - start);
+			bestAllocation = Math.min(bestAllocation, allocatedBytes() - allocatedBefore);
+		}
+		System.out.println(parserName + ": " + (bestTime / 1000000) + "ms, " + (bestAllocation / classFiles.size()) + " bytes allocated per class");
+	}
+
+	private static void compareIndexing(List<File> classFiles, String classpath) {
+		System.out.println("Indexing generated classes, best of " + PASS_COUNT + " passes");
+		measureIndexing("  Javassist, sequential", new JavaAssistClassParser(classpath), false, classFiles);
+		measureIndexing("  Javassist, parallel", new JavaAssistClassParser(classpath), true, classFiles);
+		measureIndexing("  Streaming, sequential", new StreamingClassParser(classpath), false, classFiles);
+		measureIndexing("  Streaming, parallel", new StreamingClassParser(classpath), true, classFiles);
+	}
+
+	private static void measureIndexing(String description, ClassParser parser, boolean parallelParsing, List<File> classFiles) {
+		long bestTime = Long.MAX_VALUE;
+		for (int pass = 0; pass < PASS_COUNT; pass++) {
+			ClassFileIndex index = new ClassFileIndex(new JavaClassBuilder(parser));
+			index.setParallelParsing(parallelParsing);
+			long start = System.nanoTime();
+			index.findClasses(classFiles);
+			bestTime = Math.min(bestTime, System.nanoTime() - start);
+		}
+		System.out.println(description + ": " + (bestTime / 1000000) + "ms");
+	}
+
+	private static long allocatedBytes() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	/**
+	 * Generates classes that reference each other through their fields and
+	 * methods. One in ten is a JUnit 4 test, one in ten a JUnit 3 test.
+	 */
+	private static List<File> generateClasses(File directory, int classCount) throws CannotCompileException, NotFoundException, IOException {
+		ClassPool pool = new ClassPool(true);
+		pool.appendPathList(fakeClasspath().getCompleteClasspath());
+		Random random = new Random(classCount);
+		List<File> classFiles = newArrayList();
+		for (int i = 0; i < classCount; i++) {
+			String name = generatedClassName(i);
+			CtClass ctClass = pool.makeClass(name);
+			if ((i % 10) == 1) {
+				ctClass.setSuperclass(pool.get("junit.framework.TestCase"));
+			}
+			for (int j = 0; (j < FIELDS_PER_CLASS) && (i > 0); j++) {
+				CtClass fieldType = pool.get(generatedClassName(random.nextInt(i)));
+				ctClass.addField(new CtField(fieldType, "field" + j, ctClass));
+			}
+			CtMethod method = CtNewMethod.make("public void testSomething() { java.util.List list = new java.util.ArrayList(); list.add(toString()); }", ctClass);
+			if ((i % 10) == 0) {
+				ConstPool constPool = ctClass.getClassFile().getConstPool();
+				AnnotationsAttribute annotations = new AnnotationsAttribute(constPool, AnnotationsAttribute.visibleTag);
+				annotations.addAnnotation(new javassist.bytecode.annotation.Annotation(org.junit.Test.class.getName(), constPool));
+				method.getMethodInfo().addAttribute(annotations);
+			}
+			ctClass.addMethod(method);
+			ctClass.writeFile(directory.getPath());
+			ctClass.defrost();
+			classFiles.add(new File(directory, name.replace('.', File.separatorChar) + ".class"));
+		}
+		return classFiles;
+	}
+
+	private static String generatedClassName(int index) {
+		return "com.fakeco.generated.package" + (index % 50) + ".Generated" + index;
+	}
+
+	private static void deleteRecursively(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+}
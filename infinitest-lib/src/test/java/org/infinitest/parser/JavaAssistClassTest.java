@@ -27,6 +27,7 @@
  */
 package org.infinitest.parser;
 
+import static java.util.Arrays.*;
 import static org.hamcrest.Matchers.*;
 import static org.infinitest.util.FakeEnvironments.*;
 import static org.junit.Assert.*;
@@ -36,6 +37,7 @@ import java.util.*;
 import javassist.*;
 import javax.swing.*;
 
+import org.infinitest.parser.InheritedTestFacts.ClassFacts;
 import org.junit.*;
 
 import com.fakeco.fakeproduct.*;
@@ -114,6 +116,17 @@ public class JavaAssistClassTest {
 		assertFalse(new JavaAssistClass(fakeClass).canInstantiate(fakeClass));
 	}
 
+	@Test
+	public void shouldClassifyTestsWithWhatTheyInheritFromTheirBaseClass() throws Exception {
+		InheritedTestFacts inheritedFacts = new InheritedTestFacts();
+		CtClass testThatInherits = classPool.get(JUnit4TestThatInherits.class.getName());
+		inheritedFacts.put(TestJUnit4TestCase.class.getName(), new ClassFacts(false, false, Collections.<String> emptySet()));
+		assertFalse(new JavaAssistClass(testThatInherits, inheritedFacts).isATest());
+
+		inheritedFacts.invalidate(asList(TestJUnit4TestCase.class.getName(), JUnit4TestThatInherits.class.getName()));
+		assertTrue(new JavaAssistClass(testThatInherits, inheritedFacts).isATest());
+	}
+
 	private Collection<String> dependenciesOf(Class<?> dependingClass) {
 		return getClass(dependingClass).getImports();
 	}
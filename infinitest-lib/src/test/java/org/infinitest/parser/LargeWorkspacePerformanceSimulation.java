@@ -59,7 +59,7 @@ public class LargeWorkspacePerformanceSimulation {
 		FileChangeDetector detector = new FileChangeDetector();
 		detector.setClasspathProvider(fakeClasspath());
 		indexes = newArrayList();
-		files = newArrayList(detector.findChangedFiles());
+		files = newArrayList(detector.findChanges().getChangedFiles());
 	}
 
 	public static void main(String[] args) throws IOException {
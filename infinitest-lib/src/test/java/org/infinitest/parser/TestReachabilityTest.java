@@ -0,0 +1,183 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static java.util.Arrays.*;
+import static org.infinitest.util.InfinitestUtils.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class TestReachabilityTest {
+	private ClassDependencyGraph graph;
+
+	@Before
+	public void inContext() {
+		graph = new ClassDependencyGraph();
+		graph.trackTestReachability();
+	}
+
+	@Test
+	public void shouldFindTestsThatDependOnAClassThroughOtherClasses() {
+		JavaClass test = addClass("Test", true);
+		JavaClass parent = addClass("Parent", false);
+		JavaClass child = addClass("Child", false);
+		graph.addEdge(test, parent);
+		graph.addEdge(parent, child);
+
+		assertEquals(setify(test), graph.findDependentTests(asList(child)));
+		assertEquals(setify(test), graph.findDependentTests(asList(test)));
+	}
+
+	@Test
+	public void shouldFindTestsThroughCycles() {
+		JavaClass test = addClass("Test", true);
+		JavaClass first = addClass("First", false);
+		JavaClass second = addClass("Second", false);
+		graph.addEdge(test, first);
+		graph.addEdge(first, second);
+		graph.addEdge(second, first);
+
+		assertEquals(setify(test), graph.findDependentTests(asList(second)));
+	}
+
+	@Test
+	public void shouldFindTestsThroughEdgesAddedLater() {
+		JavaClass test = addClass("Test", true);
+		JavaClass child = addClass("Child", false);
+		assertTrue(graph.findDependentTests(asList(child)).isEmpty());
+
+		JavaClass grandChild = addClass("GrandChild", false);
+		graph.addEdge(child, grandChild);
+		graph.addEdge(test, child);
+
+		assertEquals(setify(test), graph.findDependentTests(asList(grandChild)));
+	}
+
+	@Test
+	public void shouldFindClassesThatBecameTests() {
+		JavaClass parent = addClass("Parent", false);
+		JavaClass child = addClass("Child", false);
+		graph.addEdge(parent, child);
+		assertTrue(graph.findDependentTests(asList(child)).isEmpty());
+
+		JavaClass test = new FakeTestClass("Parent", true);
+		graph.replaceVertex(test);
+		graph.addEdge(test, child);
+
+		assertEquals(setify(test), graph.findDependentTests(asList(child)));
+	}
+
+	@Test
+	public void shouldForgetTestsThatNoLongerDependOnAClassInACycle() {
+		JavaClass test = addClass("Test", true);
+		JavaClass first = addClass("First", false);
+		JavaClass second = addClass("Second", false);
+		graph.addEdge(first, second);
+		graph.addEdge(second, first);
+		graph.addEdge(second, test);
+		graph.addEdge(test, first);
+		assertEquals(setify(test), graph.findDependentTests(asList(second)));
+
+		graph.replaceVertex(test);
+
+		assertTrue(graph.findDependentTests(asList(second)).isEmpty());
+	}
+
+	// Removed edges may leave extra tests until the components are computed
+	// again, but no test may be missed
+	@Test
+	public void shouldFindAtLeastTheTestsFoundByAWalkOfTheGraph() {
+		Random random = new Random(42);
+		List<JavaClass> classes = new ArrayList<JavaClass>();
+		for (int i = 0; i < 200; i++) {
+			classes.add(addClass("Class" + i, random.nextInt(5) == 0));
+		}
+		for (int i = 0; i < 600; i++) {
+			graph.addEdge(classes.get(random.nextInt(200)), classes.get(random.nextInt(200)));
+		}
+
+		for (int step = 0; step < 500; step++) {
+			JavaClass javaClass = classes.get(random.nextInt(200));
+			switch (random.nextInt(4)) {
+			case 0:
+				graph.addEdge(javaClass, classes.get(random.nextInt(200)));
+				break;
+			case 1:
+				JavaClass replacement = new FakeTestClass(javaClass.getName(), random.nextInt(5) == 0);
+				graph.replaceVertex(replacement);
+				classes.set(classes.indexOf(javaClass), replacement);
+				for (int i = 0; i < random.nextInt(4); i++) {
+					graph.addEdge(replacement, classes.get(random.nextInt(200)));
+				}
+				break;
+			case 2:
+				graph.removeVertex(javaClass);
+				JavaClass newClass = addClass(javaClass.getName(), random.nextInt(5) == 0);
+				classes.set(classes.indexOf(javaClass), newClass);
+				break;
+			default:
+				Set<JavaClass> changedClasses = setify(javaClass, classes.get(random.nextInt(200)));
+				Set<JavaClass> dependentTests = graph.findDependentTests(changedClasses);
+				assertTrue(dependentTests.containsAll(walkForTests(changedClasses)));
+			}
+		}
+	}
+
+	private Set<JavaClass> walkForTests(Set<JavaClass> changedClasses) {
+		Set<JavaClass> tests = new HashSet<JavaClass>();
+		for (JavaClass each : graph.findDependentClasses(changedClasses)) {
+			if (each.isATest()) {
+				tests.add(each);
+			}
+		}
+		return tests;
+	}
+
+	private JavaClass addClass(String name, boolean isATest) {
+		JavaClass javaClass = new FakeTestClass(name, isATest);
+		graph.addVertex(javaClass);
+		return javaClass;
+	}
+
+	private static class FakeTestClass extends FakeJavaClass {
+		private final boolean isATest;
+
+		FakeTestClass(String name, boolean isATest) {
+			super(name);
+			this.isATest = isATest;
+		}
+
+		@Override
+		public boolean isATest() {
+			return isATest;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static org.hamcrest.Matchers.*;
+import static org.infinitest.util.InfinitestTestUtils.*;
+import static org.infinitest.util.InfinitestUtils.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.fakeco.fakeproduct.*;
+
+public class WhenClassFilesAreRemoved extends DependencyGraphTestBase {
+	@Before
+	public void inContext() {
+		addToDependencyGraph(TestFakeProduct.class, FakeProduct.class);
+	}
+
+	@Test
+	public void shouldRunTestsThatDependedOnTheRemovedClass() {
+		Set<JavaClass> testsToRun = getGraph().removeClasses(setify(getFileForClass(FakeProduct.class)));
+
+		assertThat(testsToRun, hasItem(getGraph().findJavaClass(TestFakeProduct.class.getName())));
+		assertFalse(getGraph().getIndexedClasses().contains(FakeProduct.class.getName()));
+	}
+
+	@Test
+	public void shouldForgetRemovedTests() {
+		getGraph().removeClasses(setify(getFileForClass(TestFakeProduct.class)));
+
+		assertFalse(getGraph().getCurrentTests().contains(TestFakeProduct.class.getName()));
+		assertTrue(getGraph().getIndexedClasses().contains(FakeProduct.class.getName()));
+	}
+
+	@Test
+	public void shouldReportRemovedTestsAsDisabled() {
+		getGraph().removeClasses(setify(getFileForClass(TestFakeProduct.class)));
+
+		assertEquals(setify(TestFakeProduct.class.getName()), getGraph().takeDisabledTests());
+		assertTrue(getGraph().takeDisabledTests().isEmpty());
+	}
+
+	@Test
+	public void shouldReportTestsAsDisabledWhenTheyStartBeingFiltered() {
+		addFilter(TestFakeProduct.class.getName());
+		findTestsForChangedFiles();
+
+		assertEquals(setify(TestFakeProduct.class.getName()), getGraph().takeDisabledTests());
+		assertFalse(getGraph().getCurrentTests().contains(TestFakeProduct.class.getName()));
+	}
+
+	@Test
+	public void shouldNotReportNewTestsThatAreFilteredAsDisabled() {
+		addFilter(TestJunit3TestCase.class.getName());
+		addToDependencyGraph(TestJunit3TestCase.class);
+		findTestsForChangedFiles();
+
+		assertTrue(getGraph().takeDisabledTests().isEmpty());
+	}
+
+	@Test
+	public void shouldRestoreDependenciesWhenTheClassIsCreatedAgain() {
+		getGraph().removeClasses(setify(getFileForClass(FakeProduct.class)));
+		addToDependencyGraph(FakeProduct.class);
+
+		verifyDependency(FakeProduct.class, TestFakeProduct.class);
+	}
+}
@@ -64,6 +64,7 @@ public class WhenClassesChange extends DependencyGraphTestBase {
 		untestify();
 		updateGraphWithChangedClass(testClass);
 		assertThat(getGraph().getCurrentTests(), equalTo(Collections.<String> emptySet()));
+		assertThat(getGraph().takeDisabledTests(), equalTo(Collections.singleton(testClass.getName())));
 
 		javaClass = getGraph().findJavaClass(testClass.getName());
 		assertFalse("Class was not reloaded", javaClass.isATest());
@@ -44,6 +44,7 @@ import org.junit.*;
 import org.junit.rules.*;
 
 import com.fakeco.fakeproduct.*;
+import com.google.common.io.*;
 
 public class WhenLookingForChangedFiles {
 	private File altClassDir;
@@ -77,23 +78,23 @@ public class WhenLookingForChangedFiles {
 	public void shouldHandleStrangeClasspaths() throws Exception {
 		ChangeDetector changeDetector = new FileChangeDetector();
 		changeDetector.setClasspathProvider(new StandaloneClasspath(new ArrayList<File>(), ""));
-		assertTrue(changeDetector.findChangedFiles().isEmpty());
+		assertTrue(changeDetector.findChanges().getChangedFiles().isEmpty());
 	}
 
 	@Test
 	public void shouldFindChangedFiles() throws IOException {
-		Set<File> files = detector.findChangedFiles();
+		Set<File> files = detector.findChanges().getChangedFiles();
 		assertTrue("Should have found changed files on first run", files.size() > 0);
 		assertThat("TestFakeProduct should be in changed list", files, hasItem(getFileForClass(TestFakeProduct.class)));
 		assertTrue("FakeProduct should be in changed list", files.contains(getFileForClass(FakeProduct.class)));
-		assertTrue("Should have no changed files now", detector.findChangedFiles().isEmpty());
+		assertTrue("Should have no changed files now", detector.findChanges().getChangedFiles().isEmpty());
 	}
 
 	@Test
 	public void canLookInMultipleClassDirectories() throws Exception {
 		File newFile = createFileForClass(TestFakeProduct.class);
 		File thisFile = InfinitestTestUtils.getFileForClass(getClass());
-		Set<File> changedFiles = detector.findChangedFiles();
+		Set<File> changedFiles = detector.findChanges().getChangedFiles();
 		assertThat(changedFiles, hasItem(newFile));
 		assertThat(changedFiles, hasItem(thisFile));
 	}
@@ -101,12 +102,50 @@ public class WhenLookingForChangedFiles {
 	@Test
 	public void shouldFindRemovedFiles() throws Exception {
 		File newFile = createFileForClass(TestFakeProduct.class);
-		assertThat(detector.findChangedFiles(), hasItem(newFile));
+		assertThat(detector.findChanges().getChangedFiles(), hasItem(newFile));
 
 		newFile.delete();
 
-		assertTrue(detector.filesWereRemoved());
-		assertThat(detector.findChangedFiles(), not(hasItem(newFile)));
+		ChangeSet changes = detector.findChanges();
+		assertEquals(singleton(newFile), changes.getRemovedFiles());
+		assertThat(changes.getChangedFiles(), not(hasItem(newFile)));
+	}
+
+	@Test
+	public void shouldReportRemovedFilesOnlyOnce() throws Exception {
+		File newFile = createFileForClass(TestFakeProduct.class);
+		detector.findChanges();
+
+		newFile.delete();
+
+		assertEquals(singleton(newFile), detector.findChanges().getRemovedFiles());
+		assertTrue(detector.findChanges().getRemovedFiles().isEmpty());
+	}
+
+	@Test
+	public void shouldTellAddedModifiedAndRemovedFilesApartInASingleScan() throws Exception {
+		detector = new FileChangeDetector() {
+			@Override
+			protected long getModificationTimestamp(File classFile) {
+				return timestamp;
+			}
+		};
+		detector.setClasspathProvider(new StandaloneClasspath(Arrays.asList(altClassDir)));
+		File classFile = createFileForClass(TestFakeProduct.class);
+		assertEquals(singleton(classFile), detector.findChanges().getAddedFiles());
+
+		File otherClassFile = new File(classFile.getParentFile(), "Other.class");
+		assertTrue(otherClassFile.createNewFile());
+		timestamp += 100;
+		ChangeSet changes = detector.findChanges();
+		assertEquals(singleton(otherClassFile), changes.getAddedFiles());
+		assertEquals(singleton(classFile), changes.getModifiedFiles());
+
+		assertTrue(classFile.delete());
+		changes = detector.findChanges();
+		assertEquals(singleton(classFile), changes.getRemovedFiles());
+		assertTrue(changes.getChangedFiles().isEmpty());
+		assertTrue(detector.findChanges().isEmpty());
 	}
 
 	@Test
@@ -118,10 +157,31 @@ public class WhenLookingForChangedFiles {
 			}
 		};
 		detector.setClasspathProvider(classpath);
-		assertFalse("Should have found changed files on first run", detector.findChangedFiles().isEmpty());
-		assertTrue("Timestamp is unchanged", detector.findChangedFiles().isEmpty());
+		assertFalse("Should have found changed files on first run", detector.findChanges().getChangedFiles().isEmpty());
+		assertTrue("Timestamp is unchanged", detector.findChanges().getChangedFiles().isEmpty());
+		timestamp += 100;
+		assertFalse("Timestamp changed", detector.findChanges().getChangedFiles().isEmpty());
+	}
+
+	@Test
+	public void shouldIgnoreRewrittenFilesWithSameContentsWhenDetectingChangesByContent() throws Exception {
+		FileChangeDetector contentDetector = new FileChangeDetector() {
+			@Override
+			protected long getModificationTimestamp(File classFile) {
+				return timestamp;
+			}
+		};
+		contentDetector.setDetectChangesByContent(true);
+		contentDetector.setClasspathProvider(new StandaloneClasspath(Arrays.asList(altClassDir)));
+		File classFile = createFileForClass(TestFakeProduct.class);
+		assertThat(contentDetector.findChanges().getChangedFiles(), hasItem(classFile));
+
+		timestamp += 100;
+		assertTrue("Contents are unchanged", contentDetector.findChanges().getChangedFiles().isEmpty());
+
+		Files.write(new byte[] { 1, 2, 3 }, classFile);
 		timestamp += 100;
-		assertFalse("Timestamp changed", detector.findChangedFiles().isEmpty());
+		assertThat(contentDetector.findChanges().getChangedFiles(), hasItem(classFile));
 	}
 
 	@Test
@@ -133,7 +193,7 @@ public class WhenLookingForChangedFiles {
 			}
 		};
 		detector.setClasspathProvider(classpath);
-		assertEquals(emptySet(), detector.findChangedFiles());
+		assertEquals(emptySet(), detector.findChanges().getChangedFiles());
 	}
 
 	private File createFileForClass(Class<TestFakeProduct> clazz) throws IOException {
@@ -0,0 +1,112 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static java.util.Collections.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.jar.*;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+public class WhenLookingUpClassesInLibraryJars {
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	private File jar;
+
+	@Before
+	public void inContext() throws IOException {
+		jar = temporaryFolder.newFile("library.jar");
+		writeJar(jar, "com/fakeco/library/Library.class", "META-INF/versions/9/com/fakeco/library/Versioned.class");
+	}
+
+	@Test
+	public void shouldFindClassesOfTheJar() {
+		JarSymbolTable symbolTable = new JarSymbolTable(jar.getPath());
+
+		assertTrue(symbolTable.isInJar("com.fakeco.library.Library"));
+		assertFalse(symbolTable.isInJar("com.fakeco.library.Missing"));
+		assertFalse(symbolTable.isInJar("META-INF.versions.9.com.fakeco.library.Versioned"));
+	}
+
+	@Test
+	public void shouldPreferClassDirectories() throws IOException {
+		File classDirectory = temporaryFolder.newFolder();
+		File classFile = new File(classDirectory, "com/fakeco/library/Library.class");
+		JarSymbolTable symbolTable = new JarSymbolTable(classDirectory.getPath() + File.pathSeparator + jar.getPath());
+
+		symbolTable.addClassFiles(singleton(classFile));
+		assertFalse(symbolTable.isInJar("com.fakeco.library.Library"));
+
+		symbolTable.removeClassFiles(singleton(classFile));
+		assertTrue(symbolTable.isInJar("com.fakeco.library.Library"));
+	}
+
+	@Test
+	public void shouldIgnoreClassFilesOutsideTheClassDirectories() throws IOException {
+		File classDirectory = temporaryFolder.newFolder();
+		File classFile = new File(temporaryFolder.newFolder(), "com/fakeco/library/Library.class");
+		JarSymbolTable symbolTable = new JarSymbolTable(classDirectory.getPath() + File.pathSeparator + jar.getPath());
+
+		symbolTable.addClassFiles(singleton(classFile));
+
+		assertTrue(symbolTable.isInJar("com.fakeco.library.Library"));
+	}
+
+	@Test
+	public void shouldReadJarsAgainWhenTheyChange() throws IOException {
+		JarSymbolTable symbolTable = new JarSymbolTable(jar.getPath());
+		writeJar(jar, "com/fakeco/library/Other.class");
+		jar.setLastModified(jar.lastModified() + 2000);
+
+		symbolTable.refresh();
+
+		assertFalse(symbolTable.isInJar("com.fakeco.library.Library"));
+		assertTrue(symbolTable.isInJar("com.fakeco.library.Other"));
+	}
+
+	@Test
+	public void shouldIgnoreMissingJars() {
+		JarSymbolTable symbolTable = new JarSymbolTable("notAJar.jar");
+
+		assertFalse(symbolTable.isInJar("com.fakeco.library.Library"));
+	}
+
+	private static void writeJar(File jar, String... entryNames) throws IOException {
+		JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+		try {
+			for (String each : entryNames) {
+				output.putNextEntry(new JarEntry(each));
+				output.closeEntry();
+			}
+		} finally {
+			output.close();
+		}
+	}
+}
@@ -28,17 +28,33 @@
 package org.infinitest.parser;
 
 import static org.infinitest.util.FakeEnvironments.*;
+import static org.infinitest.util.InfinitestTestUtils.*;
+import static java.util.Arrays.*;
+import static java.util.Collections.*;
 import static org.junit.Assert.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.jar.*;
+
+import javassist.*;
+import javassist.bytecode.*;
+import javassist.bytecode.annotation.*;
 
 import org.infinitest.*;
 import org.junit.*;
+import org.junit.rules.*;
 
 import com.fakeco.fakeproduct.*;
+import com.google.common.cache.*;
+import com.google.common.io.*;
 
 public class WhenParsingClassFiles {
+	private static final String GENERATED_CLASS = "com.fakeco.generated.Generated";
+	private static final String BASE_CLASS = "com.fakeco.generated.BaseTest";
+	private static final String SUBCLASS = "com.fakeco.generated.InheritingTest";
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
 	private ClassParser parser;
 
 	@Before
@@ -96,4 +112,149 @@ public class WhenParsingClassFiles {
 	public void shouldHandleMissingClassDirs() {
 		parser = new JavaAssistClassParser("notADirYet");
 	}
+
+	@Test
+	public void shouldShareParsedClassesBetweenParsers() throws IOException {
+		File classFile = getFileForClass(FakeProduct.class);
+		JavaClass parsedClass = parser.parse(classFile);
+		CacheStats statsBefore = JavaAssistClassParser.getCacheStats();
+
+		JavaClass parsedAgain = new JavaAssistClassParser(fakeClasspath().getCompleteClasspath()).parse(classFile);
+
+		assertSame(parsedClass, parsedAgain);
+		assertEquals(1, JavaAssistClassParser.getCacheStats().minus(statsBefore).hitCount());
+	}
+
+	@Test
+	public void shouldReadInvalidatedClassesAgainFromTheirClassFiles() throws Exception {
+		File classDirectory = temporaryFolder.newFolder();
+		File classFile = new File(classDirectory, GENERATED_CLASS.replace('.', '/') + ".class");
+		Files.createParentDirs(classFile);
+		Files.write(generateClass(false), classFile);
+		parser = new JavaAssistClassParser(classDirectory.getPath());
+		assertFalse(parser.getClass(GENERATED_CLASS).getImports().contains(ArrayList.class.getName()));
+
+		Files.write(generateClass(true), classFile);
+		parser.clear();
+		parser.invalidate(Collections.singleton(GENERATED_CLASS));
+
+		assertTrue(parser.getClass(GENERATED_CLASS).getImports().contains(ArrayList.class.getName()));
+	}
+
+	@Test
+	public void shouldReopenJarsThatChanged() throws Exception {
+		File jar = temporaryFolder.newFile("generated.jar");
+		writeJar(jar, generateClass(false));
+		parser = new JavaAssistClassParser(jar.getPath());
+		assertFalse(parser.getClass(GENERATED_CLASS).getImports().contains(ArrayList.class.getName()));
+
+		writeJar(jar, generateClass(true));
+		jar.setLastModified(jar.lastModified() + 2000);
+		parser.clear();
+
+		assertTrue(parser.getClass(GENERATED_CLASS).getImports().contains(ArrayList.class.getName()));
+	}
+
+	@Test
+	public void shouldShareABoundedNumberOfClassPoolsBetweenThreads() throws Exception {
+		final JavaAssistClassParser boundedParser = new JavaAssistClassParser(fakeClasspath().getCompleteClasspath(), 2);
+		for (int cycle = 0; cycle < 3; cycle++) {
+			List<Thread> threads = new ArrayList<Thread>();
+			for (int i = 0; i < 8; i++) {
+				threads.add(new Thread() {
+					@Override
+					public void run() {
+						boundedParser.getClass(FakeProduct.class.getName());
+						boundedParser.getClass(String.class.getName());
+					}
+				});
+			}
+			for (Thread each : threads) {
+				each.start();
+			}
+			for (Thread each : threads) {
+				each.join();
+			}
+
+			assertTrue(boundedParser.getClassPoolCount() <= 2);
+		}
+	}
+
+	@Test
+	public void shouldClassifyAnUnchangedSubclassAgainWhenItsBaseClassChanges() throws Exception {
+		File classDirectory = temporaryFolder.newFolder();
+		File baseClassFile = writeClass(classDirectory, BASE_CLASS, generateBaseClass(true));
+		File subclassFile = writeClass(classDirectory, SUBCLASS, generateSubclass());
+		parser = new JavaAssistClassParser(classDirectory.getPath());
+		assertTrue(parser.parse(subclassFile).isATest());
+
+		Files.write(generateBaseClass(false), baseClassFile);
+		parser.clear();
+		parser.invalidate(asList(BASE_CLASS, SUBCLASS));
+
+		assertFalse(parser.parse(subclassFile).isATest());
+	}
+
+	@Test
+	public void shouldReclassifyTheIndexedSubclassesOfAChangedClass() throws Exception {
+		File classDirectory = temporaryFolder.newFolder();
+		File baseClassFile = writeClass(classDirectory, BASE_CLASS, generateBaseClass(true));
+		File subclassFile = writeClass(classDirectory, SUBCLASS, generateSubclass());
+		ClassFileIndex index = new ClassFileIndex(new JavaClassBuilder(new JavaAssistClassParser(classDirectory.getPath())));
+		index.findClasses(asList(baseClassFile, subclassFile));
+		assertEquals(singleton(SUBCLASS), index.getTestClasses());
+
+		Files.write(generateBaseClass(false), baseClassFile);
+		index.findClasses(asList(baseClassFile));
+
+		assertTrue(index.getTestClasses().isEmpty());
+		assertEquals(singleton(SUBCLASS), index.takeDisabledTests());
+	}
+
+	private static byte[] generateBaseClass(boolean withATestMethod) throws Exception {
+		CtClass ctClass = new ClassPool(true).makeClass(BASE_CLASS);
+		ctClass.setModifiers(Modifier.PUBLIC | Modifier.ABSTRACT);
+		CtMethod method = CtNewMethod.make("public void shouldWork() {}", ctClass);
+		if (withATestMethod) {
+			ConstPool constPool = ctClass.getClassFile().getConstPool();
+			AnnotationsAttribute annotations = new AnnotationsAttribute(constPool, AnnotationsAttribute.visibleTag);
+			annotations.addAnnotation(new Annotation(org.junit.Test.class.getName(), constPool));
+			method.getMethodInfo().addAttribute(annotations);
+		}
+		ctClass.addMethod(method);
+		return ctClass.toBytecode();
+	}
+
+	private static byte[] generateSubclass() throws Exception {
+		ClassPool classPool = new ClassPool(true);
+		CtClass ctClass = classPool.makeClass(SUBCLASS, classPool.makeClass(BASE_CLASS));
+		ctClass.addConstructor(CtNewConstructor.defaultConstructor(ctClass));
+		return ctClass.toBytecode();
+	}
+
+	private static File writeClass(File classDirectory, String className, byte[] bytecode) throws IOException {
+		File classFile = new File(classDirectory, className.replace('.', '/') + ".class");
+		Files.createParentDirs(classFile);
+		Files.write(bytecode, classFile);
+		return classFile;
+	}
+
+	private static byte[] generateClass(boolean usingAList) throws Exception {
+		CtClass ctClass = new ClassPool(true).makeClass(GENERATED_CLASS);
+		if (usingAList) {
+			ctClass.addMethod(CtNewMethod.make("public Object newList() { return new java.util.ArrayList(); }", ctClass));
+		}
+		return ctClass.toBytecode();
+	}
+
+	private static void writeJar(File jar, byte[] bytecode) throws IOException {
+		JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+		try {
+			output.putNextEntry(new JarEntry(GENERATED_CLASS.replace('.', '/') + ".class"));
+			output.write(bytecode);
+			output.closeEntry();
+		} finally {
+			output.close();
+		}
+	}
 }
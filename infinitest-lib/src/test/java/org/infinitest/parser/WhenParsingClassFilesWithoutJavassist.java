@@ -0,0 +1,125 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static org.infinitest.util.FakeEnvironments.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import junit.framework.*;
+
+import org.infinitest.*;
+import org.infinitest.changedetect.*;
+import org.junit.*;
+import org.junit.Test;
+import org.junit.rules.*;
+
+import com.fakeco.fakeproduct.*;
+import com.google.common.io.*;
+
+public class WhenParsingClassFilesWithoutJavassist {
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private ClassParser javassistParser;
+	private ClassParser parser;
+
+	@Before
+	public void inContext() {
+		javassistParser = new JavaAssistClassParser(fakeClasspath().getCompleteClasspath());
+		parser = new StreamingClassParser(fakeClasspath().getCompleteClasspath());
+	}
+
+	@After
+	public void cleanup() {
+		javassistParser.clear();
+		parser.clear();
+	}
+
+	@Test
+	public void shouldFindTheSameImportsAndTestsAsJavassist() throws IOException {
+		FileChangeDetector detector = new FileChangeDetector();
+		detector.setClasspathProvider(fakeClasspath());
+
+		for (File each : detector.findChanges().getChangedFiles()) {
+			JavaClass expected = javassistParser.parse(each);
+			JavaClass actual = parser.parse(each);
+
+			assertEquals(expected.getName(), actual.getName());
+			assertEquals(expected.getName(), expected.getImports(), actual.getImports());
+			assertEquals(expected.getName(), expected.isATest(), actual.isATest());
+			assertEquals(each, actual.getClassFile());
+		}
+	}
+
+	@Test
+	public void shouldFindClassesInClassDirectories() {
+		JavaClass javaClass = parser.getClass(FakeProduct.class.getName());
+
+		assertEquals(javassistParser.getClass(FakeProduct.class.getName()).getImports(), javaClass.getImports());
+		assertTrue(javaClass.locatedInClassFile());
+		assertTrue(javaClass.getClassFile().isFile());
+	}
+
+	@Test
+	public void shouldFindClassesInJars() {
+		JavaClass javaClass = parser.getClass(TestCase.class.getName());
+
+		assertEquals(javassistParser.getClass(TestCase.class.getName()).getImports(), javaClass.getImports());
+		assertFalse(javaClass.locatedInClassFile());
+	}
+
+	@Test
+	public void shouldFindJdkClasses() {
+		JavaClass javaClass = parser.getClass(String.class.getName());
+
+		assertEquals(String.class.getName(), javaClass.getName());
+		assertFalse(javaClass.locatedInClassFile());
+	}
+
+	@Test
+	public void shouldFindJdkClassesOutsideTheBaseModule() {
+		JavaClass javaClass = parser.getClass("java.sql.Timestamp");
+
+		assertEquals("java.sql.Timestamp", javaClass.getName());
+		assertFalse(javaClass.locatedInClassFile());
+	}
+
+	@Test(expected = MissingClassException.class)
+	public void shouldThrowMissingClassExceptionForUnknownClasses() {
+		new StreamingClassParser("doesNotExist.jar").getClass("doesn't matter");
+	}
+
+	@Test(expected = MalformedClassFileException.class)
+	public void shouldRejectFilesThatAreNotClassFiles() throws IOException {
+		File notAClassFile = temporaryFolder.newFile("NotAClass.class");
+		Files.write(new byte[] { (byte) 0xCA, (byte) 0xFE, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 }, notAClassFile);
+
+		parser.parse(notAClassFile);
+	}
+}
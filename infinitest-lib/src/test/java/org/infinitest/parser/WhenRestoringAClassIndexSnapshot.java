@@ -0,0 +1,216 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static java.util.Arrays.*;
+import static org.hamcrest.Matchers.*;
+import static org.infinitest.util.FakeEnvironments.*;
+import static org.infinitest.util.InfinitestTestUtils.*;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.filter.*;
+import org.junit.*;
+import org.mockito.*;
+import org.junit.rules.*;
+
+import com.fakeco.fakeproduct.*;
+import com.google.common.io.*;
+
+public class WhenRestoringAClassIndexSnapshot {
+	private static final long CLASSPATH_DIGEST = 42;
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File snapshotFile;
+	private ClassBuilder builder;
+	private ClassFileIndex restoredIndex;
+
+	@Before
+	public void inContext() throws IOException {
+		snapshotFile = new File(temporaryFolder.getRoot(), "infinitest.index");
+		builder = mock(ClassBuilder.class);
+		when(builder.createClass(anyString())).thenReturn(new UnparsableClass("NotInTheIndex"));
+		restoredIndex = new ClassFileIndex(builder);
+	}
+
+	@Test
+	public void shouldNotParseClassesThatHaveNotChanged() throws IOException {
+		List<File> files = asList(getFileForClass(TestFakeProduct.class), getFileForClass(FakeProduct.class));
+		saveSnapshotOf(files);
+
+		restoredIndex.restoreSnapshot(snapshotFile, CLASSPATH_DIGEST);
+		Set<JavaClass> classes = restoredIndex.findClasses(files);
+
+		verify(builder, never()).loadClass(Matchers.any(File.class));
+		assertEquals(2, classes.size());
+		assertTrue(restoredIndex.findJavaClass(TestFakeProduct.class.getName()).isATest());
+		assertFalse(restoredIndex.findJavaClass(FakeProduct.class.getName()).isATest());
+	}
+
+	@Test
+	public void shouldRestoreDependenciesBetweenClasses() throws IOException {
+		List<File> files = asList(getFileForClass(TestFakeProduct.class), getFileForClass(FakeProduct.class));
+		saveSnapshotOf(files);
+
+		restoredIndex.restoreSnapshot(snapshotFile, CLASSPATH_DIGEST);
+		JavaClass fakeProduct = restoredIndex.findJavaClass(FakeProduct.class.getName());
+		Set<JavaClass> parents = restoredIndex.findChangedParents(Collections.singleton(fakeProduct));
+
+		assertThat(parents, hasItem(restoredIndex.findJavaClass(TestFakeProduct.class.getName())));
+	}
+
+	@Test
+	public void shouldParseClassesThatChangedSinceTheSnapshotWasTaken() throws IOException {
+		File classFile = temporaryFolder.newFile("TestFakeProduct.class");
+		Files.copy(getFileForClass(TestFakeProduct.class), classFile);
+		saveSnapshotOf(asList(classFile));
+
+		assertTrue(classFile.setLastModified(classFile.lastModified() - 10000));
+		restoredIndex.restoreSnapshot(snapshotFile, CLASSPATH_DIGEST);
+		restoredIndex.findClasses(asList(classFile));
+
+		verify(builder).loadClass(classFile);
+	}
+
+	@Test
+	public void shouldNotRestoreSubclassesOfClassesThatChangedSinceTheSnapshotWasTaken() throws IOException {
+		File baseClassFile = copyClassFile(TestFakeTree.class);
+		File subclassFile = copyClassFile(TestThatInherits.class);
+		saveSnapshotOf(asList(baseClassFile, subclassFile));
+
+		assertTrue(baseClassFile.setLastModified(baseClassFile.lastModified() - 10000));
+		restoredIndex.restoreSnapshot(snapshotFile, CLASSPATH_DIGEST);
+		restoredIndex.findClasses(asList(subclassFile));
+
+		verify(builder).loadClass(subclassFile);
+	}
+
+	@Test
+	public void shouldParseRestoredSubclassesOfClassesParsedAgain() throws IOException {
+		File baseClassFile = copyClassFile(TestFakeTree.class);
+		File subclassFile = copyClassFile(TestThatInherits.class);
+		saveSnapshotOf(asList(baseClassFile, subclassFile));
+		when(builder.loadClass(baseClassFile)).thenReturn(new FakeJavaClass(TestFakeTree.class.getName()));
+
+		restoredIndex.restoreSnapshot(snapshotFile, CLASSPATH_DIGEST);
+		assertTrue(baseClassFile.setLastModified(baseClassFile.lastModified() - 10000));
+		restoredIndex.findClasses(asList(baseClassFile, subclassFile));
+
+		verify(builder).loadClass(subclassFile);
+	}
+
+	@Test
+	public void shouldIgnoreSnapshotsTakenWithAnotherClasspath() throws IOException {
+		File classFile = getFileForClass(FakeProduct.class);
+		saveSnapshotOf(asList(classFile));
+
+		restoredIndex.restoreSnapshot(snapshotFile, CLASSPATH_DIGEST + 1);
+
+		assertTrue(restoredIndex.getIndexedClasses().isEmpty());
+	}
+
+	@Test
+	public void shouldStartEmptyWithoutASnapshot() throws IOException {
+		restoredIndex.restoreSnapshot(snapshotFile, CLASSPATH_DIGEST);
+
+		assertTrue(restoredIndex.getIndexedClasses().isEmpty());
+	}
+
+	@Test
+	public void shouldOnlyRestoreTheSnapshotOfADetectorWhenItStarts() {
+		ClassFileTestDetector detector = createDetector();
+		detector.findTestsToRun(asList(getFileForClass(TestFakeProduct.class)));
+		detector.saveIndexSnapshot();
+
+		detector.clear();
+		assertTrue(detector.getIndexedClasses().isEmpty());
+
+		assertThat(createDetector().getIndexedClasses(), hasItem(TestFakeProduct.class.getName()));
+	}
+
+	@Test
+	public void shouldRejectCorruptSnapshots() throws IOException {
+		saveSnapshotOf(asList(getFileForClass(TestFakeProduct.class), getFileForClass(FakeProduct.class)));
+		byte[] snapshot = Files.toByteArray(snapshotFile);
+
+		// The string count, the first string index and the first import count
+		assertCorruptionIsRejected(snapshot, 16, -1);
+		assertCorruptionIsRejected(snapshot, 16, Integer.MAX_VALUE);
+		assertCorruptionIsRejected(snapshot, snapshot.length - 8, Integer.MAX_VALUE);
+		for (int offset = 20; offset < snapshot.length - 4; offset++) {
+			try {
+				restoreCorrupted(snapshot, offset, 0x7FFFFFF0);
+			} catch (IOException e) {
+				// Expected for most offsets
+			}
+		}
+	}
+
+	private void assertCorruptionIsRejected(byte[] snapshot, int offset, int value) throws IOException {
+		try {
+			restoreCorrupted(snapshot, offset, value);
+			fail("Corrupt snapshot restored");
+		} catch (IOException expected) {
+			assertThat(expected.getMessage(), containsString("snapshot"));
+		}
+	}
+
+	private void restoreCorrupted(byte[] snapshot, int offset, int value) throws IOException {
+		byte[] corrupted = snapshot.clone();
+		corrupted[offset] = (byte) (value >>> 24);
+		corrupted[offset + 1] = (byte) (value >>> 16);
+		corrupted[offset + 2] = (byte) (value >>> 8);
+		corrupted[offset + 3] = (byte) value;
+		Files.write(corrupted, snapshotFile);
+		new ClassFileIndex(builder).restoreSnapshot(snapshotFile, CLASSPATH_DIGEST);
+	}
+
+	private File copyClassFile(Class<?> clazz) throws IOException {
+		File classFile = temporaryFolder.newFile(clazz.getSimpleName() + ".class");
+		Files.copy(getFileForClass(clazz), classFile);
+		return classFile;
+	}
+
+	private ClassFileTestDetector createDetector() {
+		ClassFileTestDetector detector = new ClassFileTestDetector(new FilterStub());
+		detector.setIndexSnapshotFile(snapshotFile);
+		detector.setClasspathProvider(fakeClasspath());
+		return detector;
+	}
+
+	private void saveSnapshotOf(List<File> files) throws IOException {
+		ClassFileIndex index = new ClassFileIndex(fakeClasspath());
+		index.findClasses(files);
+		index.saveSnapshot(snapshotFile, CLASSPATH_DIGEST);
+	}
+}
@@ -36,7 +36,8 @@ class InfinitestTestFilter implements TestFilter {
 	}
 
 	@Override
-	public void updateFilterList() {
+	public boolean updateFilterList() {
 		// nothing to do here
+		return false;
 	}
 }
@@ -58,4 +58,30 @@ public class WhenCalculatingTestStatistics {
 		statistics.testCaseComplete(testCaseFailing("test1", "", new Exception()));
 		assertThat(currentTimeMillis() - statistics.getLastFailureTime("test1"), lessThan(10l));
 	}
+
+	@Test
+	public void shouldExpectTheMedianDurationOfTheLastRuns() {
+		statistics.testCaseComplete(testCasePassing("test1", 10));
+		statistics.testCaseComplete(testCasePassing("test1", 500));
+		statistics.testCaseComplete(testCasePassing("test1", 20));
+
+		assertEquals(20, statistics.getExpectedDuration("test1"));
+	}
+
+	@Test
+	public void shouldForgetTheDurationOfOldRuns() {
+		for (int i = 0; i < RunStatistics.DURATION_HISTORY_SIZE; i++) {
+			statistics.testCaseComplete(testCasePassing("test1", 1000));
+		}
+		for (int i = 0; i < RunStatistics.DURATION_HISTORY_SIZE; i++) {
+			statistics.testCaseComplete(testCasePassing("test1", 10));
+		}
+
+		assertEquals(10, statistics.getExpectedDuration("test1"));
+	}
+
+	@Test
+	public void shouldExpectZeroForTestsThatWereNeverRun() {
+		assertEquals(0, statistics.getExpectedDuration("UnknownTest"));
+	}
 }
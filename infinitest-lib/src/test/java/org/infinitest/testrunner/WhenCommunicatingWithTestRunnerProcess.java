@@ -69,25 +69,24 @@ public class WhenCommunicatingWithTestRunnerProcess {
 			public void run() {
 				try {
 					Socket clientSocket = new Socket("127.0.0.1", portNum);
-					ObjectOutputStream ooStream = new ObjectOutputStream(clientSocket.getOutputStream());
-					ObjectInputStream inStream = new ObjectInputStream(clientSocket.getInputStream());
-					assertEquals("hello", inStream.readObject());
-					ooStream.writeObject(new TestResults(testCaseStarting("hello")));
-					assertNull(inStream.readObject());
-					ooStream.writeObject(new TestResults());
+					FramedProtocol protocol = new FramedProtocol(clientSocket.getInputStream(), clientSocket.getOutputStream());
+					protocol.handshake();
+					assertEquals("hello", protocol.receiveTestName());
+					protocol.sendResults(new TestResults(testCaseStarting("hello")));
+					assertEquals("world", protocol.receiveTestName());
+					protocol.sendResults(new TestResults());
+					assertNull(protocol.receiveTestName());
 					clientSocket.close();
 				} catch (UnknownHostException e) {
 					e.printStackTrace();
 				} catch (IOException e) {
 					e.printStackTrace();
-				} catch (ClassNotFoundException e) {
-					e.printStackTrace();
 				}
 			}
 		}).start();
 		communicator.openSocket();
 		assertEquals(1, size(communicator.sendMessage("hello")));
-		assertTrue(isEmpty(communicator.sendMessage(null)));
+		assertTrue(isEmpty(communicator.sendMessage("world")));
 	}
 
 	@Test(timeout = 1000)
@@ -0,0 +1,126 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static java.lang.System.*;
+import static org.hamcrest.Matchers.*;
+import static org.infinitest.EventSupport.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+public class WhenPersistingRunStatistics {
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File logFile;
+	private RunStatistics statistics;
+
+	@Before
+	public void inContext() {
+		logFile = new File(temporaryFolder.getRoot(), "infinitest.stats");
+		statistics = new RunStatistics();
+		statistics.persistTo(logFile);
+	}
+
+	@Test
+	public void shouldRestoreTheStatisticsOfPreviousSessions() {
+		statistics.testCaseComplete(testCaseFailing("test1", "", new Exception()));
+		statistics.testCaseComplete(testCasePassing("test1", 30));
+		statistics.testCaseComplete(testCasePassing("test1", 10));
+		statistics.testCaseComplete(testCasePassing("test2", 20));
+
+		RunStatistics restored = restore();
+
+		assertThat(currentTimeMillis() - restored.getLastFailureTime("test1"), lessThan(1000L));
+		assertEquals(2, restored.getPassCount("test1"));
+		assertEquals(1, restored.getFailureCount("test1"));
+		assertEquals(30, restored.getDurationPercentile("test1", 90));
+		assertEquals(20, restored.getExpectedDuration("test2"));
+		assertEquals(0, restored.getLastFailureTime("test2"));
+	}
+
+	@Test
+	public void shouldKeepTheStatisticsOfSeveralRestarts() {
+		statistics.testCaseComplete(testCasePassing("test1", 10));
+		restore().testCaseComplete(testCasePassing("test1", 10));
+
+		assertEquals(2, restore().getPassCount("test1"));
+	}
+
+	@Test
+	public void shouldIgnoreARunThatWasCutShort() throws IOException {
+		statistics.testCaseComplete(testCasePassing("test1", 10));
+		statistics.testCaseComplete(testCasePassing("test2", 10));
+		RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+		try {
+			file.setLength(file.length() - 3);
+		} finally {
+			file.close();
+		}
+
+		RunStatistics restored = restore();
+
+		assertEquals(1, restored.getPassCount("test1"));
+		assertEquals(0, restored.getPassCount("test2"));
+	}
+
+	@Test
+	public void shouldNotGrowWithTheNumberOfRuns() {
+		// Each run appends about 25 bytes until the file is compacted
+		for (int i = 0; i < 5000; i++) {
+			statistics.testCaseComplete(testCasePassing("test1", 10));
+		}
+
+		assertThat(logFile.length(), lessThan(50000L));
+		assertEquals(5000, restore().getPassCount("test1"));
+	}
+
+	@Test
+	public void shouldStartOverWhenTheFileIsNotAStatisticsFile() throws IOException {
+		FileWriter writer = new FileWriter(logFile);
+		try {
+			writer.write("Not statistics");
+		} finally {
+			writer.close();
+		}
+
+		RunStatistics restored = restore();
+		restored.testCaseComplete(testCasePassing("test1", 10));
+
+		assertEquals(1, restore().getPassCount("test1"));
+	}
+
+	private RunStatistics restore() {
+		RunStatistics restored = new RunStatistics();
+		restored.persistTo(logFile);
+		return restored;
+	}
+}
@@ -31,10 +31,13 @@ import static com.google.common.collect.Iterables.*;
 import static org.infinitest.testrunner.FailingRunner.*;
 import static org.infinitest.util.FakeEnvironments.*;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 import java.io.*;
+import java.util.*;
 import java.util.concurrent.*;
 
+import org.infinitest.*;
 import org.infinitest.ConsoleOutputListener.OutputType;
 import org.infinitest.testrunner.*;
 import org.infinitest.util.*;
@@ -74,6 +77,29 @@ public class NativeConnectionFactoryTest {
 		assertEquals("finished", testQueue.take());
 	}
 
+	@Test
+	public void shouldStopListeningIfTheRunnerProcessCannotBeStarted() throws Exception {
+		final SocketProcessCommunicator communicator = mock(SocketProcessCommunicator.class);
+		NativeConnectionFactory manager = new NativeConnectionFactory(FailingRunner.class) {
+			@Override
+			protected SocketProcessCommunicator createCommunicator() {
+				return communicator;
+			}
+
+			@Override
+			Process startProcess(List<String> address, RuntimeEnvironment environment) throws IOException {
+				throw new IOException("Cannot run java");
+			}
+		};
+
+		try {
+			manager.getConnection(fakeEnvironment(), new NoOpOutputHandler());
+			fail("Started a process that cannot be started");
+		} catch (IOException expected) {
+			verify(communicator).closeSocket();
+		}
+	}
+
 	@Test
 	public void shouldPrintConsoleOutputEvenIfRunnerFailsToStart() throws Exception {
 		NativeConnectionFactory manager = new NativeConnectionFactory(RunnerThatCannotBeCreated.class) {
@@ -0,0 +1,132 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.process;
+
+import static com.google.common.collect.Iterables.*;
+import static org.infinitest.testrunner.FailingRunner.*;
+import static org.infinitest.testrunner.TestEvent.*;
+import static org.infinitest.util.FakeEnvironments.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+import org.infinitest.testrunner.*;
+import org.junit.*;
+
+public class WhenCommunicatingOverUnixSockets {
+	private UnixSocketProcessCommunicator communicator;
+
+	@Before
+	public void inContext() {
+		assumeTrue(UnixSocketProcessCommunicator.isSupported());
+		communicator = new UnixSocketProcessCommunicator(1000);
+	}
+
+	@After
+	public void cleanup() {
+		if (communicator != null) {
+			communicator.closeSocket();
+		}
+	}
+
+	@Test
+	public void shouldTellTheRunnerAboutBothSockets() {
+		List<String> arguments = communicator.listen();
+
+		assertEquals(2, arguments.size());
+		assertTrue(Integer.parseInt(arguments.get(0)) > 0);
+		assertTrue(new File(arguments.get(1)).exists());
+	}
+
+	@Test
+	public void shouldRemoveTheSocketFileWhenClosedBeforeTheRunnerConnects() {
+		File socketFile = new File(communicator.listen().get(1));
+
+		communicator.closeSocket();
+
+		assertFalse(socketFile.exists());
+	}
+
+	@Test
+	public void shouldAcceptRunnersThatCanOnlyUseTcp() throws Exception {
+		final List<String> arguments = communicator.listen();
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Socket clientSocket = new Socket("127.0.0.1", Integer.parseInt(arguments.get(0)));
+					FramedProtocol protocol = new FramedProtocol(clientSocket.getInputStream(), clientSocket.getOutputStream());
+					protocol.handshake();
+					protocol.sendResults(new TestResults(testCaseStarting(protocol.receiveTestName())));
+					protocol.receiveTestName();
+					clientSocket.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}).start();
+
+		communicator.openSocket();
+
+		assertEquals("hello", getOnlyElement(communicator.sendMessage("hello")).getTestName());
+		assertFalse("Socket file should be removed", new File(arguments.get(1)).exists());
+	}
+
+	@Test
+	public void shouldRunTestsInAnotherProcess() throws Exception {
+		NativeConnectionFactory factory = new NativeConnectionFactory(FailingRunner.class) {
+			@Override
+			protected SocketProcessCommunicator createCommunicator() {
+				return communicator;
+			}
+		};
+
+		ProcessConnection connection = factory.getConnection(fakeEnvironment(), new NoOpOutputHandler());
+
+		try {
+			assertEquals(FAILING_EVENT, getOnlyElement(connection.runTest("testName")));
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Test(timeout = 1000)
+	public void shouldTimeOutIfRunnerProcessFailsToConnect() {
+		communicator = new UnixSocketProcessCommunicator(250);
+		communicator.listen();
+		try {
+			communicator.openSocket();
+			fail();
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause().toString(), e.getCause() instanceof SocketTimeoutException);
+		}
+	}
+}
@@ -62,30 +62,29 @@ public class WhenCreatingRunnerProcessConnection {
 		assertEquals("World", events.get(1).getTestName());
 	}
 
-	private List<TestEvent> sendMessageWithServerSocket(String input) throws UnknownHostException, IOException, ClassNotFoundException {
+	private List<TestEvent> sendMessageWithServerSocket(String input) throws UnknownHostException, IOException {
 		return sendMessageWithServerSocket(new String[] { input });
 	}
 
-	private List<TestEvent> sendMessageWithServerSocket(String... messages) throws UnknownHostException, IOException, ClassNotFoundException {
+	private List<TestEvent> sendMessageWithServerSocket(String... messages) throws UnknownHostException, IOException {
 		ServerSocket serverSocket = new ServerSocket(0);
 		try {
 			factory.startProcess(serverSocket.getLocalPort(), fakeEnvironment());
 			Socket socket = serverSocket.accept();
-			ObjectInputStream inStream = new ObjectInputStream(socket.getInputStream());
-			ObjectOutputStream outStream = new ObjectOutputStream(socket.getOutputStream());
+			FramedProtocol protocol = new FramedProtocol(socket.getInputStream(), socket.getOutputStream());
+			protocol.handshake();
 			List<TestEvent> results = Lists.newArrayList();
 			TestResults result = null;
 			int i = 0;
 			do {
-				outStream.writeObject(messages[i++]);
-				result = (TestResults) inStream.readObject();
+				protocol.sendTestName(messages[i++]);
+				result = protocol.receiveResults();
 				if (result != null) {
 					addAll(results, result);
 				}
 			} while (i < messages.length);
-			outStream.writeObject(null);
-			inStream.close();
-			outStream.close();
+			protocol.sendEnd();
+			protocol.close();
 			socket.close();
 			return results;
 		} finally {
@@ -0,0 +1,110 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.process;
+
+import static org.infinitest.util.FakeEnvironments.*;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.ConsoleOutputListener.OutputType;
+import org.infinitest.*;
+import org.infinitest.testrunner.*;
+import org.junit.*;
+import org.mockito.invocation.*;
+import org.mockito.stubbing.*;
+
+public class WhenKeepingRunnerProcessesWarm {
+	private ProcessConnectionFactory factory;
+	private WarmConnectionPool pool;
+	private List<ProcessConnection> startedConnections;
+	private RuntimeEnvironment environment;
+
+	@Before
+	public void inContext() throws IOException {
+		startedConnections = Collections.synchronizedList(new ArrayList<ProcessConnection>());
+		factory = mock(ProcessConnectionFactory.class);
+		when(factory.getConnection(any(RuntimeEnvironment.class), any(OutputStreamHandler.class))).thenAnswer(new Answer<ProcessConnection>() {
+			@Override
+			public ProcessConnection answer(InvocationOnMock invocation) {
+				OutputStreamHandler outputHandler = (OutputStreamHandler) invocation.getArguments()[1];
+				outputHandler.processStream(new ByteArrayInputStream(new byte[0]), OutputType.STDOUT);
+				ProcessConnection connection = mock(ProcessConnection.class);
+				startedConnections.add(connection);
+				return connection;
+			}
+		});
+		pool = new WarmConnectionPool(factory, 2);
+		environment = fakeEnvironment();
+	}
+
+	@After
+	public void cleanup() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void shouldStartProcessesAheadOfTimeOnceTheFirstOneIsUsed() throws Exception {
+		OutputStreamHandler outputHandler = mock(OutputStreamHandler.class);
+
+		ProcessConnection coldConnection = pool.getConnection(environment, outputHandler);
+		waitForIdleProcesses(2);
+		ProcessConnection warmConnection = pool.getConnection(environment, outputHandler);
+
+		assertNotSame(coldConnection, warmConnection);
+		assertTrue(startedConnections.contains(warmConnection));
+		verify(outputHandler, times(2)).processStream(any(InputStream.class), eq(OutputType.STDOUT));
+		waitForIdleProcesses(2);
+	}
+
+	@Test
+	public void shouldStopIdleProcessesWhenTheEnvironmentChanges() throws Exception {
+		ProcessConnection coldConnection = pool.getConnection(environment, new NoOpOutputHandler());
+		waitForIdleProcesses(2);
+		// The pool may start its processes before the cold one
+		List<ProcessConnection> idleConnections = new ArrayList<ProcessConnection>(startedConnections);
+		idleConnections.remove(coldConnection);
+
+		pool.getConnection(emptyRuntimeEnvironment(), new NoOpOutputHandler());
+
+		for (ProcessConnection each : idleConnections) {
+			verify(each, timeout(5000)).abort();
+		}
+	}
+
+	private void waitForIdleProcesses(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while ((pool.getIdleCount() < count) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(10);
+		}
+		assertEquals(count, pool.getIdleCount());
+	}
+}
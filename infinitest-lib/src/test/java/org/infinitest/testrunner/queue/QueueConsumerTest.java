@@ -56,7 +56,7 @@ public class QueueConsumerTest {
 		queueUpdates = newArrayList();
 		queue = new QueueConsumer(runnerEvents, new LinkedList<String>()) {
 			@Override
-			protected QueueProcessor createQueueProcessor() {
+			protected QueueProcessor createQueueProcessor(RunnerEventSupport shardEvents) {
 				return new FakeQueueProcessor();
 			}
 		};
@@ -91,7 +91,7 @@ public class QueueConsumerTest {
 	public void shouldThrowProcessorCreationErrorsWhenPushIsCalled() {
 		queue = new QueueConsumer(runnerEvents, new LinkedList<String>(), 50) {
 			@Override
-			protected QueueProcessor createQueueProcessor() {
+			protected QueueProcessor createQueueProcessor(RunnerEventSupport shardEvents) {
 				throw new RuntimeException("Could not create");
 			}
 		};
@@ -107,7 +107,7 @@ public class QueueConsumerTest {
 	public void shouldForceCleanIfInterruptFails() throws Exception {
 		queue = new QueueConsumer(runnerEvents, new LinkedList<String>(), 50) {
 			@Override
-			protected QueueProcessor createQueueProcessor() {
+			protected QueueProcessor createQueueProcessor(RunnerEventSupport shardEvents) {
 				return new ProcessorThatHangsUntilCleaned();
 			}
 		};
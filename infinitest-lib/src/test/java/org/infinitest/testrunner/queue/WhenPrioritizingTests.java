@@ -53,8 +53,19 @@ public class WhenPrioritizingTests {
 
 		queue.add("test1");
 		queue.add("test2");
-		assertEquals("test1", queue.take());
-		assertEquals("test2", queue.take());
+		assertEquals("test1", queue.poll());
+		assertEquals("test2", queue.poll());
+	}
+
+	@Test
+	public void shouldKeepTheOrderOfQueuedTestsWhenTheirStatisticsChange() {
+		queue.addAll(asList("test1", "test2"));
+		stats.testCaseComplete(testCaseFailing("test2", "", new Exception()));
+		queue.add("test3");
+
+		assertEquals("test1", queue.poll());
+		assertEquals("test2", queue.poll());
+		assertEquals("test3", queue.poll());
 	}
 
 	@Test
@@ -62,4 +73,30 @@ public class WhenPrioritizingTests {
 		queue.addAll(asList("test1", "test2", "test1"));
 		assertEquals(2, queue.size());
 	}
+
+	@Test
+	public void shouldRunTheQuickestTestsAfterTheFailingOnes() throws Exception {
+		queue = new TestQueue(SchedulingPolicy.FAILURES_THEN_SHORTEST_FIRST.createComparator(stats));
+		stats.testCaseComplete(testCasePassing("slowTest", 500));
+		stats.testCaseComplete(testCasePassing("quickTest", 5));
+		stats.testCaseComplete(testCaseFailing("failingTest", "", new Exception()));
+
+		queue.addAll(asList("slowTest", "quickTest", "failingTest"));
+		assertEquals("failingTest", queue.poll());
+		assertEquals("quickTest", queue.poll());
+		assertEquals("slowTest", queue.poll());
+	}
+
+	@Test
+	public void shouldRunTheSlowestTestsFirstWhenPackingProcesses() throws Exception {
+		queue = new TestQueue(SchedulingPolicy.LONGEST_FIRST.createComparator(stats));
+		stats.testCaseComplete(testCasePassing("quickTest", 5));
+		stats.testCaseComplete(testCasePassing("slowTest", 500));
+		stats.testCaseComplete(testCasePassing("averageTest", 50));
+
+		queue.addAll(asList("quickTest", "slowTest", "averageTest"));
+		assertEquals("slowTest", queue.poll());
+		assertEquals("averageTest", queue.poll());
+		assertEquals("quickTest", queue.poll());
+	}
 }
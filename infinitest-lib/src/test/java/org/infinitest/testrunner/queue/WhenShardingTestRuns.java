@@ -0,0 +1,179 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner.queue;
+
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Sets.*;
+import static java.util.Arrays.*;
+import static java.util.concurrent.TimeUnit.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.infinitest.*;
+import org.infinitest.testrunner.*;
+import org.junit.*;
+
+public class WhenShardingTestRuns {
+	private RunnerEventSupport runnerEvents;
+	private Queue<String> testsRun;
+	private Set<Integer> shardsUsed;
+	private AtomicInteger shardCount;
+	private CountDownLatch runComplete;
+	private AtomicInteger runCompleteCount;
+	private QueueConsumer consumer;
+
+	@Before
+	public void inContext() {
+		runnerEvents = new RunnerEventSupport(this);
+		testsRun = new ConcurrentLinkedQueue<String>();
+		shardsUsed = Collections.synchronizedSet(new HashSet<Integer>());
+		shardCount = new AtomicInteger();
+		runComplete = new CountDownLatch(1);
+		runCompleteCount = new AtomicInteger();
+		runnerEvents.addTestQueueListener(new TestQueueAdapter() {
+			@Override
+			public void testRunComplete() {
+				runCompleteCount.incrementAndGet();
+				runComplete.countDown();
+			}
+		});
+		consumer = new QueueConsumer(runnerEvents, new LinkedBlockingQueue<String>()) {
+			@Override
+			protected QueueProcessor createQueueProcessor(RunnerEventSupport shardEvents) {
+				return new ShardProcessor(shardCount.getAndIncrement(), shardEvents);
+			}
+		};
+	}
+
+	@Test
+	public void shouldSplitTheQueueInAsManyShardsAsThereAreCores() throws Exception {
+		consumer.setConcurrencySemaphore(new MultiCoreConcurrencyController(3, 8));
+
+		consumer.push(asList("test1", "test2", "test3", "test4", "test5", "test6"));
+
+		assertTrue(runComplete.await(5, SECONDS));
+		assertEquals(newHashSet("test1", "test2", "test3", "test4", "test5", "test6"), newHashSet(testsRun));
+		assertEquals(6, testsRun.size());
+		assertEquals(newHashSet(0, 1, 2), shardsUsed);
+	}
+
+	@Test
+	public void shouldReportTheRunCompleteOnceAllShardsAreDone() throws Exception {
+		consumer.setConcurrencySemaphore(new MultiCoreConcurrencyController(3, 8));
+
+		consumer.push(asList("test1", "test2", "test3", "test4"));
+
+		assertTrue(runComplete.await(5, SECONDS));
+		assertEquals(4, testsRun.size());
+		Thread.sleep(100);
+		assertEquals(1, runCompleteCount.get());
+	}
+
+	@Test
+	public void shouldNotStartMoreShardsThanThereAreTests() throws Exception {
+		consumer.setConcurrencySemaphore(new MultiCoreConcurrencyController(4, 8));
+
+		consumer.push(newArrayList("test1", "test2"));
+
+		assertTrue(runComplete.await(5, SECONDS));
+		assertEquals(2, shardCount.get());
+	}
+
+	@Test
+	public void shouldCreateTheProcessorsOfTheOtherShardsOnTheirOwnThreads() throws Exception {
+		final Set<Thread> creatingThreads = Collections.synchronizedSet(new HashSet<Thread>());
+		consumer = new QueueConsumer(runnerEvents, new LinkedBlockingQueue<String>()) {
+			@Override
+			protected QueueProcessor createQueueProcessor(RunnerEventSupport shardEvents) {
+				creatingThreads.add(Thread.currentThread());
+				return new ShardProcessor(shardCount.getAndIncrement(), shardEvents);
+			}
+		};
+		consumer.setConcurrencySemaphore(new MultiCoreConcurrencyController(3, 8));
+
+		consumer.push(asList("test1", "test2", "test3"));
+
+		assertTrue(runComplete.await(5, SECONDS));
+		assertEquals(3, creatingThreads.size());
+		assertTrue(creatingThreads.contains(Thread.currentThread()));
+	}
+
+	@Test
+	public void shouldRunTheTestsInTheOtherShardsWhenAProcessorCannotBeCreated() throws Exception {
+		consumer = new QueueConsumer(runnerEvents, new LinkedBlockingQueue<String>()) {
+			@Override
+			protected QueueProcessor createQueueProcessor(RunnerEventSupport shardEvents) {
+				int shard = shardCount.getAndIncrement();
+				if (shard == 1) {
+					throw new IllegalStateException("Timed out waiting for the runner process");
+				}
+				return new ShardProcessor(shard, shardEvents);
+			}
+		};
+		consumer.setConcurrencySemaphore(new MultiCoreConcurrencyController(3, 8));
+
+		consumer.push(asList("test1", "test2", "test3", "test4"));
+
+		assertTrue(runComplete.await(5, SECONDS));
+		assertEquals(4, testsRun.size());
+		assertFalse(shardsUsed.contains(1));
+		Thread.sleep(100);
+		assertEquals(1, runCompleteCount.get());
+	}
+
+	private class ShardProcessor implements QueueProcessor {
+		private final int shard;
+		private final RunnerEventSupport shardEvents;
+
+		ShardProcessor(int shard, RunnerEventSupport shardEvents) {
+			this.shard = shard;
+			this.shardEvents = shardEvents;
+		}
+
+		@Override
+		public void process(String test) throws InterruptedException {
+			shardsUsed.add(shard);
+			// Long enough for every shard to take a test
+			Thread.sleep(50);
+			testsRun.add(test);
+		}
+
+		@Override
+		public void close() {
+			shardEvents.fireTestRunComplete();
+		}
+
+		@Override
+		public void cleanup() {
+			// Nothing to clean up
+		}
+	}
+}
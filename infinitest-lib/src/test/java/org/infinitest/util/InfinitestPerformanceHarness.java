@@ -60,8 +60,9 @@ public class InfinitestPerformanceHarness {
 			}
 
 			@Override
-			public void updateFilterList() {
+			public boolean updateFilterList() {
 				// nothing to do here
+				return false;
 			}
 		});
 		InfinitestCore core = builder.createCore();
@@ -0,0 +1,339 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.testrunner.TestEvent.TestState;
+
+/**
+ * The protocol between Infinitest and a test runner process. It replaces Java
+ * serialization, whose cost grew with the number of failures: every result
+ * carried class descriptors and whole stack traces.
+ * <p/>
+ * Both ends first send a header (magic and version) and check the one of the
+ * other end. Then each message is a frame: its length, its type, and its
+ * payload. Infinitest sends the name of each test to run, then an end frame.
+ * The runner answers each test with its results. Strings and stack frames
+ * repeated within a result, like the frames of the test framework, are sent
+ * once and then referred to by their index.
+ */
+public class FramedProtocol {
+	private static final int MAGIC = 0x494E4652; // "INFR"
+	static final int VERSION = 1;
+	private static final byte TEST = 1;
+	private static final byte RESULTS = 2;
+	private static final byte END = 3;
+	private static final int NULL_INDEX = -1;
+	// Far more than the results of a test class with thousands of failures
+	static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+	private final DataInputStream in;
+	private final DataOutputStream out;
+
+	public FramedProtocol(InputStream in, OutputStream out) {
+		this.in = new DataInputStream(new BufferedInputStream(in));
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+	}
+
+	/**
+	 * Exchanges headers with the other end.
+	 * 
+	 * @throws IOException
+	 *             if the other end speaks another version of the protocol
+	 */
+	public void handshake() throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.flush();
+		int magic = in.readInt();
+		int version = in.readInt();
+		if ((magic != MAGIC) || (version != VERSION)) {
+			throw new IOException("Expected version " + VERSION + " of the test runner protocol, got " + Integer.toHexString(magic) + " version " + version);
+		}
+	}
+
+	public void sendTestName(String testName) throws IOException {
+		writeFrame(TEST, encodeString(testName));
+	}
+
+	public void sendEnd() throws IOException {
+		writeFrame(END, new byte[0]);
+	}
+
+	/**
+	 * @return the name of the next test to run, or null once there are no more
+	 */
+	public String receiveTestName() throws IOException {
+		byte[] payload = readFrame(TEST, END);
+		if (payload == null) {
+			return null;
+		}
+		return new DataInputStream(new ByteArrayInputStream(payload)).readUTF();
+	}
+
+	public void sendResults(TestResults results) throws IOException {
+		writeFrame(RESULTS, encode(results));
+	}
+
+	public TestResults receiveResults() throws IOException {
+		byte[] payload = readFrame(RESULTS, RESULTS);
+		return decode(payload);
+	}
+
+	public void close() throws IOException {
+		try {
+			out.close();
+		} finally {
+			in.close();
+		}
+	}
+
+	private void writeFrame(byte type, byte[] payload) throws IOException {
+		out.writeInt(payload.length);
+		out.writeByte(type);
+		out.write(payload);
+		out.flush();
+	}
+
+	// Returns null for an end frame
+	private byte[] readFrame(byte expectedType, byte otherExpectedType) throws IOException {
+		int length = in.readInt();
+		if ((length < 0) || (length > MAX_FRAME_LENGTH)) {
+			throw new IOException("Invalid frame length " + length);
+		}
+		byte type = in.readByte();
+		if ((type != expectedType) && (type != otherExpectedType)) {
+			throw new IOException("Unexpected frame of type " + type);
+		}
+		byte[] payload = new byte[length];
+		in.readFully(payload);
+		if (type == END) {
+			return null;
+		}
+		return payload;
+	}
+
+	private static byte[] encodeString(String string) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(bytes);
+		data.writeUTF(string);
+		data.close();
+		return bytes.toByteArray();
+	}
+
+	static byte[] encode(TestResults results) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new ResultsEncoder(new DataOutputStream(bytes)).write(results);
+		return bytes.toByteArray();
+	}
+
+	static TestResults decode(byte[] payload) throws IOException {
+		return new ResultsDecoder(new DataInputStream(new ByteArrayInputStream(payload))).read();
+	}
+
+	private static class ResultsEncoder {
+		private final DataOutputStream out;
+		private final Map<String, Integer> strings = new HashMap<String, Integer>();
+		private final Map<StackTraceElement, Integer> frames = new HashMap<StackTraceElement, Integer>();
+
+		ResultsEncoder(DataOutputStream out) {
+			this.out = out;
+		}
+
+		void write(TestResults results) throws IOException {
+			List<TestEvent> events = new ArrayList<TestEvent>();
+			for (TestEvent each : results) {
+				events.add(each);
+			}
+			out.writeInt(events.size());
+			for (TestEvent each : events) {
+				writeEvent(each);
+			}
+
+			List<MethodStats> methodStats = new ArrayList<MethodStats>();
+			for (MethodStats each : results.getMethodStats()) {
+				methodStats.add(each);
+			}
+			out.writeInt(methodStats.size());
+			for (MethodStats each : methodStats) {
+				writeString(each.methodName);
+				out.writeLong(each.startTime);
+				out.writeLong(each.stopTime);
+			}
+			out.flush();
+		}
+
+		private void writeEvent(TestEvent event) throws IOException {
+			out.writeByte(event.getType().ordinal());
+			writeString(event.getMessage());
+			writeString(event.getTestName());
+			writeString(event.getTestMethod());
+			out.writeBoolean(event.isFailure());
+			writeString(event.getErrorClassName());
+			writeString(event.getFullErrorClassName());
+			StackTraceElement[] stackTrace = event.getStackTrace();
+			if (stackTrace == null) {
+				out.writeInt(NULL_INDEX);
+			} else {
+				out.writeInt(stackTrace.length);
+				for (StackTraceElement each : stackTrace) {
+					writeFrame(each);
+				}
+			}
+		}
+
+		private void writeFrame(StackTraceElement frame) throws IOException {
+			Integer index = frames.get(frame);
+			if (index != null) {
+				out.writeInt(index);
+				return;
+			}
+			out.writeInt(frames.size());
+			frames.put(frame, frames.size());
+			writeString(frame.getClassName());
+			writeString(frame.getMethodName());
+			writeString(frame.getFileName());
+			out.writeInt(frame.getLineNumber());
+		}
+
+		// Large strings, like long assertion messages, don't fit writeUTF
+		private void writeString(String string) throws IOException {
+			if (string == null) {
+				out.writeInt(NULL_INDEX);
+				return;
+			}
+			Integer index = strings.get(string);
+			if (index != null) {
+				out.writeInt(index);
+				return;
+			}
+			out.writeInt(strings.size());
+			strings.put(string, strings.size());
+			byte[] bytes = string.getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static class ResultsDecoder {
+		private final DataInputStream in;
+		private final List<String> strings = new ArrayList<String>();
+		private final List<StackTraceElement> frames = new ArrayList<StackTraceElement>();
+
+		ResultsDecoder(DataInputStream in) {
+			this.in = in;
+		}
+
+		TestResults read() throws IOException {
+			int eventCount = readCount();
+			List<TestEvent> events = new ArrayList<TestEvent>(eventCount);
+			for (int i = 0; i < eventCount; i++) {
+				events.add(readEvent());
+			}
+			TestResults results = new TestResults(events);
+
+			int statsCount = readCount();
+			List<MethodStats> methodStats = new ArrayList<MethodStats>(statsCount);
+			for (int i = 0; i < statsCount; i++) {
+				MethodStats stats = new MethodStats(readString());
+				stats.startTime = in.readLong();
+				stats.stopTime = in.readLong();
+				methodStats.add(stats);
+			}
+			results.addMethodStats(methodStats);
+			return results;
+		}
+
+		private TestEvent readEvent() throws IOException {
+			byte stateIndex = in.readByte();
+			if ((stateIndex < 0) || (stateIndex >= TestState.values().length)) {
+				throw new IOException("Invalid test state " + stateIndex);
+			}
+			TestState state = TestState.values()[stateIndex];
+			String message = readString();
+			String testName = readString();
+			String testMethod = readString();
+			boolean isAssertionFailure = in.readBoolean();
+			String simpleErrorClassName = readString();
+			String fullErrorClassName = readString();
+			StackTraceElement[] stackTrace = null;
+			int frameCount = in.readInt();
+			if (frameCount != NULL_INDEX) {
+				checkCount(frameCount);
+				stackTrace = new StackTraceElement[frameCount];
+				for (int i = 0; i < frameCount; i++) {
+					stackTrace[i] = readFrame();
+				}
+			}
+			return new TestEvent(state, message, testName, testMethod, isAssertionFailure, stackTrace, simpleErrorClassName, fullErrorClassName);
+		}
+
+		private StackTraceElement readFrame() throws IOException {
+			int index = in.readInt();
+			if (index < frames.size()) {
+				return frames.get(index);
+			}
+			String className = readString();
+			String methodName = readString();
+			String fileName = readString();
+			int lineNumber = in.readInt();
+			StackTraceElement frame = new StackTraceElement(className, methodName, fileName, lineNumber);
+			frames.add(frame);
+			return frame;
+		}
+
+		private String readString() throws IOException {
+			int index = in.readInt();
+			if (index == NULL_INDEX) {
+				return null;
+			}
+			if (index < strings.size()) {
+				return strings.get(index);
+			}
+			byte[] bytes = new byte[readCount()];
+			in.readFully(bytes);
+			String string = new String(bytes, "UTF-8");
+			strings.add(string);
+			return string;
+		}
+
+		// Every counted element takes at least a byte of the payload
+		private int readCount() throws IOException {
+			return checkCount(in.readInt());
+		}
+
+		private int checkCount(int count) throws IOException {
+			if ((count < 0) || (count > in.available())) {
+				throw new IOException("Invalid count " + count + " in test results");
+			}
+			return count;
+		}
+	}
+}
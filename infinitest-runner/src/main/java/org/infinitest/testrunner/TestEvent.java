@@ -64,6 +64,18 @@ public class TestEvent implements Serializable {
 		}
 	}
 
+	// Used to read events sent by a test runner process
+	TestEvent(TestState eventType, String message, String testName, String testMethod, boolean isAssertionFailure, StackTraceElement[] stackTrace, String simpleErrorClassName, String fullErrorClassName) {
+		this.message = message;
+		name = testName;
+		method = testMethod;
+		state = eventType;
+		this.isAssertionFailure = isAssertionFailure;
+		this.stackTrace = stackTrace;
+		this.simpleErrorClassName = simpleErrorClassName;
+		this.fullErrorClassName = fullErrorClassName;
+	}
+
 	public static TestEvent methodFailed(String message, String testName, String methodName, Throwable throwable) {
 		return new TestEvent(METHOD_FAILURE, message, testName, methodName, throwable);
 	}
@@ -31,6 +31,7 @@ import static org.infinitest.testrunner.TestEvent.*;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
 
 // RISK This class is only tested by running it, which is slow and throws off coverage
 public class TestRunnerProcess {
@@ -75,24 +76,20 @@ public class TestRunnerProcess {
 			checkForJUnit4();
 
 			TestRunnerProcess process = new TestRunnerProcess(args[0]);
-			int portNum = Integer.parseInt(args[1]);
-			Socket clientSocket = new Socket("127.0.0.1", portNum);
-			// DEBT Extract this to a reader class
-			ObjectOutputStream outputStream = new ObjectOutputStream(clientSocket.getOutputStream());
-			ObjectInputStream inputStream = new ObjectInputStream(clientSocket.getInputStream());
+			FramedProtocol protocol = connect(args);
+			protocol.handshake();
 
 			String testName;
 			do {
-				testName = (String) inputStream.readObject();
+				testName = protocol.receiveTestName();
 
 				if (testName != null) {
-					writeTestResultToOutputStream(process, outputStream, testName);
+					sendTestResult(process, protocol, testName);
 				}
 
 			} while (testName != null);
 
-			outputStream.close();
-			clientSocket.close();
+			protocol.close();
 		}
 		// CHECKSTYLE:OFF
 		catch (Throwable e)
@@ -106,7 +103,44 @@ public class TestRunnerProcess {
 
 	}
 
-	private static void writeTestResultToOutputStream(TestRunnerProcess process, ObjectOutputStream outputStream, String testName) throws IOException {
+	// The port to connect to, and the path of a Unix domain socket to try first
+	private static FramedProtocol connect(String[] args) throws IOException {
+		if (args.length > 2) {
+			SocketChannel channel = connectToUnixSocket(args[2]);
+			if (channel != null) {
+				return new FramedProtocol(Channels.newInputStream(channel), Channels.newOutputStream(channel));
+			}
+		}
+		Socket clientSocket = new Socket("127.0.0.1", Integer.parseInt(args[1]));
+		clientSocket.setTcpNoDelay(true);
+		return new FramedProtocol(clientSocket.getInputStream(), clientSocket.getOutputStream());
+	}
+
+	// Unix domain sockets are looked up by reflection, since they require
+	// Java 16, and return null when they are not available
+	private static SocketChannel connectToUnixSocket(String path) {
+		try {
+			Class<?> protocolFamilyClass = Class.forName("java.net.ProtocolFamily");
+			Object unix = Class.forName("java.net.StandardProtocolFamily").getField("UNIX").get(null);
+			Object address = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class).invoke(null, path);
+			SocketChannel channel = (SocketChannel) SocketChannel.class.getMethod("open", protocolFamilyClass).invoke(null, unix);
+			try {
+				channel.connect((SocketAddress) address);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			return channel;
+		}
+		// CHECKSTYLE:OFF
+		catch (Exception e)
+		// CHECKSTYLE:ON
+		{
+			return null;
+		}
+	}
+
+	private static void sendTestResult(TestRunnerProcess process, FramedProtocol protocol, String testName) throws IOException {
 		TestResults results;
 		try {
 			results = process.runTest(testName);
@@ -117,6 +151,6 @@ public class TestRunnerProcess {
 		{
 			results = new TestResults(methodFailed(testName, "", e));
 		}
-		outputStream.writeObject(results);
+		protocol.sendResults(results);
 	}
 }
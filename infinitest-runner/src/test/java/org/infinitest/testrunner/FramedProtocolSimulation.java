@@ -0,0 +1,117 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static org.infinitest.testrunner.TestEvent.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Compares the size of the results sent by a test runner process, and the
+ * time taken to write and read them, with Java serialization and with the
+ * {@link FramedProtocol}, as the number of failures grows.
+ */
+public class FramedProtocolSimulation {
+	private static final int[] FAILURE_COUNTS = { 0, 1, 10, 100, 1000 };
+	private static final int ITERATIONS = 2000;
+
+	public static void main(String[] args) throws Exception {
+		// Warm up
+		for (int failureCount : FAILURE_COUNTS) {
+			measureSerialization(createResults(failureCount), ITERATIONS / 10);
+			measureFramedProtocol(createResults(failureCount), ITERATIONS / 10);
+		}
+
+		System.out.println("Failures\tSerialized (bytes)\tFramed (bytes)\tSerialization (us/result)\tFramed (us/result)");
+		for (int failureCount : FAILURE_COUNTS) {
+			TestResults results = createResults(failureCount);
+			int iterations = Math.max(10, ITERATIONS / Math.max(1, failureCount));
+			System.out.println(failureCount + "\t" + serialize(results).length + "\t" + FramedProtocol.encode(results).length + "\t" + measureSerialization(results, iterations) + "\t" + measureFramedProtocol(results, iterations));
+		}
+	}
+
+	@Test
+	public void shouldSendFailuresInAFractionOfTheSerializedSize() throws Exception {
+		TestResults results = createResults(100);
+
+		assertTrue(FramedProtocol.encode(results).length < (serialize(results).length / 2));
+	}
+
+	private static long measureSerialization(TestResults results, int iterations) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			new ObjectInputStream(new ByteArrayInputStream(serialize(results))).readObject();
+		}
+		return (System.nanoTime() - start) / iterations / 1000;
+	}
+
+	private static long measureFramedProtocol(TestResults results, int iterations) throws IOException {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			FramedProtocol.decode(FramedProtocol.encode(results));
+		}
+		return (System.nanoTime() - start) / iterations / 1000;
+	}
+
+	private static byte[] serialize(TestResults results) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(results);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	// Failures thrown from a stack as deep as the ones of a test framework
+	private static TestResults createResults(int failureCount) {
+		List<TestEvent> events = new ArrayList<TestEvent>();
+		for (int i = 0; i < failureCount; i++) {
+			events.add(methodFailed("com.fakeco.FailingTest", "shouldPass" + i, failDeep(30, i)));
+		}
+		TestResults results = new TestResults(events);
+		List<MethodStats> methodStats = new ArrayList<MethodStats>();
+		for (int i = 0; i < Math.max(1, failureCount); i++) {
+			MethodStats stats = new MethodStats("shouldPass" + i);
+			stats.startTime = i;
+			stats.stopTime = i + 10;
+			methodStats.add(stats);
+		}
+		results.addMethodStats(methodStats);
+		return results;
+	}
+
+	private static Throwable failDeep(int depth, int index) {
+		if (depth == 0) {
+			return new AssertionError("expected:<" + index + "> but was:<" + (index + 1) + ">");
+		}
+		return failDeep(depth - 1, index);
+	}
+}
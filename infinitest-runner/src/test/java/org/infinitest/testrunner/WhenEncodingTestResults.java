@@ -0,0 +1,152 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static java.util.Arrays.*;
+import static org.infinitest.testrunner.TestEvent.*;
+import static org.infinitest.testrunner.TestEvent.TestState.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+public class WhenEncodingTestResults {
+	@Test
+	public void shouldDecodeTheFailuresThatWereEncoded() throws IOException {
+		AssertionError error = new AssertionError("expected:<1> but was:<2>");
+		TestResults results = new TestResults(methodFailed("com.fakeco.FailingTest", "shouldPass", error));
+
+		TestEvent event = roundTrip(results).iterator().next();
+
+		assertEquals("com.fakeco.FailingTest", event.getTestName());
+		assertEquals("shouldPass", event.getTestMethod());
+		assertEquals("expected:<1> but was:<2>", event.getMessage());
+		assertEquals(METHOD_FAILURE, event.getType());
+		assertTrue(event.isFailure());
+		assertEquals("AssertionError", event.getErrorClassName());
+		assertEquals(AssertionError.class.getName(), event.getFullErrorClassName());
+		assertEquals(error.getStackTrace().length, event.getStackTrace().length);
+		for (int i = 0; i < error.getStackTrace().length; i++) {
+			assertSameFrame(error.getStackTrace()[i], event.getStackTrace()[i]);
+		}
+	}
+
+	@Test
+	public void shouldDecodeEventsWithoutErrors() throws IOException {
+		TestEvent event = roundTrip(new TestResults(testCaseStarting("com.fakeco.PassingTest"))).iterator().next();
+
+		assertEquals(TEST_CASE_STARTING, event.getType());
+		assertEquals("com.fakeco.PassingTest", event.getTestName());
+		assertNull(event.getStackTrace());
+		assertNull(event.getErrorClassName());
+	}
+
+	@Test
+	public void shouldDecodeMethodStats() throws IOException {
+		MethodStats stats = new MethodStats("shouldPass");
+		stats.startTime = 1000;
+		stats.stopTime = 1250;
+		TestResults results = new TestResults();
+		results.addMethodStats(asList(stats));
+
+		MethodStats decoded = roundTrip(results).getMethodStats().iterator().next();
+
+		assertEquals("shouldPass", decoded.methodName);
+		assertEquals(250, decoded.duration());
+	}
+
+	@Test
+	public void shouldSendTheStackFramesSharedByFailuresOnce() throws IOException {
+		TestResults oneFailure = new TestResults(methodFailed("FailingTest", "shouldPass", new Exception()));
+		TestResults twoFailures = new TestResults(methodFailed("FailingTest", "shouldPass", new Exception()), methodFailed("FailingTest", "shouldPass", new Exception()));
+
+		int firstFailureSize = FramedProtocol.encode(oneFailure).length;
+		int secondFailureSize = FramedProtocol.encode(twoFailures).length - firstFailureSize;
+
+		assertTrue(secondFailureSize < (firstFailureSize / 4));
+	}
+
+	@Test
+	public void shouldKeepLongMessages() throws IOException {
+		char[] message = new char[100000];
+		Arrays.fill(message, 'x');
+		TestResults results = new TestResults(methodFailed(new String(message), "FailingTest", "shouldPass", new Exception()));
+
+		assertEquals(new String(message), roundTrip(results).iterator().next().getMessage());
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldRefuseToTalkToAnotherVersionOfTheProtocol() throws IOException {
+		ByteArrayOutputStream otherEnd = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(otherEnd);
+		header.writeInt(0x494E4652);
+		header.writeInt(FramedProtocol.VERSION + 1);
+
+		new FramedProtocol(new ByteArrayInputStream(otherEnd.toByteArray()), new ByteArrayOutputStream()).handshake();
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldRejectANegativeFrameLength() throws IOException {
+		receiveResultsFrameOfLength(-1);
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldRejectAFrameLongerThanTheLimit() throws IOException {
+		receiveResultsFrameOfLength(FramedProtocol.MAX_FRAME_LENGTH + 1);
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldRejectCountsLargerThanThePayload() throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		new DataOutputStream(payload).writeInt(Integer.MAX_VALUE);
+
+		FramedProtocol.decode(payload.toByteArray());
+	}
+
+	private static void receiveResultsFrameOfLength(int length) throws IOException {
+		ByteArrayOutputStream otherEnd = new ByteArrayOutputStream();
+		DataOutputStream frame = new DataOutputStream(otherEnd);
+		frame.writeInt(length);
+		frame.writeByte(2);
+
+		new FramedProtocol(new ByteArrayInputStream(otherEnd.toByteArray()), new ByteArrayOutputStream()).receiveResults();
+	}
+
+	private static void assertSameFrame(StackTraceElement expected, StackTraceElement actual) {
+		assertEquals(expected.getClassName(), actual.getClassName());
+		assertEquals(expected.getMethodName(), actual.getMethodName());
+		assertEquals(expected.getFileName(), actual.getFileName());
+		assertEquals(expected.getLineNumber(), actual.getLineNumber());
+	}
+
+	private static TestResults roundTrip(TestResults results) throws IOException {
+		return FramedProtocol.decode(FramedProtocol.encode(results));
+	}
+}